@@ -0,0 +1,151 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Training workload for the JDK AOT cache (see Dockerfile).
+ * <p>
+ * Drives a freshly started instance through the paths that matter after a scale-out: register/login, shorten,
+ * redirects (302, 308, expiring and click-limited links), analytics with conditional requests, and 404s.
+ * The JVM under training records the classes it loads and the methods it profiles, and stores them in the cache
+ * when it exits, so production containers start with them already loaded and warmed up.
+ * <p>
+ * Usage: java AotTraining [baseUrl] [iterations]
+ */
+public class AotTraining {
+
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern SHORT_URL = Pattern.compile("\"shortUrl\"\\s*:\\s*\"([^\"]+)\"");
+    private static final String[] USER_AGENTS = {
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/126.0 Safari/537.36",
+            "Mozilla/5.0 (iPhone; CPU iPhone OS 17_0 like Mac OS X) AppleWebKit/605.1.15 Mobile/15E148",
+            "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)",
+    };
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final String baseUrl;
+    private String token;
+
+    private AotTraining(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public static void main(String[] args) throws Exception {
+        AotTraining training = new AotTraining(args.length > 0 ? args[0] : "http://localhost:8080");
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        training.awaitStartup(Duration.ofMinutes(3));
+        training.run(iterations);
+    }
+
+    private void awaitStartup(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/public/login")).GET().build());
+                return;
+            } catch (Exception e) {
+                Thread.sleep(250);
+            }
+        }
+        throw new IllegalStateException("Application did not start within " + timeout);
+    }
+
+    private void run(int iterations) throws Exception {
+        post("/api/auth/public/register", "{\"username\":\"aot-training\",\"email\":\"aot-training@example.com\",\"password\":\"aot-training\"}");
+        token = extract(TOKEN, post("/api/auth/public/login", "{\"username\":\"aot-training\",\"password\":\"aot-training\"}"));
+
+        List<String> links = new ArrayList<>();
+        links.add(shorten("{\"originalUrl\":\"https://example.com/temporary\"}"));
+        links.add(shorten("{\"originalUrl\":\"https://example.com/permanent\",\"redirectType\":\"308\"}"));
+        links.add(shorten("{\"originalUrl\":\"https://example.com/moved\",\"redirectType\":\"301\"}"));
+        links.add(shorten("{\"originalUrl\":\"https://example.com/expiring\",\"expiresAt\":\"" + LocalDateTime.now().plusHours(1).withNano(0) + "\"}"));
+        links.add(shorten("{\"originalUrl\":\"https://example.com/limited\",\"maxClicks\":\"" + (iterations * 10) + "\"}"));
+
+        String today = LocalDateTime.now().toLocalDate().toString();
+        String range = "startDate=2020-01-01&endDate=" + today;
+        String dateTimeRange = "startDate=2020-01-01T00:00:00&endDate=" + today + "T23:59:59";
+        String eTag = null;
+        for (int i = 0; i < iterations; i++) {
+            for (String link : links) {
+                redirect(link, USER_AGENTS[i % USER_AGENTS.length], i % 2 == 0 ? "https://www.google.com/search?q=" + i : null);
+            }
+            redirect("does-not-exist-" + (i % 5), USER_AGENTS[0], null);
+            if (i % 10 == 0) {
+                shorten("{\"originalUrl\":\"https://example.com/page/" + i + "\"}");
+                String link = links.get(i % links.size());
+                get("/api/urls/analytics/" + link + "?" + dateTimeRange, null);
+                get("/api/urls/analytics/" + link + "/breakdown?dimension=" + (i % 20 == 0 ? "device" : "referrer") + "&" + dateTimeRange, null);
+                get("/api/urls/analytics/" + link + "/uniqueVisitors?" + range, null);
+                get("/api/urls/totalClicks?" + range, null);
+                get("/api/urls/breakdown?dimension=country&" + range, null);
+                get("/api/urls/uniqueVisitors?" + range, null);
+                get("/api/urls/trending?window=hour", null);
+                HttpResponse<String> myUrls = get("/api/urls/myurls", eTag);
+                eTag = myUrls.headers().firstValue("ETag").orElse(eTag);
+                get("/api/urls/myurls", eTag);
+            }
+        }
+        System.out.println("AOT training finished: " + iterations + " iterations over " + links.size() + " links");
+    }
+
+    private String shorten(String body) throws Exception {
+        return extract(SHORT_URL, post("/api/urls/shorten", body));
+    }
+
+    private void redirect(String shortUrl, String userAgent, String referrer) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + "/" + shortUrl))
+                .header("User-Agent", userAgent)
+                .header("X-Forwarded-For", "203.0.113." + (shortUrl.hashCode() & 0x7F))
+                .GET();
+        if (referrer != null) {
+            request.header("Referer", referrer);
+        }
+        send(request.build());
+    }
+
+    private String post(String path, String body) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        HttpResponse<String> response = send(request.build());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("POST " + path + " failed with " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+
+    private HttpResponse<String> get(String path, String ifNoneMatch) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Authorization", "Bearer " + token)
+                .GET();
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return send(request.build());
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String extract(Pattern pattern, String body) {
+        Matcher matcher = pattern.matcher(body);
+        if (!matcher.find()) {
+            throw new IllegalStateException("Unexpected response: " + body);
+        }
+        return matcher.group(1);
+    }
+}
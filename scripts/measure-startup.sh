@@ -0,0 +1,62 @@
+#!/usr/bin/env bash
+# Measures how fast a fresh instance becomes useful:
+#   started   - Spring's own "Started ... in N seconds" (context refresh incl. JPA and Tomcat)
+#   ready     - from launch until the first HTTP response
+#   redirect  - from launch until the first redirect has been served (after register, login and shorten)
+#   first     - latency of that first redirect request alone
+#
+# Usage: scripts/measure-startup.sh [runs] -- <command starting the app on localhost:8080>
+#   docker build --target baseline -t url-shortener:baseline . && docker build -t url-shortener .
+#   scripts/measure-startup.sh 5 -- docker run --rm -p 8080:8080 -e SPRING_PROFILES_ACTIVE=local url-shortener:baseline
+#   scripts/measure-startup.sh 5 -- docker run --rm -p 8080:8080 -e SPRING_PROFILES_ACTIVE=local url-shortener
+set -euo pipefail
+
+runs=5
+if [[ "${1:-}" != "--" ]]; then
+  runs=$1
+  shift
+fi
+[[ "${1:-}" == "--" ]] || { echo "usage: $0 [runs] -- <command>" >&2; exit 2; }
+shift
+
+base=http://localhost:8080
+log=$(mktemp)
+trap 'rm -f "$log"' EXIT
+
+now_ms() { date +%s%3N; }
+
+median() { sort -n | awk '{ v[NR] = $1 } END { print (NR % 2 ? v[(NR + 1) / 2] : (v[NR / 2] + v[NR / 2 + 1]) / 2) }'; }
+
+started=() ready=() redirect=() first=()
+for run in $(seq 1 "$runs"); do
+  launch=$(now_ms)
+  "$@" > "$log" 2>&1 &
+  app=$!
+
+  until curl -s -o /dev/null "$base/api/auth/public/login"; do
+    kill -0 "$app" 2>/dev/null || { cat "$log"; echo "application exited" >&2; exit 1; }
+    sleep 0.05
+  done
+  ready_at=$(now_ms)
+
+  curl -s -o /dev/null -XPOST "$base/api/auth/public/register" -H 'Content-Type: application/json' \
+    -d '{"username":"measure","email":"measure@example.com","password":"measure"}'
+  token=$(curl -s -XPOST "$base/api/auth/public/login" -H 'Content-Type: application/json' \
+    -d '{"username":"measure","password":"measure"}' | sed 's/.*"token":"\([^"]*\)".*/\1/')
+  code=$(curl -s -XPOST "$base/api/urls/shorten" -H "Authorization: Bearer $token" -H 'Content-Type: application/json' \
+    -d '{"originalUrl":"https://example.com"}' | sed 's/.*"shortUrl":"\([^"]*\)".*/\1/')
+  first_ms=$(curl -s -o /dev/null -w '%{time_total}' "$base/$code" | awk '{ printf "%d", $1 * 1000 }')
+  redirect_at=$(now_ms)
+
+  started_ms=$(grep -o 'Started [A-Za-z]* in [0-9.]* seconds' "$log" | awk '{ printf "%d", $4 * 1000 }')
+  kill "$app"
+  wait "$app" 2>/dev/null || true
+
+  started+=("$started_ms") ready+=($((ready_at - launch))) redirect+=($((redirect_at - launch))) first+=("$first_ms")
+  echo "run $run: started ${started_ms} ms, ready $((ready_at - launch)) ms, redirect $((redirect_at - launch)) ms, first redirect ${first_ms} ms"
+done
+
+echo "median: started $(printf '%s\n' "${started[@]}" | median) ms," \
+  "ready $(printf '%s\n' "${ready[@]}" | median) ms," \
+  "redirect $(printf '%s\n' "${redirect[@]}" | median) ms," \
+  "first redirect $(printf '%s\n' "${first[@]}" | median) ms"
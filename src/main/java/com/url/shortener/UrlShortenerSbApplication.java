@@ -2,8 +2,10 @@ package com.url.shortener;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling // background jobs (click archive compaction, ...)
 public class UrlShortenerSbApplication {
 
 	public static void main(String[] args) {
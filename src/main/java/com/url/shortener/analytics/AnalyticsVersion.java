@@ -0,0 +1,38 @@
+package com.url.shortener.analytics;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * Version of the data behind an analytics response: number of links, their total click count and the
+ * latest modification among them. All three only move when a link is created, clicked, expired or removed,
+ * so a client holding a response with the same version already has the current data (HTTP 304).
+ * Read with a single aggregate over the url_mapping rows instead of running the analytics query.
+ */
+public record AnalyticsVersion(long links, long clicks, LocalDateTime lastModified) {
+
+    /**
+     * Combines the versions of two disjoint sets of links (e.g. a user's links on two shards).
+     */
+    public AnalyticsVersion plus(AnalyticsVersion other) {
+        LocalDateTime latest = lastModified == null || (other.lastModified != null && other.lastModified.isAfter(lastModified))
+                ? other.lastModified : lastModified;
+        return new AnalyticsVersion(links + other.links, clicks + other.clicks, latest);
+    }
+
+    /**
+     * Weak ETag for a response built from this version with the given request parameters (e.g. the date range).
+     */
+    public String eTag(Object... parameters) {
+        return "W/\"" + links + '-' + clicks + '-' + lastModifiedMillis() + '-'
+                + Integer.toHexString(Arrays.hashCode(parameters)) + '"';
+    }
+
+    /**
+     * @return lastModified as epoch milliseconds, or -1 if unknown
+     */
+    public long lastModifiedMillis() {
+        return lastModified == null ? -1 : lastModified.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
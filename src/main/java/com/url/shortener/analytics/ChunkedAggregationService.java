@@ -0,0 +1,174 @@
+package com.url.shortener.analytics;
+
+import com.url.shortener.config.ReadOnlyTransactionTemplate;
+import com.url.shortener.sharding.ShardContext;
+import com.url.shortener.sharding.ShardRouter;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Runs click aggregations over many links as bounded chunks of link ids, in parallel on a dedicated pool.
+ * One IN list with every link of a big account breaks driver parameter limits (PostgreSQL allows 32767)
+ * and runs as a single serial query. Here each chunk is its own query in its own read-only transaction,
+ * so chunks also spread over the read replicas, and the partial counts are summed. A chunk only holds links of
+ * one shard and runs on that shard, so this is also the scatter-gather step for clicks spread over shards.
+ * <p>
+ * A request never occupies more than {@code max-parallelism} threads at once, the caller's included.
+ * It starts that many workers, which pull chunks from a shared cursor. The calling thread drains chunks
+ * too instead of just waiting, so on a saturated pool a big aggregation gets slower but still completes.
+ */
+@Service
+public class ChunkedAggregationService {
+
+    private final ReadOnlyTransactionTemplate readOnlyTransactionTemplate;
+    private final ThreadPoolExecutor executor;
+    private final int chunkSize;
+    private final int maxParallelism;
+
+    public ChunkedAggregationService(ReadOnlyTransactionTemplate readOnlyTransactionTemplate,
+                                     @Value("${analytics.aggregation.threads:4}") int threads,
+                                     @Value("${analytics.aggregation.queue-capacity:100}") int queueCapacity,
+                                     @Value("${analytics.aggregation.chunk-size:1000}") int chunkSize,
+                                     @Value("${analytics.aggregation.max-parallelism:2}") int maxParallelism) {
+        if (chunkSize < 1 || maxParallelism < 1) {
+            throw new IllegalArgumentException("analytics.aggregation.chunk-size and max-parallelism must be positive");
+        }
+        this.readOnlyTransactionTemplate = readOnlyTransactionTemplate;
+        this.chunkSize = chunkSize;
+        this.maxParallelism = maxParallelism;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "click-aggregation-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Runs the query on each chunk of ids and sums the counts per key.
+     *
+     * @param urlMappingIds ids of the links to aggregate over
+     * @param query counts for one chunk of ids (runs in a read-only transaction, possibly on another thread)
+     * @return the summed counts of all chunks
+     */
+    public <K> Map<K, Long> sum(List<Long> urlMappingIds, Function<List<Long>, Map<K, Long>> query) {
+        return reduce(urlMappingIds, ShardRouter::shardOf, query, HashMap::new, ChunkedAggregationService::merge);
+    }
+
+    /**
+     * Runs the query on each chunk of ids and combines the partial results, for aggregations that aren't sums.
+     *
+     * @param urlMappingIds ids of the links to aggregate over
+     * @param shardOf shard holding the rows of a link (ShardRouter::shardOf for clicks; tables that aren't sharded are on shard 0)
+     * @param query partial result for one chunk of ids (runs in a read-only transaction, possibly on another thread)
+     * @param empty creates an empty result
+     * @param combine adds a partial result (second argument) into an accumulated one (first argument)
+     * @return the combined result of all chunks
+     */
+    public <R> R reduce(List<Long> urlMappingIds, ToIntFunction<Long> shardOf, Function<List<Long>, R> query,
+                        Supplier<R> empty, BiConsumer<R, R> combine) {
+        Map<Integer, List<Long>> byShard = new TreeMap<>();
+        for (Long id : urlMappingIds) {
+            byShard.computeIfAbsent(shardOf.applyAsInt(id), shard -> new ArrayList<>()).add(id);
+        }
+        List<Chunk> chunks = new ArrayList<>();
+        byShard.forEach((shard, ids) -> {
+            for (int from = 0; from < ids.size(); from += chunkSize) {
+                chunks.add(new Chunk(shard, ids.subList(from, Math.min(from + chunkSize, ids.size()))));
+            }
+        });
+        AtomicInteger cursor = new AtomicInteger();
+        if (chunks.size() <= 1 || maxParallelism == 1) {
+            return drain(chunks, cursor, query, empty, combine);
+        }
+
+        List<Future<R>> workers = new ArrayList<>();
+        for (int i = 1; i < Math.min(maxParallelism, chunks.size()); i++) {
+            try {
+                workers.add(executor.submit(() -> drain(chunks, cursor, query, empty, combine)));
+            } catch (RejectedExecutionException e) {
+                break; // pool is busy: the caller takes the remaining chunks
+            }
+        }
+        R result;
+        try {
+            result = drain(chunks, cursor, query, empty, combine);
+        } catch (RuntimeException | Error e) {
+            cursor.set(chunks.size()); // let the workers stop after their current chunk
+            workers.forEach(worker -> executor.remove((Runnable) worker));
+            throw e;
+        }
+        for (Future<R> worker : workers) {
+            // all chunks are taken: a worker still waiting in the queue has nothing left to do.
+            // (remove, not cancel: cancel would also succeed on a running worker and drop its result)
+            if (executor.remove((Runnable) worker)) {
+                continue;
+            }
+            combine.accept(result, await(worker));
+        }
+        return result;
+    }
+
+    private <R> R drain(List<Chunk> chunks, AtomicInteger cursor, Function<List<Long>, R> query,
+                        Supplier<R> empty, BiConsumer<R, R> combine) {
+        R result = empty.get();
+        for (int next = cursor.getAndIncrement(); next < chunks.size(); next = cursor.getAndIncrement()) {
+            Chunk chunk = chunks.get(next);
+            combine.accept(result, ShardContext.call(chunk.shard(), () ->
+                    readOnlyTransactionTemplate.execute(status -> query.apply(chunk.ids()))));
+        }
+        return result;
+    }
+
+    private record Chunk(int shard, List<Long> ids) {
+    }
+
+    private static <K> void merge(Map<K, Long> counts, Map<K, Long> partial) {
+        partial.forEach((key, count) -> counts.merge(key, count, Long::sum));
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while aggregating clicks", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,15 @@
+package com.url.shortener.analytics;
+
+import java.time.LocalDateTime;
+
+/**
+ * The raw facts about a click, captured on the redirect request thread.
+ * Everything expensive (User-Agent parsing, geo lookup, dictionary coding) happens later, off the request thread.
+ *
+ * @param clickDate when the redirect was served
+ * @param ipAddress client IP (resolved through trusted proxies' X-Forwarded-For hops), may be null
+ * @param userAgent raw User-Agent header, may be null
+ * @param referrer raw Referer header, may be null
+ */
+public record ClickContext(LocalDateTime clickDate, String ipAddress, String userAgent, String referrer) {
+}
@@ -0,0 +1,364 @@
+package com.url.shortener.analytics;
+
+import com.url.shortener.analytics.journal.ClickJournal;
+import com.url.shortener.analytics.journal.JournalRecord;
+import com.url.shortener.models.ClickEvent;
+import com.url.shortener.models.DimensionKind;
+import com.url.shortener.profiling.ClickRecordEvent;
+import com.url.shortener.repository.ClickEventRepository;
+import com.url.shortener.repository.UrlMappingRepository;
+import com.url.shortener.sharding.ShardCircuitBreaker;
+import com.url.shortener.sharding.ShardContext;
+import com.url.shortener.sharding.ShardRouter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records clicks off the redirect request thread.
+ * The redirect only captures a {@link ClickContext}; parsing the User-Agent, the geo lookup, dictionary coding
+ * and the database writes all happen here on a small background pool.
+ * If the queue fills up the caller runs the work itself, which slows redirects down instead of losing clicks.
+ * <p>
+ * With the click journal enabled, a click is appended to a memory-mapped file on local disk instead of the
+ * in-memory queue, and one replayer thread per shard applies that shard's clicks to the database in journal order,
+ * checkpointing its own journal cursor after each click. Clicks then survive a crash or restart: whatever wasn't
+ * applied yet is replayed on startup. While a shard is down its replayer waits and retries, and the clicks of the
+ * other shards keep flowing. A crash between applying a click and checkpointing it can record that one click twice.
+ * <p>
+ * Without the journal, clicks that can't be written because the database is unavailable (or its circuit breaker
+ * is open) are kept in a bounded in-memory buffer and retried once the breaker lets calls through again.
+ * That buffer is lost on restart and drops clicks when full; the journal has neither limitation.
+ */
+@Service
+public class ClickIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClickIngestionService.class);
+    private static final int MAX_REFERRER_LENGTH = 255;
+    private static final long REPLAY_IDLE_MS = 50;
+    private static final long MAX_REPLAY_BACKOFF_MS = 30_000;
+
+    private final ClickEventRepository clickEventRepository;
+    private final UrlMappingRepository urlMappingRepository;
+    private final UserAgentParser userAgentParser;
+    private final GeoIpLookup geoIpLookup;
+    private final DimensionDictionary dimensionDictionary;
+    private final UniqueVisitorService uniqueVisitorService;
+    private final ShardCircuitBreaker shardCircuitBreaker;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor executor;
+    private final BlockingQueue<PendingClick> outageBuffer;
+    private final AtomicLong droppedClicks = new AtomicLong();
+    private final ClickJournal journal; // null when the journal is disabled
+    private final boolean awaitSync;
+    private final int replayBatchSize;
+    private final int shardCount;
+    private final List<Thread> replayers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    public ClickIngestionService(ClickEventRepository clickEventRepository,
+                                 UrlMappingRepository urlMappingRepository,
+                                 UserAgentParser userAgentParser,
+                                 GeoIpLookup geoIpLookup,
+                                 DimensionDictionary dimensionDictionary,
+                                 UniqueVisitorService uniqueVisitorService,
+                                 ShardCircuitBreaker shardCircuitBreaker,
+                                 ShardRouter shardRouter,
+                                 TransactionTemplate transactionTemplate,
+                                 @Value("${analytics.ingestion.threads:2}") int threads,
+                                 @Value("${analytics.ingestion.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${analytics.ingestion.outage-buffer-capacity:100000}") int outageBufferCapacity,
+                                 @Value("${analytics.journal.enabled:false}") boolean journalEnabled,
+                                 @Value("${analytics.journal.directory:./data/click-journal}") String journalDirectory,
+                                 @Value("${analytics.journal.segment-records:65536}") int segmentRecords,
+                                 @Value("${analytics.journal.sync-interval-ms:10}") long syncIntervalMs,
+                                 @Value("${analytics.journal.await-sync:false}") boolean awaitSync,
+                                 @Value("${analytics.journal.replay-batch-size:500}") int replayBatchSize) throws IOException {
+        this.clickEventRepository = clickEventRepository;
+        this.urlMappingRepository = urlMappingRepository;
+        this.userAgentParser = userAgentParser;
+        this.geoIpLookup = geoIpLookup;
+        this.dimensionDictionary = dimensionDictionary;
+        this.uniqueVisitorService = uniqueVisitorService;
+        this.shardCircuitBreaker = shardCircuitBreaker;
+        this.transactionTemplate = transactionTemplate;
+        this.outageBuffer = new ArrayBlockingQueue<>(Math.max(1, outageBufferCapacity));
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "click-ingestion-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.awaitSync = awaitSync;
+        this.replayBatchSize = replayBatchSize;
+        this.shardCount = shardRouter.getShardCount();
+        if (journalEnabled) {
+            // one cursor per shard, so that each shard's replayer checkpoints independently
+            this.journal = new ClickJournal(Path.of(journalDirectory), segmentRecords, syncIntervalMs, shardCount);
+            for (int shard = 0; shard < shardCount; shard++) {
+                int replayedShard = shard;
+                Thread replayer = new Thread(() -> replay(replayedShard), "click-journal-replayer-" + shard);
+                replayer.setDaemon(true);
+                replayers.add(replayer);
+                replayer.start();
+            }
+        } else {
+            this.journal = null;
+        }
+    }
+
+    /**
+     * Queues a click for recording and returns immediately.
+     *
+     * @param urlMappingId id of the mapping that was clicked
+     * @param context raw request data captured by the redirect
+     */
+    public void submit(long urlMappingId, ClickContext context) {
+        if (journal != null) {
+            try {
+                long sequence = journal.append(urlMappingId, context);
+                if (awaitSync) {
+                    journal.awaitDurable(sequence);
+                }
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return; // appended, just not known to be on disk yet
+            } catch (UncheckedIOException | IllegalStateException e) {
+                // disk full or journal closed: still record the click, through the in-memory queue
+                logger.warn("Click journal unavailable, queueing click for mapping {} in memory", urlMappingId, e);
+            }
+        }
+        if (shardCircuitBreaker.isOpen(ShardRouter.shardOf(urlMappingId))) {
+            buffer(new PendingClick(urlMappingId, context));
+            return;
+        }
+        executor.execute(() -> record(new PendingClick(urlMappingId, context)));
+    }
+
+    private void record(PendingClick click) {
+        try {
+            ingest(click.urlMappingId(), click.context());
+        } catch (RuntimeException e) {
+            // a deadlock or lock timeout doesn't open the breaker, but the click is retried all the same
+            if (ShardCircuitBreaker.isUnavailable(e) || e instanceof TransientDataAccessException) {
+                buffer(click);
+            } else {
+                logger.error("Failed to record click for mapping {}", click.urlMappingId(), e);
+            }
+        }
+    }
+
+    private void buffer(PendingClick click) {
+        if (!outageBuffer.offer(click) && droppedClicks.getAndIncrement() % 1000 == 0) {
+            logger.warn("Click outage buffer is full, dropping clicks ({} so far)", droppedClicks.get());
+        }
+    }
+
+    /**
+     * Hands the clicks buffered during a database outage back to the pool, those of shards whose breaker
+     * is still open go back into the buffer. Clicks that fail again are buffered again.
+     */
+    @Scheduled(fixedDelayString = "${analytics.ingestion.outage-retry-interval-ms:1000}")
+    public void retryBuffered() {
+        int retried = 0;
+        for (int remaining = outageBuffer.size(); remaining > 0; remaining--) {
+            PendingClick click = outageBuffer.poll();
+            if (click == null) {
+                break;
+            }
+            if (shardCircuitBreaker.isOpen(ShardRouter.shardOf(click.urlMappingId()))) {
+                buffer(click);
+                continue;
+            }
+            executor.execute(() -> record(click));
+            retried++;
+        }
+        if (retried > 0) {
+            logger.info("Retrying {} clicks buffered while the database was unavailable", retried);
+        }
+    }
+
+    public int getBufferedClicks() {
+        return outageBuffer.size();
+    }
+
+    // Applies the shard's clicks in the journal to the database in sequence order, one batch at a time.
+    // Every replayer reads the whole journal and skips the other shards' records: they are cheap to decode,
+    // and a shard that is down only holds up its own cursor.
+    private void replay(int shard) {
+        long next = journal.checkpointed(shard) + 1;
+        while (running) {
+            long to = Math.min(journal.written(), next + replayBatchSize - 1);
+            if (to < next) {
+                try {
+                    Thread.sleep(REPLAY_IDLE_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                continue;
+            }
+            for (JournalRecord record : journal.read(next, to)) {
+                if (replayShard(record.urlMappingId()) != shard) {
+                    continue;
+                }
+                if (!replay(record)) {
+                    return; // shutting down: the record is replayed on the next start
+                }
+                journal.checkpoint(shard, record.sequence());
+            }
+            journal.checkpoint(shard, to); // also covers the other shards' records and those skipped as corrupt
+            next = to + 1;
+        }
+    }
+
+    // clicks of an id that no configured shard holds go to shard 0's replayer, which logs and skips them
+    private int replayShard(long urlMappingId) {
+        int shard = ShardRouter.shardOf(urlMappingId);
+        return shard < shardCount ? shard : 0;
+    }
+
+    // false if replay was stopped before the record could be applied
+    private boolean replay(JournalRecord record) {
+        long backoffMs = 1000;
+        while (running) {
+            try {
+                ingest(record.urlMappingId(), record.context());
+                return true;
+            } catch (TransientDataAccessException | RecoverableDataAccessException
+                     | DataAccessResourceFailureException | CannotCreateTransactionException e) {
+                // database unavailable, or a deadlock: keep the click in the journal and retry it, in order
+                logger.warn("Could not replay journaled click {}, retrying in {} ms: {}", record.sequence(), backoffMs, e.getMessage());
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException interrupted) {
+                    return false;
+                }
+                backoffMs = Math.min(backoffMs * 2, MAX_REPLAY_BACKOFF_MS);
+            } catch (RuntimeException e) {
+                if (!running) {
+                    return false; // interrupted by shutdown, not a bad click
+                }
+                logger.error("Failed to record journaled click {} for mapping {}, skipping it", record.sequence(), record.urlMappingId(), e);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stores the enriched ClickEvent, increments the mapping's click count and then adds the visitor to the day's sketch.
+     * The click and the count are written in one transaction, so a failed attempt leaves neither behind
+     * and retrying it (from the outage buffer or the journal) can't record the click twice.
+     * Clicks of links deleted since the redirect are dropped.
+     */
+    void ingest(long urlMappingId, ClickContext context) {
+        int shard = ShardRouter.shardOf(urlMappingId);
+        ClickRecordEvent event = ClickRecordEvent.start(urlMappingId, shard);
+        try {
+            event.setRecorded(ingest(urlMappingId, shard, context));
+        } finally {
+            event.commit();
+        }
+    }
+
+    private boolean ingest(long urlMappingId, int shard, ClickContext context) {
+        ClickEvent clickEvent = new ClickEvent();
+        clickEvent.setClickDate(context.clickDate());
+        // the dictionary lives on shard 0, so dimensions are encoded before switching to the link's shard
+        clickEvent.setReferrerId(dimensionDictionary.encode(DimensionKind.REFERRER, referrerHost(context.referrer())));
+        clickEvent.setDeviceTypeId(dimensionDictionary.encode(DimensionKind.DEVICE_TYPE, userAgentParser.deviceType(context.userAgent())));
+        clickEvent.setCountryId(dimensionDictionary.encode(DimensionKind.COUNTRY, geoIpLookup.country(context.ipAddress())));
+        // clicks are stored next to their link; the transaction starts after the switch, on the link's shard
+        boolean recorded = shardCircuitBreaker.call(shard, () -> ShardContext.call(shard, () -> transactionTemplate.execute(status -> {
+            // First, so a click of a link deleted in the meantime (e.g. replayed late from the journal) is dropped
+            // instead of failing on the foreign key. The update also locks the row until commit, so the purge
+            // can't remove the link between the check and the insert. The count doubles as the analytics
+            // version (ETag); it becomes visible together with the click, at commit.
+            if (urlMappingRepository.incrementClickCount(urlMappingId, 1, LocalDateTime.now()) == 0) {
+                return false;
+            }
+            // only the foreign key is needed: a reference avoids loading the mapping
+            clickEvent.setUrlMapping(urlMappingRepository.getReferenceById(urlMappingId));
+            clickEventRepository.save(clickEvent);
+            return true;
+        })));
+        // Only once the click is committed: a failed attempt is retried and must not count the visitor ahead of it,
+        // and a dropped click must not leave a sketch behind that the link's purge would never remove
+        if (recorded) {
+            uniqueVisitorService.record(urlMappingId, context.clickDate().toLocalDate(), UniqueVisitorService.visitorHash(context));
+        }
+        return recorded;
+    }
+
+    // Only the host is kept ("https://www.google.com/search?q=..." -> "google.com"): full referrer URLs
+    // are nearly unique per click and would defeat the dictionary coding.
+    static String referrerHost(String referrer) {
+        if (referrer == null || referrer.isBlank()) {
+            return "direct";
+        }
+        try {
+            String host = URI.create(referrer.trim()).getHost();
+            if (host == null || host.isBlank()) {
+                return "unknown";
+            }
+            host = host.toLowerCase(Locale.ROOT);
+            if (host.startsWith("www.")) {
+                host = host.substring(4);
+            }
+            return host.length() > MAX_REFERRER_LENGTH ? host.substring(0, MAX_REFERRER_LENGTH) : host;
+        } catch (IllegalArgumentException e) {
+            return "unknown";
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (journal != null) {
+            // stop after the click being applied; the rest stays in the journal for the next start
+            running = false;
+            replayers.forEach(Thread::interrupt);
+            for (Thread replayer : replayers) {
+                replayer.join(TimeUnit.SECONDS.toMillis(10));
+            }
+            journal.close();
+        }
+        // Give queued clicks a chance to be written before the application stops
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("Click ingestion did not drain in time, {} clicks dropped", executor.shutdownNow().size());
+        }
+        if (!outageBuffer.isEmpty()) {
+            logger.warn("{} clicks buffered during a database outage were dropped", outageBuffer.size());
+        }
+    }
+
+    private record PendingClick(long urlMappingId, ClickContext context) {
+    }
+}
@@ -0,0 +1,95 @@
+package com.url.shortener.analytics;
+
+import com.url.shortener.models.ClickDimension;
+import com.url.shortener.models.DimensionKind;
+import com.url.shortener.repository.ClickDimensionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Translates analytics dimension values (referrer hosts, device types, country codes) to the small integer ids
+ * stored on each ClickEvent, and back. Both directions are cached, so after warm-up encoding a click
+ * touches the click_dimension table only for values never seen before.
+ */
+@Component
+public class DimensionDictionary {
+
+    private final ClickDimensionRepository clickDimensionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final LruCache<String, Integer> idsByValue;
+    private final LruCache<Integer, String> valuesById;
+
+    public DimensionDictionary(ClickDimensionRepository clickDimensionRepository,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${analytics.dimensions.cache-size:50000}") int cacheSize) {
+        this.clickDimensionRepository = clickDimensionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.idsByValue = new LruCache<>(cacheSize);
+        this.valuesById = new LruCache<>(cacheSize);
+    }
+
+    /**
+     * Returns the dictionary id of a value, creating the entry the first time the value is seen.
+     */
+    public Integer encode(DimensionKind kind, String value) {
+        String key = kind.name() + ':' + value;
+        Integer cached = idsByValue.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        return loadOrCreate(key, kind, value);
+    }
+
+    // Synchronized so two ingestion threads seeing the same new value don't both try to insert it
+    private synchronized Integer loadOrCreate(String key, DimensionKind kind, String value) {
+        Integer cached = idsByValue.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        // read-write transaction: the lookup must see the primary, a lagging replica would cause duplicate inserts
+        ClickDimension dimension = transactionTemplate.execute(status -> clickDimensionRepository.findByKindAndValue(kind, value))
+                .orElseGet(() -> create(kind, value));
+        idsByValue.put(key, dimension.getId());
+        valuesById.put(dimension.getId(), value);
+        return dimension.getId();
+    }
+
+    /**
+     * Returns the value behind a dictionary id, or "unknown" for null (clicks recorded without that dimension).
+     */
+    public String decode(Integer id) {
+        if (id == null) {
+            return "unknown";
+        }
+        String cached = valuesById.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        String value = clickDimensionRepository.findById(id).map(ClickDimension::getValue).orElse("unknown");
+        valuesById.put(id, value);
+        return value;
+    }
+
+    /**
+     * Returns the value behind a dictionary id if it is cached ("unknown" for null), without touching the database.
+     *
+     * @return the value, or null if it would have to be loaded
+     */
+    public String cached(Integer id) {
+        return id == null ? "unknown" : valuesById.get(id);
+    }
+
+    private ClickDimension create(DimensionKind kind, String value) {
+        ClickDimension dimension = new ClickDimension();
+        dimension.setKind(kind);
+        dimension.setValue(value);
+        try {
+            return clickDimensionRepository.save(dimension);
+        } catch (DataIntegrityViolationException e) {
+            // Another instance inserted the same value first: use its row
+            return transactionTemplate.execute(status -> clickDimensionRepository.findByKindAndValue(kind, value)).orElseThrow(() -> e);
+        }
+    }
+}
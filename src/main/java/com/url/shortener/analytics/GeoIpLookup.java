@@ -0,0 +1,163 @@
+package com.url.shortener.analytics;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Offline IPv4 -> country lookup, so clicks never wait on a third-party geo API.
+ * <p>
+ * Loads a CSV of IP ranges ("start,end,countryCode[,...]") such as the free DB-IP "IP to Country Lite"
+ * or IP2Location LITE DB1 files. Start/end may be dotted IPv4 addresses or their integer form; IPv6 rows are skipped.
+ * The ranges are kept in sorted primitive arrays and resolved with a binary search.
+ * Without a configured file every lookup returns {@link #UNKNOWN}.
+ */
+@Component
+public class GeoIpLookup {
+
+    public static final String UNKNOWN = "UNKNOWN";
+
+    private static final Logger logger = LoggerFactory.getLogger(GeoIpLookup.class);
+
+    private final String databasePath;
+
+    private long[] rangeStarts = new long[0];
+    private long[] rangeEnds = new long[0];
+    private String[] countries = new String[0];
+
+    public GeoIpLookup(@Value("${analytics.geo.database-path:}") String databasePath) {
+        this.databasePath = databasePath;
+    }
+
+    @PostConstruct
+    void load() throws IOException {
+        if (databasePath == null || databasePath.isBlank()) {
+            logger.info("No analytics.geo.database-path configured, click countries will be recorded as {}", UNKNOWN);
+            return;
+        }
+        record Range(long start, long end, String country) {}
+        List<Range> ranges = new ArrayList<>();
+        try (InputStream in = open(Path.of(databasePath));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] columns = line.split(",");
+                if (columns.length < 3 || columns[0].contains(":")) {
+                    continue; // IPv6 or malformed
+                }
+                long start = parseAddress(unquote(columns[0]));
+                long end = parseAddress(unquote(columns[1]));
+                String country = unquote(columns[2]).toUpperCase();
+                if (start < 0 || end < start || country.isEmpty() || country.equals("-")) {
+                    continue; // header line or unassigned range
+                }
+                ranges.add(new Range(start, end, country.intern()));
+            }
+        }
+        ranges.sort(Comparator.comparingLong(Range::start));
+        long[] starts = new long[ranges.size()];
+        long[] ends = new long[ranges.size()];
+        String[] codes = new String[ranges.size()];
+        for (int i = 0; i < ranges.size(); i++) {
+            starts[i] = ranges.get(i).start();
+            ends[i] = ranges.get(i).end();
+            codes[i] = ranges.get(i).country();
+        }
+        this.rangeStarts = starts;
+        this.rangeEnds = ends;
+        this.countries = codes;
+        logger.info("Loaded {} IPv4 ranges from {}", ranges.size(), databasePath);
+    }
+
+    /**
+     * @param ipAddress textual IP address, may be null
+     * @return ISO country code, or UNKNOWN for IPv6, private/unlisted addresses and unparseable input
+     */
+    public String country(String ipAddress) {
+        if (ipAddress == null) {
+            return UNKNOWN;
+        }
+        long address = parseAddress(ipAddress.trim());
+        if (address < 0) {
+            return UNKNOWN;
+        }
+        // Find the last range starting at or before the address, then check that it also ends after it
+        int low = 0;
+        int high = rangeStarts.length - 1;
+        int candidate = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (rangeStarts[mid] <= address) {
+                candidate = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return candidate >= 0 && address <= rangeEnds[candidate] ? countries[candidate] : UNKNOWN;
+    }
+
+    private static InputStream open(Path path) throws IOException {
+        InputStream in = Files.newInputStream(path);
+        return path.toString().endsWith(".gz") ? new GZIPInputStream(in) : in;
+    }
+
+    private static String unquote(String value) {
+        String trimmed = value.trim();
+        if (trimmed.length() >= 2 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+            return trimmed.substring(1, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    // Dotted IPv4 or its decimal integer form -> unsigned 32-bit value, -1 if it is neither
+    static long parseAddress(String value) {
+        if (value.isEmpty()) {
+            return -1;
+        }
+        if (value.indexOf('.') < 0) {
+            try {
+                long number = Long.parseLong(value);
+                return number >= 0 && number <= 0xFFFFFFFFL ? number : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        long result = 0;
+        int octets = 0;
+        int current = -1;
+        for (int i = 0; i <= value.length(); i++) {
+            char c = i < value.length() ? value.charAt(i) : '.';
+            if (c == '.') {
+                if (current < 0 || current > 255) {
+                    return -1;
+                }
+                result = (result << 8) | current;
+                octets++;
+                current = -1;
+            } else if (c >= '0' && c <= '9') {
+                current = (current < 0 ? 0 : current * 10) + (c - '0');
+                if (current > 255) {
+                    return -1;
+                }
+            } else {
+                return -1;
+            }
+        }
+        return octets == 4 ? result : -1;
+    }
+}
@@ -0,0 +1,7 @@
+package com.url.shortener.analytics;
+
+/**
+ * A frequently seen key with its estimated count. The true count lies in [count - error, count].
+ */
+public record HeavyHitter<K>(K key, long count, long error) {
+}
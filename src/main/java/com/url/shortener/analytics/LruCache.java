@@ -0,0 +1,40 @@
+package com.url.shortener.analytics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Small size-bounded cache that evicts the least recently used entry.
+ * Synchronized, which is fine for the background ingestion threads that use it.
+ */
+public class LruCache<K, V> {
+
+    private final Map<K, V> entries;
+
+    public LruCache(int maxSize) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    public synchronized void remove(K key) {
+        entries.remove(key);
+    }
+
+    // The loader runs under the lock, so only use it for cheap in-memory computations
+    public synchronized V computeIfAbsent(K key, Function<K, V> loader) {
+        return entries.computeIfAbsent(key, loader);
+    }
+}
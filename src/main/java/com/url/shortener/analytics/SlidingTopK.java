@@ -0,0 +1,59 @@
+package com.url.shortener.analytics;
+
+import java.util.*;
+
+/**
+ * Top-K over a sliding time window: the window is split into buckets, each with its own {@link SpaceSaving}
+ * summary. Old buckets are recycled as time moves on and queries merge the live ones.
+ * Memory is bounded by buckets x capacity counters. Not thread-safe.
+ */
+public class SlidingTopK<K> {
+
+    private final long bucketMillis;
+    private final int capacity;
+    private final SpaceSaving<K>[] buckets;
+    private final long[] bucketEpochs;
+
+    @SuppressWarnings("unchecked")
+    public SlidingTopK(long windowMillis, int bucketCount, int capacity) {
+        this.bucketMillis = Math.max(1, windowMillis / bucketCount);
+        this.capacity = capacity;
+        this.buckets = new SpaceSaving[bucketCount];
+        this.bucketEpochs = new long[bucketCount];
+        Arrays.fill(bucketEpochs, -1);
+    }
+
+    public void offer(K key, long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        int slot = (int) (epoch % buckets.length);
+        if (bucketEpochs[slot] != epoch) {
+            // the slot still holds a bucket from a previous lap around the ring: reuse it for the current one
+            if (buckets[slot] == null) {
+                buckets[slot] = new SpaceSaving<>(capacity);
+            } else {
+                buckets[slot].clear();
+            }
+            bucketEpochs[slot] = epoch;
+        }
+        buckets[slot].offer(key);
+    }
+
+    /**
+     * @return up to {@code k} keys with the highest counts in the window ending now, highest first
+     */
+    public List<HeavyHitter<K>> top(int k, long nowMillis) {
+        long currentEpoch = nowMillis / bucketMillis;
+        Map<K, Long> counts = new HashMap<>();
+        Map<K, Long> errors = new HashMap<>();
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] != null && bucketEpochs[i] > currentEpoch - buckets.length && bucketEpochs[i] <= currentEpoch) {
+                buckets[i].addTo(counts, errors);
+            }
+        }
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<K, Long>comparingByValue().reversed())
+                .limit(k)
+                .map(entry -> new HeavyHitter<>(entry.getKey(), entry.getValue(), errors.get(entry.getKey())))
+                .toList();
+    }
+}
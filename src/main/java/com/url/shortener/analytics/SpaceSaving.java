@@ -0,0 +1,81 @@
+package com.url.shortener.analytics;
+
+import java.util.*;
+
+/**
+ * Space-Saving heavy-hitters summary (Metwally et al.): tracks the most frequent keys of a stream
+ * using at most {@code capacity} counters, no matter how many distinct keys the stream contains.
+ * <p>
+ * When a new key arrives and all counters are taken, it replaces the key with the smallest count and inherits
+ * that count as its possible overestimation ("error"). Any key whose true count exceeds total/capacity is
+ * guaranteed to be tracked. Not thread-safe.
+ */
+public class SpaceSaving<K> {
+
+    private static final class Counter<K> {
+        final K key;
+        long count;
+        long error;
+        final long sequence;
+
+        Counter(K key, long count, long error, long sequence) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+            this.sequence = sequence;
+        }
+    }
+
+    private final int capacity;
+    private final Map<K, Counter<K>> counters = new HashMap<>();
+    // ordered by count, ties broken by insertion so the set never treats two counters as equal
+    private final TreeSet<Counter<K>> byCount = new TreeSet<>(
+            Comparator.<Counter<K>>comparingLong(c -> c.count).thenComparingLong(c -> c.sequence));
+    private long nextSequence;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void offer(K key) {
+        offer(key, 1);
+    }
+
+    public void offer(K key, long increment) {
+        Counter<K> counter = counters.get(key);
+        if (counter != null) {
+            byCount.remove(counter);
+            counter.count += increment;
+            byCount.add(counter);
+            return;
+        }
+        if (counters.size() < capacity) {
+            counter = new Counter<>(key, increment, 0, nextSequence++);
+        } else {
+            Counter<K> smallest = byCount.pollFirst();
+            counters.remove(smallest.key);
+            counter = new Counter<>(key, smallest.count + increment, smallest.count, nextSequence++);
+        }
+        counters.put(key, counter);
+        byCount.add(counter);
+    }
+
+    /**
+     * Adds this summary's counts and errors into the given accumulators (used to merge window buckets).
+     */
+    public void addTo(Map<K, Long> counts, Map<K, Long> errors) {
+        for (Counter<K> counter : counters.values()) {
+            counts.merge(counter.key, counter.count, Long::sum);
+            errors.merge(counter.key, counter.error, Long::sum);
+        }
+    }
+
+    public boolean isEmpty() {
+        return counters.isEmpty();
+    }
+
+    public void clear() {
+        counters.clear();
+        byCount.clear();
+    }
+}
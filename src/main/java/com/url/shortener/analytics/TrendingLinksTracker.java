@@ -0,0 +1,143 @@
+package com.url.shortener.analytics;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers "which links are hottest right now" without touching click_event.
+ * <p>
+ * Every redirect drops (mapping id, owner id) into a bounded queue, which is a single non-blocking offer on the
+ * request thread. One background thread feeds the clicks into Space-Saving summaries over sliding minute, hour
+ * and day windows, both globally and per user. Memory is bounded regardless of how many links exist: each
+ * summary has a fixed number of counters, and only the most recently active users get their own summaries.
+ * Counts are estimates; if the queue is ever full, clicks are left out of the trending view (never out of
+ * the real analytics).
+ */
+@Component
+public class TrendingLinksTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrendingLinksTracker.class);
+
+    private record Click(long urlMappingId, long userId, long timestamp) {}
+
+    private final int userCapacity;
+    private final BlockingQueue<Click> queue;
+    private final Map<TrendingWindow, SlidingTopK<Long>> global = new EnumMap<>(TrendingWindow.class);
+    private final LruCache<Long, Map<TrendingWindow, SlidingTopK<Long>>> perUser;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread worker;
+
+    public TrendingLinksTracker(@Value("${analytics.trending.capacity:1000}") int globalCapacity,
+                                @Value("${analytics.trending.user-capacity:50}") int userCapacity,
+                                @Value("${analytics.trending.max-users:10000}") int maxUsers,
+                                @Value("${analytics.trending.queue-capacity:65536}") int queueCapacity) {
+        this.userCapacity = userCapacity;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.perUser = new LruCache<>(maxUsers);
+        for (TrendingWindow window : TrendingWindow.values()) {
+            global.put(window, new SlidingTopK<>(window.getMillis(), window.getBuckets(), globalCapacity));
+        }
+        this.worker = new Thread(this::consume, "trending-links");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Called on the redirect path. Never blocks.
+     */
+    public void record(long urlMappingId, long userId) {
+        if (!queue.offer(new Click(urlMappingId, userId, System.currentTimeMillis()))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the hottest links across all users in the window, highest first
+     */
+    public List<HeavyHitter<Long>> topGlobal(TrendingWindow window, int k) {
+        SlidingTopK<Long> summary = global.get(window);
+        synchronized (summary) {
+            return summary.top(k, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * @return the hottest links of one user in the window, highest first
+     */
+    public List<HeavyHitter<Long>> topForUser(long userId, TrendingWindow window, int k) {
+        Map<TrendingWindow, SlidingTopK<Long>> summaries = perUser.get(userId);
+        if (summaries == null) {
+            return List.of();
+        }
+        SlidingTopK<Long> summary = summaries.get(window);
+        synchronized (summary) {
+            return summary.top(k, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Ids of the links that are hottest over the last minute and hour, e.g. to keep them pinned in a cache.
+     */
+    public Set<Long> hotMappingIds(int k) {
+        Set<Long> ids = new HashSet<>();
+        topGlobal(TrendingWindow.MINUTE, k).forEach(hitter -> ids.add(hitter.key()));
+        topGlobal(TrendingWindow.HOUR, k).forEach(hitter -> ids.add(hitter.key()));
+        return ids;
+    }
+
+    private void consume() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Click click = queue.poll(1, TimeUnit.SECONDS);
+                if (click != null) {
+                    apply(click);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                logger.error("Failed to update trending links", e);
+            }
+        }
+    }
+
+    private void apply(Click click) {
+        for (Map.Entry<TrendingWindow, SlidingTopK<Long>> entry : global.entrySet()) {
+            synchronized (entry.getValue()) {
+                entry.getValue().offer(click.urlMappingId(), click.timestamp());
+            }
+        }
+        Map<TrendingWindow, SlidingTopK<Long>> summaries = perUser.computeIfAbsent(click.userId(), userId -> {
+            Map<TrendingWindow, SlidingTopK<Long>> created = new EnumMap<>(TrendingWindow.class);
+            for (TrendingWindow window : TrendingWindow.values()) {
+                created.put(window, new SlidingTopK<>(window.getMillis(), window.getBuckets(), userCapacity));
+            }
+            return created;
+        });
+        for (SlidingTopK<Long> summary : summaries.values()) {
+            synchronized (summary) {
+                summary.offer(click.urlMappingId(), click.timestamp());
+            }
+        }
+    }
+
+    /**
+     * Clicks left out of the trending view because the queue was full.
+     */
+    public long getDroppedClicks() {
+        return dropped.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.interrupt();
+    }
+}
@@ -0,0 +1,41 @@
+package com.url.shortener.analytics;
+
+import com.url.shortener.exceptions.BadRequestException;
+
+/**
+ * The sliding windows trending links are tracked over, and how finely each one is bucketed.
+ */
+public enum TrendingWindow {
+    MINUTE(60_000L, 6),
+    HOUR(3_600_000L, 12),
+    DAY(86_400_000L, 24);
+
+    private final long millis;
+    private final int buckets;
+
+    TrendingWindow(long millis, int buckets) {
+        this.millis = millis;
+        this.buckets = buckets;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public int getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * Resolves the value of the "window" request parameter (minute, hour or day).
+     *
+     * @throws BadRequestException for anything else
+     */
+    public static TrendingWindow fromParam(String param) {
+        try {
+            return valueOf(param.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unknown window: " + param + " (expected minute, hour or day)");
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.url.shortener.analytics;
+
+import com.url.shortener.models.VisitorSketch;
+import com.url.shortener.repository.VisitorSketchRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Maintains per-link, per-day HyperLogLog sketches of visitors.
+ * <p>
+ * Clicks are added to in-memory sketches during ingestion; a scheduled flush merges them into the
+ * visitor_sketch table (read, merge, write with an optimistic lock). Merging is idempotent, so a flush that
+ * fails is simply retried with the pending sketch on the next run. Queries merge the stored sketches with the
+ * ones not flushed yet, so results are current. Stored sketches are read in bounded chunks of link ids through
+ * {@link ChunkedAggregationService}, each chunk merged into per-day (or whole range) sketches as it is read.
+ */
+@Service
+public class UniqueVisitorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UniqueVisitorService.class);
+    // visitor_sketch isn't sharded: it lives on shard 0 with the users
+    private static final int SKETCH_SHARD = 0;
+
+    private record Key(long urlMappingId, LocalDate day) {}
+
+    private final VisitorSketchRepository visitorSketchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ChunkedAggregationService chunkedAggregationService;
+    private final Map<Key, HyperLogLog> pending = new ConcurrentHashMap<>();
+
+    public UniqueVisitorService(VisitorSketchRepository visitorSketchRepository, TransactionTemplate transactionTemplate,
+                                ChunkedAggregationService chunkedAggregationService) {
+        this.visitorSketchRepository = visitorSketchRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkedAggregationService = chunkedAggregationService;
+    }
+
+    /**
+     * Identifies a visitor by IP address and User-Agent. No cookies or accounts, so this is approximate:
+     * people behind the same NAT with the same browser count once.
+     */
+    public static long visitorHash(ClickContext context) {
+        return HyperLogLog.hash(context.ipAddress() + '|' + context.userAgent());
+    }
+
+    /**
+     * Adds a visitor to the sketch of the link for that day.
+     */
+    public void record(long urlMappingId, LocalDate day, long visitorHash) {
+        // compute() is atomic with the flush's remove(), so no click lands in a sketch that was already flushed
+        pending.compute(new Key(urlMappingId, day), (key, sketch) -> {
+            HyperLogLog target = sketch != null ? sketch : new HyperLogLog();
+            synchronized (target) {
+                target.add(visitorHash);
+            }
+            return target;
+        });
+    }
+
+    /**
+     * Unique visitors per day across the given links. A visitor of two of the links on the same day counts once.
+     */
+    public Map<LocalDate, Long> dailyUniqueVisitors(Collection<Long> urlMappingIds, LocalDate startDay, LocalDate endDay) {
+        Map<LocalDate, HyperLogLog> byDay = chunkedAggregationService.reduce(new ArrayList<>(urlMappingIds), id -> SKETCH_SHARD,
+                chunk -> {
+                    Map<LocalDate, HyperLogLog> partial = new HashMap<>();
+                    for (VisitorSketch stored : visitorSketchRepository.findByUrlMappingIdInAndDayBetween(chunk, startDay, endDay)) {
+                        partial.computeIfAbsent(stored.getDay(), day -> new HyperLogLog()).merge(HyperLogLog.fromBytes(stored.getSketch()));
+                    }
+                    return partial;
+                },
+                HashMap::new, UniqueVisitorService::mergeByDay);
+        forEachPending(urlMappingIds, startDay, endDay,
+                (day, sketch) -> byDay.computeIfAbsent(day, d -> new HyperLogLog()).merge(sketch));
+        Map<LocalDate, Long> counts = new TreeMap<>();
+        byDay.forEach((day, sketch) -> counts.put(day, sketch.estimate()));
+        return counts;
+    }
+
+    /**
+     * Unique visitors over the whole range across the given links. A visitor seen on several days counts once.
+     */
+    public long uniqueVisitors(Collection<Long> urlMappingIds, LocalDate startDay, LocalDate endDay) {
+        HyperLogLog union = chunkedAggregationService.reduce(new ArrayList<>(urlMappingIds), id -> SKETCH_SHARD,
+                chunk -> {
+                    HyperLogLog partial = new HyperLogLog();
+                    for (VisitorSketch stored : visitorSketchRepository.findByUrlMappingIdInAndDayBetween(chunk, startDay, endDay)) {
+                        partial.merge(HyperLogLog.fromBytes(stored.getSketch()));
+                    }
+                    return partial;
+                },
+                HyperLogLog::new, HyperLogLog::merge);
+        forEachPending(urlMappingIds, startDay, endDay, (day, sketch) -> union.merge(sketch));
+        return union.estimate();
+    }
+
+    // Sketches not flushed yet
+    private void forEachPending(Collection<Long> urlMappingIds, LocalDate startDay, LocalDate endDay,
+                                BiConsumer<LocalDate, HyperLogLog> consumer) {
+        if (urlMappingIds.isEmpty()) {
+            return;
+        }
+        Set<Long> ids = urlMappingIds instanceof Set<Long> set ? set : new HashSet<>(urlMappingIds);
+        pending.forEach((key, sketch) -> {
+            if (ids.contains(key.urlMappingId()) && !key.day().isBefore(startDay) && !key.day().isAfter(endDay)) {
+                HyperLogLog copy = new HyperLogLog();
+                synchronized (sketch) {
+                    copy.merge(sketch);
+                }
+                consumer.accept(key.day(), copy);
+            }
+        });
+    }
+
+    private static void mergeByDay(Map<LocalDate, HyperLogLog> byDay, Map<LocalDate, HyperLogLog> partial) {
+        partial.forEach((day, sketch) -> byDay.merge(day, sketch, (current, added) -> {
+            current.merge(added);
+            return current;
+        }));
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.unique-visitors.flush-interval-ms:10000}")
+    public void flush() {
+        for (Key key : new ArrayList<>(pending.keySet())) {
+            HyperLogLog sketch = pending.remove(key);
+            if (sketch == null) {
+                continue;
+            }
+            HyperLogLog snapshot = new HyperLogLog();
+            synchronized (sketch) {
+                snapshot.merge(sketch);
+            }
+            try {
+                // read-modify-write in one read-write transaction, so the read comes from the primary, not a replica
+                transactionTemplate.executeWithoutResult(status -> {
+                    VisitorSketch stored = visitorSketchRepository.findByUrlMappingIdAndDay(key.urlMappingId(), key.day())
+                            .orElseGet(() -> {
+                                VisitorSketch created = new VisitorSketch();
+                                created.setUrlMappingId(key.urlMappingId());
+                                created.setDay(key.day());
+                                return created;
+                            });
+                    HyperLogLog merged = new HyperLogLog();
+                    merged.merge(snapshot);
+                    if (stored.getSketch() != null) {
+                        merged.merge(HyperLogLog.fromBytes(stored.getSketch()));
+                    }
+                    stored.setSketch(merged.toBytes());
+                    visitorSketchRepository.save(stored);
+                });
+            } catch (DataAccessException e) {
+                // concurrent writer or database hiccup: keep the sketch and retry on the next flush
+                logger.warn("Failed to flush visitor sketch for mapping {} on {}: {}", key.urlMappingId(), key.day(), e.getMessage());
+                pending.merge(key, snapshot, (current, retry) -> {
+                    synchronized (current) {
+                        current.merge(retry);
+                    }
+                    return current;
+                });
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
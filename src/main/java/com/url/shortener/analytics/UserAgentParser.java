@@ -0,0 +1,62 @@
+package com.url.shortener.analytics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Classifies a User-Agent header into a device type.
+ * Real traffic is dominated by a few thousand distinct User-Agent strings, so results are kept in an LRU cache
+ * and most clicks never run the string matching at all.
+ */
+@Component
+public class UserAgentParser {
+
+    public static final String BOT = "BOT";
+    public static final String MOBILE = "MOBILE";
+    public static final String TABLET = "TABLET";
+    public static final String DESKTOP = "DESKTOP";
+    public static final String UNKNOWN = "UNKNOWN";
+
+    private final LruCache<String, String> cache;
+
+    public UserAgentParser(@Value("${analytics.user-agent.cache-size:10000}") int cacheSize) {
+        this.cache = new LruCache<>(cacheSize);
+    }
+
+    /**
+     * @param userAgent raw User-Agent header, may be null
+     * @return one of BOT, MOBILE, TABLET, DESKTOP or UNKNOWN
+     */
+    public String deviceType(String userAgent) {
+        if (userAgent == null || userAgent.isBlank()) {
+            return UNKNOWN;
+        }
+        return cache.computeIfAbsent(userAgent, UserAgentParser::classify);
+    }
+
+    private static String classify(String userAgent) {
+        String ua = userAgent.toLowerCase(Locale.ROOT);
+        // Bots first: many crawlers also claim to be "Mozilla ... Mobile"
+        if (ua.contains("bot") || ua.contains("crawl") || ua.contains("spider") || ua.contains("slurp")
+                || ua.contains("facebookexternalhit") || ua.contains("curl/") || ua.contains("wget/")
+                || ua.contains("python-requests") || ua.contains("headless")) {
+            return BOT;
+        }
+        // Tablets before phones: iPads and Android tablets also contain "mobile"-ish tokens
+        if (ua.contains("ipad") || ua.contains("tablet") || ua.contains("kindle") || ua.contains("silk/")
+                || (ua.contains("android") && !ua.contains("mobile"))) {
+            return TABLET;
+        }
+        if (ua.contains("mobi") || ua.contains("iphone") || ua.contains("ipod") || ua.contains("android")
+                || ua.contains("windows phone") || ua.contains("blackberry") || ua.contains("opera mini")) {
+            return MOBILE;
+        }
+        if (ua.contains("windows") || ua.contains("macintosh") || ua.contains("x11") || ua.contains("linux")
+                || ua.contains("cros")) {
+            return DESKTOP;
+        }
+        return UNKNOWN;
+    }
+}
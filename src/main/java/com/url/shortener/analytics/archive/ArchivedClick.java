@@ -0,0 +1,11 @@
+package com.url.shortener.analytics.archive;
+
+import java.time.LocalDateTime;
+
+/**
+ * One click as stored in the columnar archive: the same data as a ClickEvent row, minus its row id.
+ * Dimension ids are the dictionary ids from click_dimension, null when the click had none.
+ */
+public record ArchivedClick(long urlMappingId, LocalDateTime clickDate,
+                            Integer referrerId, Integer deviceTypeId, Integer countryId) {
+}
@@ -0,0 +1,171 @@
+package com.url.shortener.analytics.archive;
+
+import com.url.shortener.repository.ClickEventRepository;
+import com.url.shortener.sharding.ShardContext;
+import com.url.shortener.sharding.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Nightly job moving clicks older than the configured horizon from click_event into the columnar archive.
+ * <p>
+ * Rows are read in click time order in small pages and written to archive files; once every shard is done the
+ * archive boundary moves, and only then are the archived rows deleted, by id, one page per statement, so no
+ * statement locks more than one page of rows. Pages are keyed by (click time, id) and start from the oldest
+ * click still in the table, not from where the last run ended: ids don't follow click time, and a click replayed
+ * late must still be archived. Every shard is compacted in turn into its own files.
+ * <p>
+ * Each file keeps the ids of its rows until they are deleted. If the process dies half way, the next run deletes
+ * the rows of files behind the boundary, and throws away files of a run that never moved it (their rows are all
+ * still in the table and are archived again).
+ * <p>
+ * Clicks of deleted links are left in the table for LinkPurgeService, and their archived clicks are removed
+ * through {@link #dropLinks}, so deleting a link or an account also deletes its clicks from the archive.
+ * Disabled by default: the archive directory must be on persistent storage.
+ */
+@Component
+public class ClickArchiveCompactionJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClickArchiveCompactionJob.class);
+    private static final LocalDateTime BEFORE_ALL_CLICKS = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final ClickEventRepository clickEventRepository;
+    private final ClickArchiveStore clickArchiveStore;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final boolean enabled;
+    private final int horizonDays;
+    private final int batchSize;
+    private final int rowsPerFile;
+
+    public ClickArchiveCompactionJob(ClickEventRepository clickEventRepository,
+                                     ClickArchiveStore clickArchiveStore,
+                                     TransactionTemplate transactionTemplate,
+                                     ShardRouter shardRouter,
+                                     @Value("${analytics.archive.enabled:false}") boolean enabled,
+                                     @Value("${analytics.archive.horizon-days:365}") int horizonDays,
+                                     @Value("${analytics.archive.batch-size:1000}") int batchSize,
+                                     @Value("${analytics.archive.rows-per-file:500000}") int rowsPerFile) {
+        this.clickEventRepository = clickEventRepository;
+        this.clickArchiveStore = clickArchiveStore;
+        this.transactionTemplate = transactionTemplate;
+        this.shardRouter = shardRouter;
+        this.enabled = enabled;
+        this.horizonDays = horizonDays;
+        this.batchSize = batchSize;
+        this.rowsPerFile = rowsPerFile;
+    }
+
+    @Scheduled(cron = "${analytics.archive.cron:0 30 3 * * *}")
+    public void compact() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        compact(LocalDate.now().minusDays(horizonDays).atStartOfDay());
+    }
+
+    /**
+     * Removes the archived clicks of deleted links (see ClickArchiveStore#drop). Waits for a compaction run
+     * that is going on: its files may hold clicks of these links read before they were deleted.
+     *
+     * @return number of archived clicks removed
+     */
+    public synchronized long dropLinks(Set<Long> urlMappingIds) throws IOException {
+        return clickArchiveStore.drop(urlMappingIds);
+    }
+
+    // Archives every click older than the cutoff; one run at a time, and never together with dropLinks
+    synchronized void compact(LocalDateTime cutoff) throws IOException {
+        finishPendingDeletions();
+        LocalDateTime currentBoundary = clickArchiveStore.getBoundary();
+        if (currentBoundary != null && !cutoff.isAfter(currentBoundary)) {
+            return;
+        }
+
+        long archived = 0;
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            int target = shard;
+            archived += ShardContext.call(shard, () -> archiveShard(target, cutoff));
+        }
+        // from here on the new files are read instead of their rows, which can go
+        clickArchiveStore.commitBoundary(cutoff);
+        finishPendingDeletions();
+        logger.info("Archived {} clicks older than {}", archived, cutoff);
+    }
+
+    // Deletes the rows of files behind the boundary; files of a run that died before moving it are discarded
+    private void finishPendingDeletions() throws IOException {
+        LocalDateTime boundary = clickArchiveStore.getBoundary();
+        for (PendingDeletion pending : clickArchiveStore.pendingDeletions()) {
+            LocalDateTime fileCutoff = ColumnarClickFile.fromMillis(pending.file().cutoff());
+            if (boundary == null || fileCutoff.isAfter(boundary)) {
+                clickArchiveStore.discard(pending);
+                continue;
+            }
+            long[] clickIds = clickArchiveStore.clickIds(pending);
+            ShardContext.run(pending.shard(), () -> {
+                for (int start = 0; start < clickIds.length; start += batchSize) {
+                    List<Long> page = Arrays.stream(clickIds, start, Math.min(start + batchSize, clickIds.length)).boxed().toList();
+                    clickEventRepository.deleteArchived(page);
+                }
+            });
+            clickArchiveStore.deleted(pending);
+        }
+    }
+
+    // Writes the clicks of one shard (the current one, see ShardContext) older than the cutoff to archive files
+    // and returns how many were archived; their rows are left in the table
+    private long archiveShard(int shard, LocalDateTime cutoff) {
+        try {
+            LocalDateTime afterClickDate = BEFORE_ALL_CLICKS;
+            long afterId = 0;
+            long archived = 0;
+            boolean done = false;
+            while (!done) {
+                List<ArchivedClick> clicks = new ArrayList<>();
+                List<Long> clickIds = new ArrayList<>();
+                while (clicks.size() < rowsPerFile) {
+                    // pages are read from the primary: a replica may not have seen the latest (late) clicks yet
+                    LocalDateTime pageAfterClickDate = afterClickDate;
+                    long pageAfterId = afterId;
+                    List<ClickEventRow> page = transactionTemplate.execute(status ->
+                            clickEventRepository.findArchivable(pageAfterClickDate, pageAfterId, cutoff, PageRequest.of(0, batchSize)));
+                    for (ClickEventRow row : page) {
+                        clicks.add(row.toArchivedClick());
+                        clickIds.add(row.id());
+                    }
+                    if (!page.isEmpty()) {
+                        afterClickDate = page.getLast().clickDate();
+                        afterId = page.getLast().id();
+                    }
+                    if (page.size() < batchSize) {
+                        done = true;
+                        break;
+                    }
+                }
+                if (clicks.isEmpty()) {
+                    break;
+                }
+                clickArchiveStore.append(shard, clicks, clickIds.stream().mapToLong(Long::longValue).toArray(), cutoff);
+                archived += clicks.size();
+            }
+            return archived;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.url.shortener.analytics.archive;
+
+import java.nio.file.Path;
+
+/**
+ * Per-file statistics stored uncompressed at the start of every archive file.
+ * Scans use them to skip whole files without decompressing anything.
+ *
+ * @param path the archive file
+ * @param rowCount number of clicks in the file
+ * @param minTime earliest click time (epoch millis, clock time read as UTC)
+ * @param maxTime latest click time (epoch millis, clock time read as UTC)
+ * @param minMappingId smallest url mapping id in the file
+ * @param maxMappingId largest url mapping id in the file
+ * @param minClickId smallest click_event id that was moved into this file
+ * @param maxClickId largest click_event id that was moved into this file
+ * @param cutoff archive horizon (epoch millis) of the compaction run that wrote the file: its clicks are older
+ */
+public record ClickArchiveHeader(Path path, int rowCount, long minTime, long maxTime,
+                                 long minMappingId, long maxMappingId,
+                                 long minClickId, long maxClickId, long cutoff) {
+
+    boolean overlaps(long from, long to) {
+        return rowCount > 0 && maxTime >= from && minTime <= to;
+    }
+
+    // The same stats for the file at another path (a file written under a temporary name, then moved)
+    ClickArchiveHeader at(Path other) {
+        return new ClickArchiveHeader(other, rowCount, minTime, maxTime, minMappingId, maxMappingId, minClickId, maxClickId, cutoff);
+    }
+}
@@ -0,0 +1,273 @@
+package com.url.shortener.analytics.archive;
+
+import com.url.shortener.models.DimensionKind;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * The on-disk archive of old clicks, one columnar file per compaction batch.
+ * <p>
+ * The archive and the live click_event table are split at the <em>boundary</em>: every click older than it lives
+ * in the archive, everything at or after it in the table. Analytics read [start, boundary) from here and
+ * [boundary, end] from the database, so a click is never counted twice. A compaction run writes its files first,
+ * then moves the boundary, and only then deletes the archived rows from the table: until the boundary moves they
+ * are counted from the table, afterwards from the archive, and rows older than the boundary that are still in the
+ * table are never read. A click that reaches the table late (replayed from the journal or the outage buffer) with
+ * a time before the boundary is invisible until the next run archives it.
+ * <p>
+ * The archive is local disk of this instance, while compaction deletes rows from the shared database. With several
+ * instances, either put the directory on storage they all share, or enable the archive (and so the compaction) on
+ * one instance only and accept that the others don't see archived clicks; never let two instances compact into
+ * separate directories, or each would lose the clicks the other one archived.
+ */
+@Component
+public class ClickArchiveStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClickArchiveStore.class);
+    private static final String FILE_SUFFIX = ".clka";
+    private static final String IDS_SUFFIX = ".ids";
+    private static final String BOUNDARY_FILE = "BOUNDARY";
+
+    private final Path directory;
+    private final List<ClickArchiveHeader> files = new CopyOnWriteArrayList<>();
+    private volatile LocalDateTime boundary;
+
+    public ClickArchiveStore(@Value("${analytics.archive.directory:./data/click-archive}") String directory) {
+        this.directory = Path.of(directory);
+    }
+
+    @PostConstruct
+    void load() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<Path> paths;
+        try (Stream<Path> listing = Files.list(directory)) {
+            paths = listing.sorted().toList();
+        }
+        for (Path path : paths) {
+            if (path.toString().endsWith(FILE_SUFFIX)) {
+                files.add(ColumnarClickFile.readHeader(path));
+            } else if (path.toString().endsWith(FILE_SUFFIX + IDS_SUFFIX) && !Files.exists(archiveOf(path))) {
+                // ids written, then the process died before the file itself: its rows were never touched
+                Files.delete(path);
+            }
+        }
+        Path boundaryFile = directory.resolve(BOUNDARY_FILE);
+        if (Files.exists(boundaryFile)) {
+            boundary = LocalDateTime.parse(Files.readString(boundaryFile, StandardCharsets.UTF_8).trim());
+        }
+        logger.info("Click archive: {} files, boundary {}", files.size(), boundary);
+    }
+
+    /**
+     * @return the time before which clicks are read from the archive, or null if nothing has been archived yet
+     */
+    public LocalDateTime getBoundary() {
+        return boundary;
+    }
+
+    /**
+     * @return where a live-table query for a range starting at {@code start} should begin
+     */
+    public LocalDateTime liveStart(LocalDateTime start) {
+        LocalDateTime current = boundary;
+        return current != null && current.isAfter(start) ? current : start;
+    }
+
+    /**
+     * Writes a new archive file with clicks of one shard, after the ids of their click_event rows: the file then
+     * stays a {@link PendingDeletion} until {@link #deleted} is called for it.
+     * Its clicks from the boundary on stay invisible to analytics until {@link #commitBoundary} moves past them.
+     *
+     * @param clickIds ids of the click_event rows the clicks were read from
+     */
+    public ClickArchiveHeader append(int shard, List<ArchivedClick> clicks, long[] clickIds, LocalDateTime cutoff) throws IOException {
+        Files.createDirectories(directory);
+        long minClickId = Arrays.stream(clickIds).min().orElse(0);
+        long maxClickId = Arrays.stream(clickIds).max().orElse(0);
+        // shard 0 keeps the names it had before sharding
+        String name = shard == 0
+                ? String.format("clicks-%020d-%020d%s", minClickId, maxClickId, FILE_SUFFIX)
+                : String.format("clicks-%d-%020d-%020d%s", shard, minClickId, maxClickId, FILE_SUFFIX);
+        Path path = directory.resolve(name);
+        ColumnarClickFile.writeClickIds(idsOf(path), clickIds);
+        ClickArchiveHeader header = ColumnarClickFile.write(path, clicks, minClickId, maxClickId, cutoff);
+        files.add(header);
+        return header;
+    }
+
+    /**
+     * @return the archive files whose rows may not have been deleted from click_event yet, oldest first
+     */
+    public List<PendingDeletion> pendingDeletions() {
+        List<PendingDeletion> pending = new ArrayList<>();
+        for (ClickArchiveHeader header : files) {
+            Path clickIds = idsOf(header.path());
+            if (Files.exists(clickIds)) {
+                pending.add(new PendingDeletion(header, clickIds, shardOf(header.path())));
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * @return ids of the click_event rows moved into the file, ascending
+     */
+    public long[] clickIds(PendingDeletion pending) throws IOException {
+        return ColumnarClickFile.readClickIds(pending.clickIds());
+    }
+
+    /**
+     * Records that the file's rows are gone from click_event.
+     */
+    public void deleted(PendingDeletion pending) throws IOException {
+        Files.deleteIfExists(pending.clickIds());
+    }
+
+    /**
+     * Removes a file whose rows were never deleted from click_event (its compaction run died before moving the
+     * boundary), so they can be archived again without being counted twice.
+     */
+    public void discard(PendingDeletion pending) throws IOException {
+        files.remove(pending.file());
+        Files.deleteIfExists(pending.file().path());
+        Files.deleteIfExists(pending.clickIds());
+    }
+
+    // Inverse of the naming in append: "clicks-<min>-<max>" is shard 0, "clicks-<shard>-<min>-<max>" any other
+    static int shardOf(Path archive) {
+        String[] parts = archive.getFileName().toString().split("-");
+        return parts.length == 4 ? Integer.parseInt(parts[1]) : 0;
+    }
+
+    private static Path idsOf(Path archive) {
+        return archive.resolveSibling(archive.getFileName() + IDS_SUFFIX);
+    }
+
+    private static Path archiveOf(Path clickIds) {
+        String name = clickIds.getFileName().toString();
+        return clickIds.resolveSibling(name.substring(0, name.length() - IDS_SUFFIX.length()));
+    }
+
+    /**
+     * Removes the archived clicks of the given (deleted) links. Files holding any of them are rewritten without
+     * them under a temporary name and moved over the original, so a concurrent scan reads either the old or the new
+     * file; files that don't hold them are skipped on their mapping dictionary, without decompressing them.
+     * Must not run while a compaction run is appending files (see ClickArchiveCompactionJob#dropLinks).
+     *
+     * @return number of clicks removed
+     */
+    public long drop(Set<Long> urlMappingIds) throws IOException {
+        if (urlMappingIds.isEmpty()) {
+            return 0;
+        }
+        long minId = Collections.min(urlMappingIds);
+        long maxId = Collections.max(urlMappingIds);
+        long removed = 0;
+        for (ClickArchiveHeader header : files) {
+            if (header.rowCount() == 0 || header.maxMappingId() < minId || header.minMappingId() > maxId) {
+                continue;
+            }
+            LocalDateTime first = ColumnarClickFile.fromMillis(header.minTime());
+            LocalDateTime last = ColumnarClickFile.fromMillis(header.maxTime());
+            long[] dropped = new long[1];
+            ColumnarClickFile.scan(header, urlMappingIds, first, last, click -> dropped[0]++);
+            if (dropped[0] == 0) {
+                continue;
+            }
+            List<ArchivedClick> kept = new ArrayList<>(header.rowCount());
+            ColumnarClickFile.scan(header, null, first, last, click -> {
+                if (!urlMappingIds.contains(click.urlMappingId())) {
+                    kept.add(click);
+                }
+            });
+            // the click ids stay: they still describe which click_event rows the file was made of
+            Path temporary = header.path().resolveSibling(header.path().getFileName() + ".tmp");
+            ClickArchiveHeader rewritten = ColumnarClickFile.write(temporary, kept, header.minClickId(), header.maxClickId(),
+                    ColumnarClickFile.fromMillis(header.cutoff()));
+            Files.move(temporary, header.path(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            files.set(files.indexOf(header), rewritten.at(header.path()));
+            removed += dropped[0];
+        }
+        return removed;
+    }
+
+    /**
+     * Records that every click older than {@code newBoundary} is now in the archive.
+     */
+    public void commitBoundary(LocalDateTime newBoundary) throws IOException {
+        Files.createDirectories(directory);
+        Path temporary = directory.resolve(BOUNDARY_FILE + ".tmp");
+        Files.writeString(temporary, newBoundary.toString(), StandardCharsets.UTF_8);
+        Files.move(temporary, directory.resolve(BOUNDARY_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        boundary = newBoundary;
+    }
+
+    /**
+     * Streams archived clicks of the given mappings within [from, to], clamped to the boundary.
+     *
+     * @param urlMappingIds mappings to include, or null for all
+     */
+    public void scan(Set<Long> urlMappingIds, LocalDateTime from, LocalDateTime to, Consumer<ArchivedClick> consumer) {
+        LocalDateTime current = boundary;
+        if (current == null || !from.isBefore(current) || (urlMappingIds != null && urlMappingIds.isEmpty())) {
+            return;
+        }
+        LocalDateTime end = to.isBefore(current) ? to : current.minusNanos(1_000_000);
+        long minId = urlMappingIds == null ? Long.MIN_VALUE : Collections.min(urlMappingIds);
+        long maxId = urlMappingIds == null ? Long.MAX_VALUE : Collections.max(urlMappingIds);
+        for (ClickArchiveHeader header : files) {
+            // per-file stats: skip files whose id or time range can't match without opening them
+            if (header.maxMappingId() < minId || header.minMappingId() > maxId) {
+                continue;
+            }
+            try {
+                ColumnarClickFile.scan(header, urlMappingIds, from, end, consumer);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read click archive " + header.path(), e);
+            }
+        }
+    }
+
+    /**
+     * Archived click counts per day for the given mappings within [from, to].
+     */
+    public Map<LocalDate, Long> countByDay(Set<Long> urlMappingIds, LocalDateTime from, LocalDateTime to) {
+        Map<LocalDate, Long> counts = new HashMap<>();
+        scan(urlMappingIds, from, to, click -> counts.merge(click.clickDate().toLocalDate(), 1L, Long::sum));
+        return counts;
+    }
+
+    /**
+     * Archived click counts for the given mappings within [from, to], grouped by one dimension's dictionary id.
+     */
+    public Map<Integer, Long> countByDimension(DimensionKind kind, Set<Long> urlMappingIds, LocalDateTime from, LocalDateTime to) {
+        Map<Integer, Long> counts = new HashMap<>();
+        scan(urlMappingIds, from, to, click -> {
+            Integer id = switch (kind) {
+                case REFERRER -> click.referrerId();
+                case DEVICE_TYPE -> click.deviceTypeId();
+                case COUNTRY -> click.countryId();
+            };
+            counts.merge(id, 1L, Long::sum);
+        });
+        return counts;
+    }
+}
@@ -0,0 +1,14 @@
+package com.url.shortener.analytics.archive;
+
+import java.time.LocalDateTime;
+
+/**
+ * A click_event row read for archiving, without loading the ClickEvent entity and its UrlMapping.
+ */
+public record ClickEventRow(Long id, LocalDateTime clickDate, Long urlMappingId,
+                            Integer referrerId, Integer deviceTypeId, Integer countryId) {
+
+    public ArchivedClick toArchivedClick() {
+        return new ArchivedClick(urlMappingId, clickDate, referrerId, deviceTypeId, countryId);
+    }
+}
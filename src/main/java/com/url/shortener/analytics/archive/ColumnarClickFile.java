@@ -0,0 +1,311 @@
+package com.url.shortener.analytics.archive;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Reads and writes the compressed, column-oriented click archive format.
+ * <pre>
+ * header (uncompressed)   magic "CLKA", version, ClickArchiveHeader stats
+ * dictionary (uncompressed) distinct url mapping ids, sorted, delta-encoded varints
+ * body (deflate)          one column after the other, all varints:
+ *                           click times     first value, then deltas (rows are sorted by time)
+ *                           mapping         index into the dictionary
+ *                           referrer        dictionary id + 1 (0 = none)
+ *                           device type     dictionary id + 1 (0 = none)
+ *                           country         dictionary id + 1 (0 = none)
+ * </pre>
+ * Sorted timestamps turn into deltas of a few bytes and similar values sit next to each other,
+ * so a click takes a handful of bytes on disk instead of a full row plus indexes.
+ * The mapping dictionary is kept outside the compressed body so a scan can tell from it alone
+ * whether a file contains any of the links it is looking for.
+ * <p>
+ * Next to a file that was just written sits its click id list ({@link #writeClickIds}): the click_event rows
+ * the file holds, to be deleted from the live table. It is removed once they are.
+ * <pre>
+ * magic "CLKI", id count, ids sorted and delta-encoded as varints
+ * </pre>
+ */
+public final class ColumnarClickFile {
+
+    private static final int MAGIC = 0x434C4B41; // "CLKA"
+    private static final byte VERSION = 1;
+    private static final int IDS_MAGIC = 0x434C4B49; // "CLKI"
+
+    private ColumnarClickFile() {
+    }
+
+    /**
+     * Writes the clicks to a new archive file. The file is written under a temporary name, synced to disk
+     * and then atomically renamed, so a crash never leaves a half-written archive behind.
+     *
+     * @param target final file name
+     * @param clicks clicks to archive (any order)
+     * @param minClickId smallest click_event id among the clicks
+     * @param maxClickId largest click_event id among the clicks
+     * @param cutoff archive horizon the clicks were selected with
+     * @return the header stats of the written file
+     */
+    public static ClickArchiveHeader write(Path target, List<ArchivedClick> clicks,
+                                           long minClickId, long maxClickId, LocalDateTime cutoff) throws IOException {
+        List<ArchivedClick> rows = new ArrayList<>(clicks);
+        rows.sort(Comparator.comparing(ArchivedClick::clickDate));
+
+        long[] mappingDictionary = rows.stream().mapToLong(ArchivedClick::urlMappingId).distinct().sorted().toArray();
+        long minTime = rows.isEmpty() ? 0 : toMillis(rows.getFirst().clickDate());
+        long maxTime = rows.isEmpty() ? 0 : toMillis(rows.getLast().clickDate());
+        ClickArchiveHeader header = new ClickArchiveHeader(target, rows.size(), minTime, maxTime,
+                mappingDictionary.length == 0 ? 0 : mappingDictionary[0],
+                mappingDictionary.length == 0 ? 0 : mappingDictionary[mappingDictionary.length - 1],
+                minClickId, maxClickId, toMillis(cutoff));
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(body, new Deflater(Deflater.BEST_COMPRESSION)))) {
+            long previous = 0;
+            for (ArchivedClick row : rows) {
+                long time = toMillis(row.clickDate());
+                writeVarLong(out, time - previous);
+                previous = time;
+            }
+            for (ArchivedClick row : rows) {
+                writeVarLong(out, Arrays.binarySearch(mappingDictionary, row.urlMappingId()));
+            }
+            for (ArchivedClick row : rows) {
+                writeVarLong(out, encodeNullable(row.referrerId()));
+            }
+            for (ArchivedClick row : rows) {
+                writeVarLong(out, encodeNullable(row.deviceTypeId()));
+            }
+            for (ArchivedClick row : rows) {
+                writeVarLong(out, encodeNullable(row.countryId()));
+            }
+        }
+
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(header.rowCount());
+            out.writeLong(header.minTime());
+            out.writeLong(header.maxTime());
+            out.writeLong(header.minMappingId());
+            out.writeLong(header.maxMappingId());
+            out.writeLong(header.minClickId());
+            out.writeLong(header.maxClickId());
+            out.writeLong(header.cutoff());
+            out.writeInt(mappingDictionary.length);
+            long previous = 0;
+            for (long mappingId : mappingDictionary) {
+                writeVarLong(out, mappingId - previous);
+                previous = mappingId;
+            }
+            out.writeInt(body.size());
+            body.writeTo(out);
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        return header;
+    }
+
+    /**
+     * Writes the ids of the click_event rows moved into an archive file, durably and atomically like the file itself.
+     */
+    public static void writeClickIds(Path target, long[] clickIds) throws IOException {
+        long[] sorted = clickIds.clone();
+        Arrays.sort(sorted);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(IDS_MAGIC);
+            out.writeInt(sorted.length);
+            long previous = 0;
+            for (long id : sorted) {
+                writeVarLong(out, id - previous);
+                previous = id;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a click id list written by {@link #writeClickIds}, in ascending order.
+     */
+    public static long[] readClickIds(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != IDS_MAGIC) {
+                throw new IOException("Not a click id list: " + path);
+            }
+            long[] ids = new long[in.readInt()];
+            long previous = 0;
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = previous + readVarLong(in);
+                previous = ids[i];
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Reads only the header stats of an archive file.
+     */
+    public static ClickArchiveHeader readHeader(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 128))) {
+            return readHeader(path, in);
+        }
+    }
+
+    /**
+     * Streams the clicks of one file that belong to the given mappings and fall within [from, to].
+     *
+     * @param header header of the file to scan
+     * @param urlMappingIds mappings to include, or null for all
+     * @param from earliest click time to include
+     * @param to latest click time to include
+     * @param consumer receives matching clicks in time order
+     */
+    public static void scan(ClickArchiveHeader header, Set<Long> urlMappingIds, LocalDateTime from, LocalDateTime to,
+                            Consumer<ArchivedClick> consumer) throws IOException {
+        long fromMillis = toMillis(from);
+        long toMillis = toMillis(to);
+        if (!header.overlaps(fromMillis, toMillis)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(header.path())))) {
+            // the file's own header: the file may have been rewritten (see ClickArchiveStore#drop) since the given one was read
+            ClickArchiveHeader stored = readHeader(header.path(), in);
+            long[] mappingDictionary = new long[in.readInt()];
+            boolean[] wanted = new boolean[mappingDictionary.length];
+            boolean anyWanted = false;
+            long previous = 0;
+            for (int i = 0; i < mappingDictionary.length; i++) {
+                mappingDictionary[i] = previous + readVarLong(in);
+                previous = mappingDictionary[i];
+                wanted[i] = urlMappingIds == null || urlMappingIds.contains(mappingDictionary[i]);
+                anyWanted |= wanted[i];
+            }
+            if (!anyWanted) {
+                return; // none of the requested links are in this file: skip decompression entirely
+            }
+
+            byte[] compressed = in.readNBytes(in.readInt());
+            DataInputStream body = new DataInputStream(new ByteArrayInputStream(inflate(compressed)));
+            int rows = stored.rowCount();
+            long[] times = new long[rows];
+            previous = 0;
+            for (int i = 0; i < rows; i++) {
+                times[i] = previous + readVarLong(body);
+                previous = times[i];
+            }
+            int[] mappings = readColumn(body, rows);
+            int[] referrers = readColumn(body, rows);
+            int[] deviceTypes = readColumn(body, rows);
+            int[] countries = readColumn(body, rows);
+
+            for (int i = 0; i < rows; i++) {
+                if (times[i] < fromMillis || !wanted[mappings[i]]) {
+                    continue;
+                }
+                if (times[i] > toMillis) {
+                    break; // rows are in time order
+                }
+                consumer.accept(new ArchivedClick(mappingDictionary[mappings[i]], fromMillis(times[i]),
+                        decodeNullable(referrers[i]), decodeNullable(deviceTypes[i]), decodeNullable(countries[i])));
+            }
+        }
+    }
+
+    private static ClickArchiveHeader readHeader(Path path, DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a click archive file: " + path);
+        }
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported click archive version " + version + ": " + path);
+        }
+        return new ClickArchiveHeader(path, in.readInt(), in.readLong(), in.readLong(), in.readLong(),
+                in.readLong(), in.readLong(), in.readLong(), in.readLong());
+    }
+
+    private static int[] readColumn(DataInputStream in, int rows) throws IOException {
+        int[] values = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            values[i] = (int) readVarLong(in);
+        }
+        return values;
+    }
+
+    private static byte[] inflate(byte[] compressed) throws IOException {
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+        byte[] buffer = new byte[64 * 1024];
+        try {
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated click archive body");
+                }
+                out.write(buffer, 0, n);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt click archive body", e);
+        } finally {
+            inflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    private static long encodeNullable(Integer id) {
+        return id == null ? 0 : id.longValue() + 1;
+    }
+
+    private static Integer decodeNullable(int value) {
+        return value == 0 ? null : value - 1;
+    }
+
+    // Timestamps are stored as the wall-clock time read as UTC, i.e. exactly the LocalDateTime in the database
+    static long toMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), (int) Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    // Unsigned LEB128: 7 bits per byte, small values take a single byte
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint in click archive");
+    }
+}
@@ -0,0 +1,14 @@
+package com.url.shortener.analytics.archive;
+
+import java.nio.file.Path;
+
+/**
+ * An archive file whose click_event rows may still be in the live table, with the list of their ids.
+ *
+ * @param file the archive file
+ * @param clickIds the file's click id list, removed once the rows are deleted
+ * @param shard the shard whose click_event rows the file holds (from the file name: the stats of a file
+ *              rewritten without any rows say nothing about it)
+ */
+public record PendingDeletion(ClickArchiveHeader file, Path clickIds, int shard) {
+}
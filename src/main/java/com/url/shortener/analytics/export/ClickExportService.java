@@ -0,0 +1,218 @@
+package com.url.shortener.analytics.export;
+
+import com.url.shortener.analytics.DimensionDictionary;
+import com.url.shortener.analytics.archive.ArchivedClick;
+import com.url.shortener.analytics.archive.ClickArchiveStore;
+import com.url.shortener.config.ReadOnlyTransactionTemplate;
+import com.url.shortener.models.UrlMapping;
+import com.url.shortener.models.User;
+import com.url.shortener.profiling.AnalyticsEvent;
+import com.url.shortener.repository.UrlMappingRepository;
+import com.url.shortener.service.ShortUrlCodec;
+import com.url.shortener.sharding.ShardContext;
+import com.url.shortener.sharding.ShardRouter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Streams raw clicks of a link or of all a user's links to an output stream, for customers' own BI.
+ * <p>
+ * Live clicks are read with plain JDBC through a forward-only, read-only server-side cursor (one per shard,
+ * in a read-only transaction so it runs on a replica) and written out row by row as they arrive, without
+ * building entities or lists: memory stays constant whether the range holds a thousand clicks or hundreds of
+ * millions. The fetch size bounds how many rows the driver buffers; MySQL only streams with Integer.MIN_VALUE.
+ * Clicks older than the archive boundary are streamed from the columnar archive first.
+ * Rows come in no particular order, so the database never has to sort the range.
+ */
+@Service
+public class ClickExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClickExportService.class);
+
+    private static final String COLUMNS = "select click_date, url_mapping_id, referrer_id, device_type_id, country_id from click_event";
+    private static final String LINK_QUERY = COLUMNS + " where url_mapping_id = ? and click_date between ? and ?";
+    private static final String USER_QUERY = COLUMNS
+            + " where url_mapping_id in (select id from url_mapping where user_id = ? and deleted_at is null) and click_date between ? and ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadOnlyTransactionTemplate readOnlyTransactionTemplate;
+    private final UrlMappingRepository urlMappingRepository;
+    private final ClickArchiveStore clickArchiveStore;
+    private final DimensionDictionary dimensionDictionary;
+    private final ShardRouter shardRouter;
+    private final int fetchSize;
+    private final ExecutorService dictionaryExecutor;
+
+    public ClickExportService(JdbcTemplate jdbcTemplate,
+                              ReadOnlyTransactionTemplate readOnlyTransactionTemplate,
+                              UrlMappingRepository urlMappingRepository,
+                              ClickArchiveStore clickArchiveStore,
+                              DimensionDictionary dimensionDictionary,
+                              ShardRouter shardRouter,
+                              @Value("${analytics.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransactionTemplate = readOnlyTransactionTemplate;
+        this.urlMappingRepository = urlMappingRepository;
+        this.clickArchiveStore = clickArchiveStore;
+        this.dimensionDictionary = dimensionDictionary;
+        this.shardRouter = shardRouter;
+        this.fetchSize = fetchSize;
+        this.dictionaryExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "click-export-dictionary");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return the id of the link with this short URL if the user owns it, otherwise null
+     */
+    public Long findOwnedLink(String shortUrl, User user) {
+        int shard = shardRouter.shardOf(shortUrl);
+        if (shard < 0) {
+            return null;
+        }
+        return ShardContext.call(shard, () -> readOnlyTransactionTemplate.execute(status -> {
+            UrlMapping urlMapping = urlMappingRepository.findByShortUrl(shortUrl);
+            // only the owner's id is compared, the user itself isn't loaded
+            return urlMapping != null && urlMapping.getUser().getId().equals(user.getId()) ? urlMapping.getId() : null;
+        }));
+    }
+
+    /**
+     * Writes the clicks of one link with from <= click time <= to.
+     *
+     * @return number of clicks written
+     */
+    public long exportLink(long urlMappingId, LocalDateTime from, LocalDateTime to, ExportFormat format, OutputStream out) throws IOException {
+        AnalyticsEvent event = AnalyticsEvent.start("export");
+        ClickExportWriter writer = new ClickExportWriter(out, format);
+        writeArchived(Set.of(urlMappingId), from, to, writer);
+        LocalDateTime liveStart = clickArchiveStore.liveStart(from);
+        if (!liveStart.isAfter(to)) {
+            stream(ShardRouter.shardOf(urlMappingId), LINK_QUERY, writer, urlMappingId, liveStart, to);
+        }
+        long rows = writer.finish();
+        event.setShortUrl(ShortUrlCodec.encode(urlMappingId));
+        event.setLinks(1);
+        event.finish(from, to, rows, rows);
+        return rows;
+    }
+
+    /**
+     * Writes the clicks of all the user's links with from <= click time <= to, one shard after the other.
+     *
+     * @return number of clicks written
+     */
+    public long exportUser(User user, LocalDateTime from, LocalDateTime to, ExportFormat format, OutputStream out) throws IOException {
+        AnalyticsEvent event = AnalyticsEvent.start("export");
+        ClickExportWriter writer = new ClickExportWriter(out, format);
+        LocalDateTime boundary = clickArchiveStore.getBoundary();
+        if (boundary != null && from.isBefore(boundary)) {
+            // the archive is searched by link id, the live tables by owner
+            Set<Long> urlMappingIds = new HashSet<>();
+            shardRouter.onEveryShard(shard -> readOnlyTransactionTemplate.execute(status -> urlMappingRepository.findIdsByUser(user)))
+                    .forEach(urlMappingIds::addAll);
+            writeArchived(urlMappingIds, from, to, writer);
+        }
+        LocalDateTime liveStart = clickArchiveStore.liveStart(from);
+        if (!liveStart.isAfter(to)) {
+            for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+                stream(shard, USER_QUERY, writer, user.getId(), liveStart, to);
+            }
+        }
+        long rows = writer.finish();
+        event.setUserId(user.getId());
+        event.finish(from, to, rows, rows);
+        return rows;
+    }
+
+    private void writeArchived(Set<Long> urlMappingIds, LocalDateTime from, LocalDateTime to, ClickExportWriter writer) throws IOException {
+        try {
+            clickArchiveStore.scan(urlMappingIds, from, to, click -> write(writer, click));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void write(ClickExportWriter writer, ArchivedClick click) {
+        try {
+            writer.write(click.clickDate(), ShortUrlCodec.encode(click.urlMappingId()), decode(click.referrerId()),
+                    decode(click.deviceTypeId()), decode(click.countryId()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // One forward-only cursor over the shard's matching rows, each row written out as soon as it is read
+    private void stream(int shard, String sql, ClickExportWriter writer, Object... parameters) throws IOException {
+        RowCallbackHandler handler = resultSet -> {
+            try {
+                writer.write(resultSet.getObject(1, LocalDateTime.class), ShortUrlCodec.encode(resultSet.getLong(2)),
+                        decode(resultSet.getObject(3, Integer.class)), decode(resultSet.getObject(4, Integer.class)),
+                        decode(resultSet.getObject(5, Integer.class)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        try {
+            ShardContext.run(shard, () -> readOnlyTransactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.query(connection -> prepareCursor(connection, sql, parameters), handler)));
+        } catch (UncheckedIOException e) {
+            // typically the client went away; the transaction is rolled back and the cursor closed
+            logger.debug("Click export aborted: {}", e.getCause().getMessage());
+            throw e.getCause();
+        }
+    }
+
+    private PreparedStatement prepareCursor(Connection connection, String sql, Object... parameters) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        // PostgreSQL uses a cursor for a fetch size inside a transaction; MySQL streams only with MIN_VALUE
+        String product = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+        statement.setFetchSize(product.contains("mysql") || product.contains("mariadb") ? Integer.MIN_VALUE : fetchSize);
+        for (int i = 0; i < parameters.length; i++) {
+            statement.setObject(i + 1, parameters[i]);
+        }
+        return statement;
+    }
+
+    private String decode(Integer id) {
+        String value = dimensionDictionary.cached(id);
+        if (value != null) {
+            return value;
+        }
+        // the dictionary lives on shard 0 and this thread may be inside a transaction on another shard,
+        // so a value that isn't cached yet is looked up from a thread outside it (rare once the cache is warm)
+        try {
+            return CompletableFuture.supplyAsync(() -> dimensionDictionary.decode(id), dictionaryExecutor).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dictionaryExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,92 @@
+package com.url.shortener.analytics.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+/**
+ * Writes exported clicks one at a time to an output stream, as CSV or NDJSON.
+ * Only a fixed-size buffer is held, so memory doesn't grow with the number of clicks.
+ */
+class ClickExportWriter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ExportFormat format;
+    private final Writer writer;
+    private final JsonGenerator json;
+    private long rows;
+
+    ClickExportWriter(OutputStream out, ExportFormat format) throws IOException {
+        this.format = format;
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        if (format == ExportFormat.NDJSON) {
+            this.json = JSON_FACTORY.createGenerator(writer);
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.setRootValueSeparator(new SerializedString("\n"));
+        } else {
+            this.json = null;
+            writer.write("clicked_at,short_url,referrer,device_type,country\n");
+        }
+    }
+
+    void write(LocalDateTime clickedAt, String shortUrl, String referrer, String deviceType, String country) throws IOException {
+        if (json != null) {
+            json.writeStartObject();
+            json.writeStringField("clickedAt", clickedAt.toString());
+            json.writeStringField("shortUrl", shortUrl);
+            json.writeStringField("referrer", referrer);
+            json.writeStringField("deviceType", deviceType);
+            json.writeStringField("country", country);
+            json.writeEndObject();
+        } else {
+            writer.write(clickedAt.toString());
+            writer.write(',');
+            writer.write(shortUrl);
+            writer.write(',');
+            writeCsvValue(referrer);
+            writer.write(',');
+            writeCsvValue(deviceType);
+            writer.write(',');
+            writeCsvValue(country);
+            writer.write('\n');
+        }
+        rows++;
+    }
+
+    /**
+     * Writes out what is still buffered. The output stream itself stays open.
+     *
+     * @return number of clicks written
+     */
+    long finish() throws IOException {
+        if (json != null) {
+            json.flush();
+            if (rows > 0) {
+                writer.write('\n');
+            }
+        }
+        writer.flush();
+        return rows;
+    }
+
+    // RFC 4180: values containing a separator, quote or line break are quoted, quotes doubled
+    private void writeCsvValue(String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
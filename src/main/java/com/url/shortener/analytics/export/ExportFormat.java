@@ -0,0 +1,42 @@
+package com.url.shortener.analytics.export;
+
+import com.url.shortener.exceptions.BadRequestException;
+
+/**
+ * Output formats of the raw click export.
+ */
+public enum ExportFormat {
+    /** Comma-separated values with a header row. */
+    CSV("text/csv", "csv"),
+    /** One JSON object per line (newline-delimited JSON). */
+    NDJSON("application/x-ndjson", "ndjson");
+
+    private final String contentType;
+    private final String fileExtension;
+
+    ExportFormat(String contentType, String fileExtension) {
+        this.contentType = contentType;
+        this.fileExtension = fileExtension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    /**
+     * Resolves the value of the "format" request parameter (csv or ndjson).
+     *
+     * @throws BadRequestException for anything else
+     */
+    public static ExportFormat fromParam(String param) {
+        return switch (param.toLowerCase()) {
+            case "csv" -> CSV;
+            case "ndjson", "jsonl" -> NDJSON;
+            default -> throw new BadRequestException("Unknown format: " + param + " (expected csv or ndjson)");
+        };
+    }
+}
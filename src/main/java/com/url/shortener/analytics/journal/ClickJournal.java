@@ -0,0 +1,444 @@
+package com.url.shortener.analytics.journal;
+
+import com.url.shortener.analytics.ClickContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only, memory-mapped journal of clicks on local disk.
+ * <pre>
+ * clicks-&lt;first sequence&gt;.journal   segments of a fixed number of 1 KB records, preallocated and mapped
+ * checkpoint, checkpoint-&lt;n&gt;        per cursor: sequence of the last record it applied to the database (8 bytes, mapped)
+ *
+ * record   crc32c (of the rest), sequence, url mapping id, click time (epoch second + nano, UTC wall clock),
+ *          then IP, referrer and User-Agent as length-prefixed UTF-8 in fixed-size slots (-1 = null)
+ * </pre>
+ * An append is a copy into the mapped segment, so it survives a crash of the JVM as soon as it returns
+ * (the pages belong to the kernel). A flusher thread forces the active segment and the checkpoint to disk
+ * every sync interval, which bounds what an OS crash or power loss can take; callers that need more wait
+ * for that group commit with {@link #awaitDurable(long)}, and one fsync covers every record appended meanwhile.
+ * <p>
+ * On open the tail of the last segment is validated record by record (checksum and expected sequence):
+ * a torn or missing record ends the journal and the next append overwrites it.
+ * <p>
+ * Several readers can consume the journal independently, each with its own cursor (checkpoint);
+ * a segment is deleted once every cursor has checkpointed all of its records.
+ */
+public class ClickJournal implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClickJournal.class);
+
+    static final int RECORD_SIZE = 1024;
+    private static final int IP_BYTES = 64;
+    private static final int REFERRER_BYTES = 400;
+    private static final int USER_AGENT_BYTES = 512;
+    private static final int HEADER_BYTES = 32; // crc, sequence, mapping id, epoch second, nano
+    private static final String SEGMENT_PREFIX = "clicks-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final MappedByteBuffer[] checkpointBuffers;
+    private final Object durability = new Object();
+    private final Thread flusher;
+
+    // written under "this": the active segment and the next sequence to hand out
+    private volatile Segment active;
+    private long nextSequence;
+    // last sequence fully written / forced to disk / applied to the database
+    private volatile long written;
+    private volatile long durable;
+    private final AtomicLongArray checkpoints;
+    private volatile boolean closed;
+
+    /**
+     * Opens (or creates) the journal in the given directory, recovering its state from the files.
+     *
+     * @param directory directory holding the segments and the checkpoint
+     * @param recordsPerSegment records per segment file (the file size is this times 1 KB)
+     * @param syncIntervalMs how often appended records are forced to disk
+     */
+    public ClickJournal(Path directory, int recordsPerSegment, long syncIntervalMs) throws IOException {
+        this(directory, recordsPerSegment, syncIntervalMs, 1);
+    }
+
+    /**
+     * Opens (or creates) the journal with the given number of cursors. A cursor that didn't exist yet
+     * (the journal was used with fewer) starts at cursor 0's checkpoint.
+     *
+     * @param cursors number of independent readers, each with its own checkpoint
+     */
+    public ClickJournal(Path directory, int recordsPerSegment, long syncIntervalMs, int cursors) throws IOException {
+        if (recordsPerSegment < 1 || recordsPerSegment > Integer.MAX_VALUE / RECORD_SIZE || syncIntervalMs < 1 || cursors < 1) {
+            throw new IllegalArgumentException("Journal segment size must be between 1 and 2 million records, the sync interval and cursors positive");
+        }
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        Files.createDirectories(directory);
+        this.checkpointBuffers = new MappedByteBuffer[cursors];
+        this.checkpoints = new AtomicLongArray(cursors);
+        for (int cursor = 0; cursor < cursors; cursor++) {
+            Path file = directory.resolve(cursor == 0 ? "checkpoint" : "checkpoint-" + cursor);
+            boolean created = !Files.exists(file);
+            checkpointBuffers[cursor] = map(file, Long.BYTES);
+            if (created && cursor > 0) {
+                checkpointBuffers[cursor].putLong(0, checkpoints.get(0));
+            }
+            checkpoints.set(cursor, checkpointBuffers[cursor].getLong(0));
+        }
+        recover();
+
+        this.flusher = new Thread(() -> flushLoop(syncIntervalMs), "click-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    private void recover() throws IOException {
+        long checkpointed = checkpointed();
+        long furthest = checkpointed;
+        for (int cursor = 0; cursor < checkpoints.length(); cursor++) {
+            furthest = Math.max(furthest, checkpoints.get(cursor));
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(ClickJournal::isSegment).toList()) {
+                String name = file.getFileName().toString();
+                long first = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                // existing segments keep their own size, even if the configured one has changed since
+                Segment segment = new Segment(first, map(file, Files.size(file)));
+                if (segment.last() <= checkpointed) {
+                    Files.delete(file); // fully applied before the last shutdown or crash
+                } else {
+                    segments.put(first, segment);
+                }
+            }
+        }
+        // Earlier segments were complete when they were rolled over; only the last one can end in a torn record
+        long last = furthest;
+        if (!segments.isEmpty()) {
+            Segment segment = segments.lastEntry().getValue();
+            last = segment.first - 1;
+            while (last < segment.last() && decode(segment, last + 1) != null) {
+                last++;
+            }
+        }
+        // an OS crash can lose journal pages that had already been applied: never hand out those sequences again
+        written = Math.max(last, furthest);
+        durable = written;
+        nextSequence = written + 1;
+        active = segmentFor(nextSequence);
+        if (written > checkpointed) {
+            logger.info("Click journal recovered {} clicks to replay ({} segments)", written - checkpointed, segments.size());
+        }
+    }
+
+    /**
+     * Appends a click. Returns once the record is in the mapped segment (safe from a JVM crash),
+     * usually before it has been forced to disk.
+     *
+     * @return the record's sequence, for {@link #awaitDurable(long)}
+     */
+    public synchronized long append(long urlMappingId, ClickContext context) {
+        if (closed) {
+            throw new IllegalStateException("Click journal is closed");
+        }
+        long sequence = nextSequence;
+        if (sequence > active.last()) {
+            roll(sequence);
+        }
+        active.buffer.put(active.offset(sequence), encode(sequence, urlMappingId, context));
+        nextSequence = sequence + 1;
+        written = sequence; // publishes the record to the reader
+        return sequence;
+    }
+
+    // The full segment is forced before the next one is used, so only the active segment ever needs recovery
+    private void roll(long first) {
+        active.buffer.force();
+        try {
+            active = segmentFor(first);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create click journal segment", e);
+        }
+        markDurable(first - 1);
+    }
+
+    private Segment segmentFor(long sequence) throws IOException {
+        Segment existing = segmentContaining(sequence);
+        if (existing != null) {
+            return existing;
+        }
+        Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+        Segment segment = new Segment(sequence, map(file, (long) recordsPerSegment * RECORD_SIZE));
+        synchronized (segments) {
+            segments.put(sequence, segment);
+        }
+        return segment;
+    }
+
+    /**
+     * Waits until the record with the given sequence has been forced to disk.
+     */
+    public void awaitDurable(long sequence) throws InterruptedException {
+        synchronized (durability) {
+            while (durable < sequence && !closed) {
+                durability.wait();
+            }
+        }
+    }
+
+    private void flushLoop(long syncIntervalMs) {
+        while (!closed) {
+            try {
+                Thread.sleep(syncIntervalMs);
+                flush();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Failed to sync click journal", e);
+            }
+        }
+    }
+
+    private void flush() {
+        long target = written;
+        if (target > durable) {
+            Segment segment;
+            synchronized (this) {
+                segment = active;
+            }
+            segment.buffer.force();
+            markDurable(Math.min(target, segment.last()));
+        }
+        for (MappedByteBuffer checkpointBuffer : checkpointBuffers) {
+            checkpointBuffer.force();
+        }
+    }
+
+    private void markDurable(long sequence) {
+        synchronized (durability) {
+            if (sequence > durable) {
+                durable = sequence;
+                durability.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Reads the records in [fromSequence, toSequence] in sequence order.
+     * Records that fail their checksum are logged and left out.
+     *
+     * @param fromSequence first sequence to read
+     * @param toSequence last sequence to read, at most {@link #written()}
+     */
+    public List<JournalRecord> read(long fromSequence, long toSequence) {
+        if (toSequence > written) {
+            throw new IllegalArgumentException("Click journal record " + toSequence + " has not been written yet");
+        }
+        List<JournalRecord> records = new ArrayList<>();
+        for (long sequence = fromSequence; sequence <= toSequence; sequence++) {
+            Segment segment = segmentContaining(sequence);
+            JournalRecord record = segment == null ? null : decode(segment, sequence);
+            if (record == null) {
+                logger.error("Click journal record {} is corrupt or missing, skipping it", sequence);
+                continue;
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * Records that all records up to and including the given sequence have been applied,
+     * and deletes segments that are no longer needed. Cheap: a write into the mapped checkpoint file,
+     * forced to disk together with the next group commit.
+     */
+    public void checkpoint(long sequence) {
+        for (int cursor = 0; cursor < checkpoints.length(); cursor++) {
+            checkpoint(cursor, sequence);
+        }
+    }
+
+    /**
+     * Records that the given cursor has applied all records up to and including the given sequence,
+     * and deletes the segments that every cursor is done with.
+     */
+    public void checkpoint(int cursor, long sequence) {
+        checkpointBuffers[cursor].putLong(0, sequence);
+        checkpoints.set(cursor, sequence);
+        long applied = checkpointed();
+        List<Segment> deletable = new ArrayList<>();
+        synchronized (segments) {
+            while (!segments.isEmpty()) {
+                Segment oldest = segments.firstEntry().getValue();
+                if (oldest.last() > applied || oldest == active) {
+                    break;
+                }
+                deletable.add(segments.pollFirstEntry().getValue());
+            }
+        }
+        for (Segment segment : deletable) {
+            try {
+                Files.deleteIfExists(directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment.first, SEGMENT_SUFFIX)));
+            } catch (IOException e) {
+                logger.warn("Could not delete click journal segment starting at {}", segment.first, e);
+            }
+        }
+    }
+
+    /** @return sequence of the last record applied to the database by every cursor */
+    public long checkpointed() {
+        long checkpointed = checkpoints.get(0);
+        for (int cursor = 1; cursor < checkpoints.length(); cursor++) {
+            checkpointed = Math.min(checkpointed, checkpoints.get(cursor));
+        }
+        return checkpointed;
+    }
+
+    /** @return sequence of the last record applied to the database by the given cursor */
+    public long checkpointed(int cursor) {
+        return checkpoints.get(cursor);
+    }
+
+    /** @return sequence of the last record appended */
+    public long written() {
+        return written;
+    }
+
+    /** @return sequence of the last record forced to disk */
+    public long durable() {
+        return durable;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        flusher.interrupt();
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        synchronized (durability) {
+            durability.notifyAll();
+        }
+    }
+
+    private static byte[] encode(long sequence, long urlMappingId, ClickContext context) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.putInt(0);
+        record.putLong(sequence);
+        record.putLong(urlMappingId);
+        record.putLong(context.clickDate().toEpochSecond(ZoneOffset.UTC));
+        record.putInt(context.clickDate().getNano());
+        putString(record, context.ipAddress(), IP_BYTES);
+        putString(record, context.referrer(), REFERRER_BYTES);
+        putString(record, context.userAgent(), USER_AGENT_BYTES);
+        record.putInt(0, checksum(record.array()));
+        return record.array();
+    }
+
+    // null when the slot doesn't hold a valid record with this sequence (never written, torn, or corrupt)
+    private static JournalRecord decode(Segment segment, long sequence) {
+        byte[] bytes = new byte[RECORD_SIZE];
+        segment.buffer.get(segment.offset(sequence), bytes);
+        ByteBuffer record = ByteBuffer.wrap(bytes);
+        if (record.getInt() != checksum(bytes) || record.getLong() != sequence) {
+            return null;
+        }
+        long urlMappingId = record.getLong();
+        LocalDateTime clickDate = LocalDateTime.ofEpochSecond(record.getLong(), record.getInt(), ZoneOffset.UTC);
+        String ipAddress = getString(record, IP_BYTES);
+        String referrer = getString(record, REFERRER_BYTES);
+        String userAgent = getString(record, USER_AGENT_BYTES);
+        return new JournalRecord(sequence, urlMappingId, new ClickContext(clickDate, ipAddress, userAgent, referrer));
+    }
+
+    private static int checksum(byte[] record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record, Integer.BYTES, RECORD_SIZE - Integer.BYTES);
+        return (int) crc.getValue();
+    }
+
+    // Length-prefixed UTF-8 in a fixed slot; longer values are cut at a character boundary
+    private static void putString(ByteBuffer record, String value, int slot) {
+        int start = record.position();
+        if (value == null) {
+            record.putShort((short) -1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            int length = Math.min(bytes.length, slot);
+            while (length < bytes.length && length > 0 && (bytes[length] & 0xC0) == 0x80) {
+                length--;
+            }
+            record.putShort((short) length);
+            record.put(bytes, 0, length);
+        }
+        record.position(start + Short.BYTES + slot);
+    }
+
+    private static String getString(ByteBuffer record, int slot) {
+        int start = record.position();
+        short length = record.getShort();
+        String value = length < 0 ? null : new String(record.array(), record.position(), length, StandardCharsets.UTF_8);
+        record.position(start + Short.BYTES + slot);
+        return value;
+    }
+
+    private static boolean isSegment(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static MappedByteBuffer map(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private Segment segmentContaining(long sequence) {
+        synchronized (segments) {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(sequence);
+            return entry == null || sequence > entry.getValue().last() ? null : entry.getValue();
+        }
+    }
+
+    private record Segment(long first, MappedByteBuffer buffer) {
+        long last() {
+            return first + buffer.capacity() / RECORD_SIZE - 1;
+        }
+
+        int offset(long sequence) {
+            return (int) (sequence - first) * RECORD_SIZE;
+        }
+    }
+
+    static {
+        if (HEADER_BYTES + 3 * Short.BYTES + IP_BYTES + REFERRER_BYTES + USER_AGENT_BYTES > RECORD_SIZE) {
+            throw new AssertionError("Click journal record layout exceeds the record size");
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.url.shortener.analytics.journal;
+
+import com.url.shortener.analytics.ClickContext;
+
+/**
+ * A click as read back from the journal.
+ *
+ * @param sequence position of the record in the journal (1, 2, 3, ... across all segments)
+ * @param urlMappingId id of the mapping that was clicked
+ * @param context raw request data of the click (long header values may have been truncated)
+ */
+public record JournalRecord(long sequence, long urlMappingId, ClickContext context) {
+}
@@ -0,0 +1,135 @@
+package com.url.shortener.config;
+
+import com.url.shortener.sharding.ShardProperties;
+import com.url.shortener.sharding.ShardRoutingDataSource;
+import com.url.shortener.sharding.ShardSchemaIntegrator;
+import com.url.shortener.sharding.ShardSet;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data source setup with read/write splitting.
+ * <p>
+ * spring.datasource.* is the primary and receives all writes. Read-only transactions (analytics,
+ * redirect lookups) go to the replicas in app.datasource.replicas, each with its own connection pool.
+ * Replicas that are down or lag too far behind are skipped (see ReplicaLagMonitor), and with no healthy
+ * replica the primary serves the reads. Users' own lists of links are read from the primary, so they always
+ * include the user's latest changes.
+ * <p>
+ * url_mapping and click_event can additionally be spread over the shards in app.sharding.shards (see ShardRouter).
+ * The primary, with its replicas, is shard 0 and keeps everything that isn't sharded.
+ * <p>
+ * The primary and shard pools wait at most app.datasource.connection-timeout-ms for a connection. Hikari's default
+ * of 30 s would hold request threads (and the redirects queued behind a single-flight lookup) for that long while
+ * a database is down, before the circuit breaker and the fallbacks get a chance to step in.
+ */
+@Configuration
+@EnableConfigurationProperties({ReplicaProperties.class, ShardProperties.class})
+public class DataSourceConfig {
+
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource")
+    public DataSourceProperties dataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    // spring.datasource.hikari.* still applies to the primary pool, and overrides the connection timeout set here
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties,
+                                              @Value("${app.datasource.connection-timeout-ms:1500}") long connectionTimeoutMs) {
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        dataSource.setConnectionTimeout(connectionTimeoutMs);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaSet replicaSet(ReplicaProperties replicaProperties) {
+        List<ReplicaSet.Replica> replicas = new ArrayList<>();
+        for (ReplicaProperties.Replica config : replicaProperties.getReplicas()) {
+            if (config.getUrl() == null || config.getUrl().isBlank()) {
+                continue;
+            }
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("replica-" + replicas.size());
+            dataSource.setJdbcUrl(config.getUrl());
+            dataSource.setUsername(config.getUsername());
+            dataSource.setPassword(config.getPassword());
+            dataSource.setMaximumPoolSize(config.getMaximumPoolSize());
+            dataSource.setConnectionTimeout(config.getConnectionTimeoutMs());
+            dataSource.setReadOnly(true);
+            // don't fail startup because a replica is down; the lag monitor marks it unhealthy instead
+            dataSource.setInitializationFailTimeout(-1);
+            replicas.add(new ReplicaSet.Replica(dataSource.getPoolName(), dataSource));
+        }
+        return new ReplicaSet(replicas);
+    }
+
+    @Bean
+    public ShardSet shardSet(ShardProperties shardProperties,
+                             @Value("${app.datasource.connection-timeout-ms:1500}") long connectionTimeoutMs) {
+        Map<Integer, HikariDataSource> dataSources = new HashMap<>();
+        for (Map.Entry<Integer, ShardProperties.Shard> entry : shardProperties.getShards().entrySet()) {
+            int shard = entry.getKey();
+            ShardProperties.Shard config = entry.getValue();
+            // ids of shard k start at k * 2^36, so a gap would leave links that no shard can route to
+            if (shard < 1 || shard > shardProperties.getShards().size()) {
+                throw new IllegalStateException("app.sharding.shards must be numbered 1, 2, ... without gaps, got " + shard);
+            }
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("shard-" + shard);
+            dataSource.setJdbcUrl(config.getUrl());
+            dataSource.setUsername(config.getUsername());
+            dataSource.setPassword(config.getPassword());
+            dataSource.setMaximumPoolSize(config.getMaximumPoolSize());
+            dataSource.setConnectionTimeout(config.getConnectionTimeoutMs() != null ? config.getConnectionTimeoutMs() : connectionTimeoutMs);
+            dataSources.put(shard, dataSource);
+        }
+        return new ShardSet(dataSources);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaSet replicaSet, ShardSet shardSet) {
+        Map<Integer, DataSource> shards = new HashMap<>(shardSet.getDataSources());
+        shards.put(0, new ReadWriteRoutingDataSource(primaryDataSource, replicaSet));
+        return new LazyConnectionDataSourceProxy(new ShardRoutingDataSource(shards));
+    }
+
+    // creates the schema on the other shards too, and gives each shard its own id range
+    @Bean
+    public HibernatePropertiesCustomizer shardSchemaCustomizer(ShardSet shardSet) {
+        ShardSchemaIntegrator integrator = new ShardSchemaIntegrator(shardSet.getDataSources());
+        return properties -> properties.put("hibernate.integrator_provider", (IntegratorProvider) () -> List.of(integrator));
+    }
+
+    @Bean
+    @Primary
+    public TransactionTemplate transactionTemplate(PlatformTransactionManager transactionManager) {
+        return new TransactionTemplate(transactionManager);
+    }
+
+    @Bean
+    public ReadOnlyTransactionTemplate readOnlyTransactionTemplate(PlatformTransactionManager transactionManager) {
+        return new ReadOnlyTransactionTemplate(transactionManager);
+    }
+}
@@ -0,0 +1,16 @@
+package com.url.shortener.config;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * TransactionTemplate for read-only work, which the routing data source sends to a replica.
+ * A separate type so it can't be injected by accident where a read-write template is expected.
+ */
+public class ReadOnlyTransactionTemplate extends TransactionTemplate {
+
+    public ReadOnlyTransactionTemplate(PlatformTransactionManager transactionManager) {
+        super(transactionManager);
+        setReadOnly(true);
+    }
+}
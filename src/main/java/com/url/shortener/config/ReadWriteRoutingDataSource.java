@@ -0,0 +1,45 @@
+package com.url.shortener.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sends connections for read-only transactions (@Transactional(readOnly = true)) to a healthy replica,
+ * everything else to the primary.
+ * <p>
+ * Must sit behind a LazyConnectionDataSourceProxy: the read-only flag is only set after the transaction manager
+ * has asked for a connection, so the real connection has to be fetched lazily, at the first statement.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private final ReplicaSet replicaSet;
+
+    public ReadWriteRoutingDataSource(DataSource primary, ReplicaSet replicaSet) {
+        this.replicaSet = replicaSet;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (ReplicaSet.Replica replica : replicaSet.getReplicas()) {
+            targets.put(replica.getName(), replica.getDataSource());
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            ReplicaSet.Replica replica = replicaSet.choose();
+            if (replica != null) {
+                return replica.getName();
+            }
+        }
+        return PRIMARY;
+    }
+}
@@ -0,0 +1,64 @@
+package com.url.shortener.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Periodically checks every replica and takes it out of rotation while it is unreachable or lags behind
+ * the primary by more than app.datasource.max-lag-seconds, so reads never see badly stale data.
+ */
+@Component
+public class ReplicaLagMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private final ReplicaSet replicaSet;
+    private final ReplicaProperties replicaProperties;
+
+    public ReplicaLagMonitor(ReplicaSet replicaSet, ReplicaProperties replicaProperties) {
+        this.replicaSet = replicaSet;
+        this.replicaProperties = replicaProperties;
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.check-interval-ms:5000}")
+    public void check() {
+        for (ReplicaSet.Replica replica : replicaSet.getReplicas()) {
+            boolean wasHealthy = replica.isHealthy();
+            double lag;
+            boolean healthy;
+            try (Connection connection = replica.getDataSource().getConnection()) {
+                lag = measureLag(connection);
+                healthy = lag <= replicaProperties.getMaxLagSeconds();
+            } catch (SQLException e) {
+                lag = Double.NaN;
+                healthy = false;
+            }
+            replica.update(healthy, lag);
+            if (wasHealthy != healthy) {
+                logger.warn("Replica {} is now {} (lag {} s)", replica.getName(), healthy ? "in rotation" : "out of rotation", lag);
+            }
+        }
+    }
+
+    private double measureLag(Connection connection) throws SQLException {
+        String lagQuery = replicaProperties.getLagQuery();
+        if (lagQuery == null || lagQuery.isBlank()) {
+            if (!connection.isValid(2)) {
+                throw new SQLException("Replica connection is not valid");
+            }
+            return 0;
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(lagQuery)) {
+            // no row / NULL: not replicating (e.g. pointed at a primary) or nothing replayed yet
+            return resultSet.next() ? resultSet.getDouble(1) : 0;
+        }
+    }
+}
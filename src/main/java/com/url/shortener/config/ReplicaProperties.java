@@ -0,0 +1,40 @@
+package com.url.shortener.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas that read-only transactions are routed to (app.datasource.*).
+ * With no replicas configured everything runs on spring.datasource as before.
+ */
+@Data
+@ConfigurationProperties("app.datasource")
+public class ReplicaProperties {
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    /** Replicas lagging further behind the primary than this are skipped until they catch up. */
+    private double maxLagSeconds = 5;
+
+    /**
+     * Query returning the replica's lag in seconds, e.g. for PostgreSQL
+     * "select coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0)".
+     * Empty = only check that the replica answers.
+     */
+    private String lagQuery = "";
+
+    private long checkIntervalMs = 5000;
+
+    @Data
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+        /** Kept short so an unreachable replica fails fast and reads fall back to the primary. */
+        private long connectionTimeoutMs = 2000;
+    }
+}
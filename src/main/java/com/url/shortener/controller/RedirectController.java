@@ -1,7 +1,10 @@
 package com.url.shortener.controller;
 
-import com.url.shortener.models.UrlMapping;
+import com.url.shortener.analytics.ClickContext;
+import com.url.shortener.redirect.RedirectResponses;
+import com.url.shortener.redirect.RedirectTarget;
 import com.url.shortener.service.UrlMappingService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
@@ -9,21 +12,34 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDateTime;
+
 @RestController
 @AllArgsConstructor
 public class RedirectController {
 
     private UrlMappingService urlMappingService;
+    private RedirectResponses redirectResponses;
 
     @GetMapping("/{shortUrl}")
-    public ResponseEntity<Void> redirect(@PathVariable String shortUrl){
-        UrlMapping urlMapping = urlMappingService.getOriginalUrl(shortUrl);
-        if (urlMapping != null) {
-            HttpHeaders httpHeaders = new HttpHeaders();
-            httpHeaders.add("Location", urlMapping.getOriginalUrl());
-            return ResponseEntity.status(302).headers(httpHeaders).build();
+    public ResponseEntity<Void> redirect(@PathVariable String shortUrl, HttpServletRequest request){
+        // expired links surface as LinkExpiredException -> 410 Gone
+        ClickContext clickContext = clickContext(request);
+        RedirectTarget target = urlMappingService.getOriginalUrl(shortUrl, clickContext);
+        if (target != null) {
+            // 302 no-store, or 301/308 with Cache-Control, depending on the link
+            return redirectResponses.redirect(target, clickContext.clickDate());
         } else {
             return ResponseEntity.notFound().build();
         }
     }
+
+    // Captures only raw header values here; parsing and lookups happen off the request thread.
+    // Behind a proxy / load balancer (e.g. Render) the remote address is already the client's: Tomcat resolves it
+    // from the X-Forwarded-For hops added by trusted proxies only (see server.forward-headers-strategy), since
+    // values sent by the client itself could be forged to skew the country breakdown and unique visitors.
+    private ClickContext clickContext(HttpServletRequest request) {
+        return new ClickContext(LocalDateTime.now(), request.getRemoteAddr(),
+                request.getHeader(HttpHeaders.USER_AGENT), request.getHeader(HttpHeaders.REFERER));
+    }
 }
\ No newline at end of file
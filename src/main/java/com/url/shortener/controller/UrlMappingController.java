@@ -1,18 +1,34 @@
 package com.url.shortener.controller;
 
+import com.url.shortener.analytics.AnalyticsVersion;
+import com.url.shortener.analytics.TrendingWindow;
+import com.url.shortener.analytics.export.ClickExportService;
+import com.url.shortener.analytics.export.ExportFormat;
 import com.url.shortener.dtos.ClickEventDTO;
+import com.url.shortener.dtos.TrendingLinkDTO;
+import com.url.shortener.dtos.UniqueVisitorsDTO;
 import com.url.shortener.dtos.UrlMappingDTO;
+import com.url.shortener.exceptions.BadRequestException;
+import com.url.shortener.models.DimensionKind;
+import com.url.shortener.models.RedirectType;
 import com.url.shortener.models.User;
 import com.url.shortener.service.UrlMappingService;
 import com.url.shortener.service.UserService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.AllArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.io.IOException;
 import java.security.Principal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Map;
@@ -20,8 +36,10 @@ import java.util.Map;
 /**
  * Controller for managing URL shortening and analytics.
  * Provides endpoints for creating short URLs, retrieving user-specific URLs,
- * fetching click analytics for short URLs, and obtaining total click counts by date.
+ * fetching click analytics for short URLs, obtaining total click counts by date and streaming raw click exports.
  * All endpoints require authenticated users with 'USER' role.
+ * myurls, analytics/{shortUrl} and totalClicks support conditional requests (ETag / Last-Modified, 304 Not Modified),
+ * answered from a cheap version check of the user's links before any analytics query runs.
  */
 @RestController
 @RequestMapping("/api/urls")
@@ -29,11 +47,14 @@ import java.util.Map;
 public class UrlMappingController {
     private UrlMappingService urlMappingService;
     private UserService userService;
+    private ClickExportService clickExportService;
 
     /**
      * Creates a shortened URL for the given original URL.
      * Requires authenticated user with role 'USER'.
-     * @param request JSON containing "originalUrl" key
+     * @param request JSON containing "originalUrl" key, and optionally "expiresAt" (ISO_LOCAL_DATE_TIME)
+     *                and "maxClicks" to make the short URL stop working at that time or after that many redirects,
+     *                and "redirectType" (302 default, 301 or 308 for permanent, cacheable redirects)
      * @param principal Security principal containing authenticated user info
      * @return UrlMappingDTO with details of the shortened URL
      */
@@ -42,25 +63,52 @@ public class UrlMappingController {
     public ResponseEntity<UrlMappingDTO> createShortUrl(@RequestBody Map<String, String> request,
                                                         Principal principal){
         String originalUrl = request.get("originalUrl");
+        LocalDateTime expiresAt = request.get("expiresAt") == null ? null
+                : LocalDateTime.parse(request.get("expiresAt"), DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        Integer maxClicks = parseMaxClicks(request.get("maxClicks"));
+        RedirectType redirectType = RedirectType.fromParam(request.get("redirectType"));
         // Retrieve authenticated user by username
         User user = userService.findByUsername(principal.getName());
         // Delegate to service to create short URL mapping
-        UrlMappingDTO urlMappingDTO = urlMappingService.createShortUrl(originalUrl, user);
+        UrlMappingDTO urlMappingDTO = urlMappingService.createShortUrl(originalUrl, expiresAt, maxClicks, redirectType, user);
         return ResponseEntity.ok(urlMappingDTO);
     }
 
 
+    /**
+     * Deletes one of the authenticated user's short URLs. It stops redirecting immediately;
+     * its clicks are removed in the background.
+     * Requires authenticated user with role 'USER'.
+     * @param shortUrl The short URL to delete
+     * @param principal Security principal containing authenticated user info
+     * @return 204 No Content, or 404 if the user has no such short URL
+     */
+    @DeleteMapping("/{shortUrl}")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<Void> deleteShortUrl(@PathVariable String shortUrl, Principal principal) {
+        User user = userService.findByUsername(principal.getName());
+        if (!urlMappingService.deleteShortUrl(shortUrl, user)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
     /**
      * Retrieves all shortened URLs created by the authenticated user.
      * Requires authenticated user with role 'USER'.
      * @param principal Security principal containing authenticated user info
-     * @return List of UrlMappingDTO objects representing user's URLs
+     * @param webRequest Current request, for If-None-Match / If-Modified-Since
+     * @return List of UrlMappingDTO objects representing user's URLs, or 304 if unchanged
      */
     @GetMapping("/myurls")
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<List<UrlMappingDTO>> getUserUrls(Principal principal){
+    public ResponseEntity<List<UrlMappingDTO>> getUserUrls(Principal principal, ServletWebRequest webRequest){
         // Retrieve user by username
         User user = userService.findByUsername(principal.getName());
+        // Answer 304 if the client's copy is current, without loading the list
+        if (isNotModified(webRequest, urlMappingService.getUrlsVersion(user), "myurls")) {
+            return null;
+        }
         // Fetch URLs associated with the user
         List<UrlMappingDTO> urls = urlMappingService.getUrlsByUser(user);
         return ResponseEntity.ok(urls);
@@ -70,22 +118,39 @@ public class UrlMappingController {
     /**
      * Retrieves click analytics for a specific short URL within a date-time range.
      * Requires authenticated user with role 'USER'.
-     * @param shortUrl The short URL identifier
+     * @param shortUrl The short URL identifier (must belong to the user)
      * @param startDate Start date-time in ISO_LOCAL_DATE_TIME format
      * @param endDate End date-time in ISO_LOCAL_DATE_TIME format
-     * @return List of ClickEventDTO representing click events in the time range
+     * @param principal Security principal containing authenticated user info
+     * @param webRequest Current request, for If-None-Match / If-Modified-Since
+     * @return List of ClickEventDTO representing click events in the time range, 304 if unchanged,
+     * or 404 if the user has no such short URL
      */
     @GetMapping("/analytics/{shortUrl}")
     @PreAuthorize("hasRole('USER')")
     public ResponseEntity<List<ClickEventDTO>> getUrlAnalytics(@PathVariable String shortUrl,
                                                                @RequestParam("startDate") String startDate,
-                                                               @RequestParam("endDate") String endDate){
+                                                               @RequestParam("endDate") String endDate,
+                                                               Principal principal,
+                                                               ServletWebRequest webRequest){
         DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
         // Parse date-time strings to LocalDateTime objects
         LocalDateTime start = LocalDateTime.parse(startDate, formatter);
         LocalDateTime end = LocalDateTime.parse(endDate, formatter);
+        User user = userService.findByUsername(principal.getName());
+        // Answer 304 if no click has been recorded since the client's copy, without running the analytics query
+        AnalyticsVersion version = urlMappingService.getAnalyticsVersion(shortUrl, user);
+        if (version == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (isNotModified(webRequest, version, shortUrl, start, end)) {
+            return null;
+        }
         // Retrieve click events for the short URL within the date-time range
-        List<ClickEventDTO> clickEventDTOS = urlMappingService.getClickEventsByDate(shortUrl, start, end);
+        List<ClickEventDTO> clickEventDTOS = urlMappingService.getClickEventsByDate(shortUrl, user, start, end);
+        if (clickEventDTOS == null) {
+            return ResponseEntity.notFound().build();
+        }
         return ResponseEntity.ok(clickEventDTOS);
     }
 
@@ -97,21 +162,257 @@ public class UrlMappingController {
      * @param principal Security principal containing authenticated user info
      * @param startDate Start date in ISO_LOCAL_DATE format
      * @param endDate End date in ISO_LOCAL_DATE format
-     * @return Map of LocalDate to Long representing total clicks per day
+     * @param webRequest Current request, for If-None-Match / If-Modified-Since
+     * @return Map of LocalDate to Long representing total clicks per day, or 304 if unchanged
      */
     @GetMapping("/totalClicks")
     @PreAuthorize("hasRole('USER')")
     public ResponseEntity<Map<LocalDate, Long>> getTotalClicksByDate(Principal principal,
                                                                      @RequestParam("startDate") String startDate,
-                                                                     @RequestParam("endDate") String endDate){
+                                                                     @RequestParam("endDate") String endDate,
+                                                                     ServletWebRequest webRequest){
         DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
         // Retrieve user by username
         User user = userService.findByUsername(principal.getName());
         // Parse date strings to LocalDate objects
         LocalDate start = LocalDate.parse(startDate, formatter);
         LocalDate end = LocalDate.parse(endDate, formatter);
+        // Answer 304 if none of the user's links changed since the client's copy
+        if (isNotModified(webRequest, urlMappingService.getAnalyticsVersion(user), "totalClicks", start, end)) {
+            return null;
+        }
         // Fetch total clicks grouped by date for the user
         Map<LocalDate, Long> totalClicks = urlMappingService.getTotalClicksByUserAndDate(user, start, end);
         return ResponseEntity.ok(totalClicks);
     }
-}
\ No newline at end of file
+
+
+    /**
+     * Retrieves approximate unique visitors of a specific short URL within a date range.
+     * Requires authenticated user with role 'USER'.
+     * @param shortUrl The short URL identifier (must belong to the user)
+     * @param startDate Start date in ISO_LOCAL_DATE format
+     * @param endDate End date in ISO_LOCAL_DATE format
+     * @param principal Security principal containing authenticated user info
+     * @return UniqueVisitorsDTO with per-day and whole-range unique visitor estimates, or 404 if the user has no such short URL
+     */
+    @GetMapping("/analytics/{shortUrl}/uniqueVisitors")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<UniqueVisitorsDTO> getUrlUniqueVisitors(@PathVariable String shortUrl,
+                                                                  @RequestParam("startDate") String startDate,
+                                                                  @RequestParam("endDate") String endDate,
+                                                                  Principal principal){
+        DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
+        LocalDate start = LocalDate.parse(startDate, formatter);
+        LocalDate end = LocalDate.parse(endDate, formatter);
+        User user = userService.findByUsername(principal.getName());
+        UniqueVisitorsDTO uniqueVisitors = urlMappingService.getUniqueVisitors(shortUrl, user, start, end);
+        if (uniqueVisitors == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(uniqueVisitors);
+    }
+
+
+    /**
+     * Retrieves approximate unique visitors across all of the authenticated user's URLs within the date range.
+     * Requires authenticated user with role 'USER'.
+     * @param principal Security principal containing authenticated user info
+     * @param startDate Start date in ISO_LOCAL_DATE format
+     * @param endDate End date in ISO_LOCAL_DATE format
+     * @return UniqueVisitorsDTO with per-day and whole-range unique visitor estimates
+     */
+    @GetMapping("/uniqueVisitors")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<UniqueVisitorsDTO> getTotalUniqueVisitors(Principal principal,
+                                                                    @RequestParam("startDate") String startDate,
+                                                                    @RequestParam("endDate") String endDate){
+        DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
+        User user = userService.findByUsername(principal.getName());
+        LocalDate start = LocalDate.parse(startDate, formatter);
+        LocalDate end = LocalDate.parse(endDate, formatter);
+        return ResponseEntity.ok(urlMappingService.getUniqueVisitorsByUser(user, start, end));
+    }
+
+
+    /**
+     * Retrieves click counts for a specific short URL within a date-time range,
+     * broken down by referrer, device type or country.
+     * Requires authenticated user with role 'USER'.
+     * @param shortUrl The short URL identifier (must belong to the user)
+     * @param dimension One of "referrer", "device" or "country"
+     * @param startDate Start date-time in ISO_LOCAL_DATE_TIME format
+     * @param endDate End date-time in ISO_LOCAL_DATE_TIME format
+     * @param principal Security principal containing authenticated user info
+     * @return Map of dimension value (e.g. "google.com", "MOBILE", "DE") to click count, or 404 if the user has no such short URL
+     */
+    @GetMapping("/analytics/{shortUrl}/breakdown")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<Map<String, Long>> getUrlBreakdown(@PathVariable String shortUrl,
+                                                             @RequestParam("dimension") String dimension,
+                                                             @RequestParam("startDate") String startDate,
+                                                             @RequestParam("endDate") String endDate,
+                                                             Principal principal){
+        DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+        LocalDateTime start = LocalDateTime.parse(startDate, formatter);
+        LocalDateTime end = LocalDateTime.parse(endDate, formatter);
+        User user = userService.findByUsername(principal.getName());
+        Map<String, Long> breakdown = urlMappingService.getClickBreakdown(shortUrl, user, DimensionKind.fromParam(dimension), start, end);
+        if (breakdown == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(breakdown);
+    }
+
+
+    /**
+     * Retrieves click counts across all of the authenticated user's URLs within the date range,
+     * broken down by referrer, device type or country.
+     * Requires authenticated user with role 'USER'.
+     * @param principal Security principal containing authenticated user info
+     * @param dimension One of "referrer", "device" or "country"
+     * @param startDate Start date in ISO_LOCAL_DATE format
+     * @param endDate End date in ISO_LOCAL_DATE format
+     * @return Map of dimension value to click count
+     */
+    @GetMapping("/breakdown")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<Map<String, Long>> getTotalClicksBreakdown(Principal principal,
+                                                                     @RequestParam("dimension") String dimension,
+                                                                     @RequestParam("startDate") String startDate,
+                                                                     @RequestParam("endDate") String endDate){
+        DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
+        User user = userService.findByUsername(principal.getName());
+        LocalDate start = LocalDate.parse(startDate, formatter);
+        LocalDate end = LocalDate.parse(endDate, formatter);
+        Map<String, Long> breakdown = urlMappingService.getClickBreakdownByUser(user, DimensionKind.fromParam(dimension), start, end);
+        return ResponseEntity.ok(breakdown);
+    }
+
+
+    /**
+     * Retrieves the authenticated user's links with the most clicks in the last minute, hour or day.
+     * Requires authenticated user with role 'USER'.
+     * @param principal Security principal containing authenticated user info
+     * @param window One of "minute", "hour" or "day" (default "hour")
+     * @param limit Maximum number of links to return (default 10, at most 100)
+     * @return List of TrendingLinkDTO, hottest first
+     */
+    @GetMapping("/trending")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<List<TrendingLinkDTO>> getTrendingLinks(Principal principal,
+                                                                  @RequestParam(value = "window", defaultValue = "hour") String window,
+                                                                  @RequestParam(value = "limit", defaultValue = "10") int limit){
+        User user = userService.findByUsername(principal.getName());
+        return ResponseEntity.ok(urlMappingService.getTrendingLinks(user, TrendingWindow.fromParam(window), Math.clamp(limit, 1, 100)));
+    }
+
+
+    /**
+     * Retrieves the links with the most clicks across all users in the last minute, hour or day.
+     * Requires role 'ADMIN', since it exposes other users' links.
+     * @param window One of "minute", "hour" or "day" (default "hour")
+     * @param limit Maximum number of links to return (default 10, at most 100)
+     * @return List of TrendingLinkDTO, hottest first
+     */
+    @GetMapping("/trending/global")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<TrendingLinkDTO>> getGlobalTrendingLinks(@RequestParam(value = "window", defaultValue = "hour") String window,
+                                                                        @RequestParam(value = "limit", defaultValue = "10") int limit){
+        return ResponseEntity.ok(urlMappingService.getTrendingLinks(null, TrendingWindow.fromParam(window), Math.clamp(limit, 1, 100)));
+    }
+
+
+    /**
+     * Streams the raw clicks of one of the authenticated user's short URLs within a date-time range,
+     * for import into the user's own tools. Written straight to the response as the rows are read.
+     * Requires authenticated user with role 'USER'.
+     * @param shortUrl The short URL identifier (must belong to the user)
+     * @param startDate Start date-time in ISO_LOCAL_DATE_TIME format
+     * @param endDate End date-time in ISO_LOCAL_DATE_TIME format
+     * @param format "csv" (default) or "ndjson"
+     * @param principal Security principal containing authenticated user info
+     * @param response Response the clicks are written to (404 if the user has no such short URL)
+     */
+    @GetMapping("/export/{shortUrl}")
+    @PreAuthorize("hasRole('USER')")
+    public void exportUrlClicks(@PathVariable String shortUrl,
+                                @RequestParam("startDate") String startDate,
+                                @RequestParam("endDate") String endDate,
+                                @RequestParam(value = "format", defaultValue = "csv") String format,
+                                Principal principal,
+                                HttpServletResponse response) throws IOException {
+        DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+        LocalDateTime start = LocalDateTime.parse(startDate, formatter);
+        LocalDateTime end = LocalDateTime.parse(endDate, formatter);
+        ExportFormat exportFormat = ExportFormat.fromParam(format);
+        User user = userService.findByUsername(principal.getName());
+        Long urlMappingId = clickExportService.findOwnedLink(shortUrl, user);
+        if (urlMappingId == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        startExport(response, exportFormat, "clicks-" + shortUrl);
+        clickExportService.exportLink(urlMappingId, start, end, exportFormat, response.getOutputStream());
+    }
+
+
+    /**
+     * Streams the raw clicks of all of the authenticated user's URLs within a date range.
+     * Requires authenticated user with role 'USER'.
+     * @param startDate Start date in ISO_LOCAL_DATE format
+     * @param endDate End date in ISO_LOCAL_DATE format (inclusive)
+     * @param format "csv" (default) or "ndjson"
+     * @param principal Security principal containing authenticated user info
+     * @param response Response the clicks are written to
+     */
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('USER')")
+    public void exportUserClicks(@RequestParam("startDate") String startDate,
+                                 @RequestParam("endDate") String endDate,
+                                 @RequestParam(value = "format", defaultValue = "csv") String format,
+                                 Principal principal,
+                                 HttpServletResponse response) throws IOException {
+        DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
+        LocalDate start = LocalDate.parse(startDate, formatter);
+        LocalDate end = LocalDate.parse(endDate, formatter);
+        ExportFormat exportFormat = ExportFormat.fromParam(format);
+        User user = userService.findByUsername(principal.getName());
+        startExport(response, exportFormat, "clicks-" + user.getUsername());
+        clickExportService.exportUser(user, start.atStartOfDay(), end.atTime(LocalTime.MAX), exportFormat, response.getOutputStream());
+    }
+
+
+    private static Integer parseMaxClicks(String maxClicks) {
+        if (maxClicks == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(maxClicks.trim());
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("maxClicks must be a number");
+        }
+    }
+
+
+    // Headers of an export download; the body follows as it is produced, so no Content-Length
+    private void startExport(HttpServletResponse response, ExportFormat format, String fileName) {
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(fileName + "." + format.getFileExtension()).build().toString());
+    }
+
+
+    /**
+     * Sets the validators (ETag, Last-Modified) and Cache-Control for a response built from the given version,
+     * and checks them against the request's If-None-Match / If-Modified-Since.
+     * @return true if the client's copy is current; the response is then already a 304 and the handler returns null
+     */
+    private boolean isNotModified(ServletWebRequest webRequest, AnalyticsVersion version, Object... parameters) {
+        // Per-user data: browsers may keep it but must revalidate before reuse; shared caches must not store it.
+        // Set on 304s too, otherwise Spring Security's default no-store would be applied to them.
+        webRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        return webRequest.checkNotModified(version.eTag(parameters), version.lastModifiedMillis());
+    }
+}
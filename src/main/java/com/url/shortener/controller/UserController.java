@@ -0,0 +1,32 @@
+package com.url.shortener.controller;
+
+import com.url.shortener.models.User;
+import com.url.shortener.service.UserService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.security.Principal;
+
+// REST Controller for the authenticated user's own account.
+// Base path = /api/users
+@RestController
+@RequestMapping("/api/users")
+@AllArgsConstructor
+public class UserController {
+
+    private UserService userService;
+
+    // DELETE /api/users/me
+    // Deletes the account and all its short URLs; they stop redirecting immediately, their clicks are purged in the background
+    @DeleteMapping("/me")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<Void> deleteAccount(Principal principal) {
+        User user = userService.findByUsername(principal.getName());
+        userService.deleteAccount(user);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,136 @@
+package com.url.shortener.dedup;
+
+import com.url.shortener.analytics.LruCache;
+import com.url.shortener.dtos.UrlMappingDTO;
+import com.url.shortener.models.RedirectType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+/**
+ * Optional deduplication of shortened URLs: a user shortening the same URL again gets the existing short URL
+ * instead of a new row (our CMS shortens the same links on every page render).
+ * <p>
+ * Only plain links take part, those without expiry or click limit, and the redirect type is part of the key,
+ * so a repeat request only matches a link that behaves exactly the same. URLs are compared after a light
+ * normalization and looked up by a 64-bit hash stored on the mapping (indexed together with user_id).
+ * Recent results are kept in a small in-memory LRU cache for up to cache-ttl-seconds, so a URL shortened over and
+ * over costs a primary key lookup instead of the indexed one: a cached link is still checked to exist, since it
+ * may have been deleted on another instance. Cached responses keep the click count they had when they were cached.
+ * <p>
+ * Best effort: two identical requests racing each other, or a repeat on another instance before the first
+ * insert is visible, can still create two links. Links created before dedup was enabled have no hash and are
+ * never matched.
+ */
+@Component
+public class LinkDeduplicator {
+
+    private final boolean enabled;
+    private final LruCache<Key, Recent> recent;
+    private final long ttlMillis;
+
+    public LinkDeduplicator(@Value("${links.dedup.enabled:false}") boolean enabled,
+                            @Value("${links.dedup.cache-size:10000}") int cacheSize,
+                            @Value("${links.dedup.cache-ttl-seconds:300}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.recent = new LruCache<>(cacheSize);
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    /**
+     * @return whether a link with these options may be deduplicated
+     */
+    public boolean applies(LocalDateTime expiresAt, Integer maxClicks) {
+        return enabled && expiresAt == null && maxClicks == null;
+    }
+
+    /**
+     * @return the cached mapping of a recent identical request, or null; the caller must check it still exists
+     */
+    public UrlMappingDTO recent(long userId, String normalizedUrl, RedirectType redirectType) {
+        Key key = new Key(userId, normalizedUrl, redirectType);
+        Recent cached = recent.get(key);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.cachedUntilMillis() <= System.currentTimeMillis()) {
+            recent.remove(key);
+            return null;
+        }
+        return cached.urlMapping();
+    }
+
+    public void remember(long userId, String normalizedUrl, RedirectType redirectType, UrlMappingDTO urlMapping) {
+        recent.put(new Key(userId, normalizedUrl, redirectType), new Recent(urlMapping, System.currentTimeMillis() + ttlMillis));
+    }
+
+    // The link was deleted (or found to be): shortening the URL again must create a new one
+    public void forget(long userId, String normalizedUrl, RedirectType redirectType) {
+        recent.remove(new Key(userId, normalizedUrl, redirectType));
+    }
+
+    /**
+     * Normalizes a URL for comparison: scheme and host lower-cased, default ports and an empty path dropped.
+     * Path, query and fragment are kept as they are, since servers may treat them case-sensitively.
+     * Strings that aren't absolute URLs are only trimmed.
+     */
+    public static String normalize(String url) {
+        String trimmed = url.trim();
+        URI uri;
+        try {
+            uri = new URI(trimmed);
+        } catch (URISyntaxException e) {
+            return trimmed;
+        }
+        if (uri.getScheme() == null || uri.getRawAuthority() == null || uri.getHost() == null) {
+            return trimmed;
+        }
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        StringBuilder normalized = new StringBuilder(trimmed.length()).append(scheme).append("://");
+        if (uri.getRawUserInfo() != null) {
+            normalized.append(uri.getRawUserInfo()).append('@');
+        }
+        normalized.append(uri.getHost().toLowerCase(Locale.ROOT));
+        int port = uri.getPort();
+        if (port != -1 && !(port == 80 && scheme.equals("http")) && !(port == 443 && scheme.equals("https"))) {
+            normalized.append(':').append(port);
+        }
+        String path = uri.getRawPath();
+        normalized.append(path == null || path.isEmpty() ? "/" : path);
+        if (uri.getRawQuery() != null) {
+            normalized.append('?').append(uri.getRawQuery());
+        }
+        if (uri.getRawFragment() != null) {
+            normalized.append('#').append(uri.getRawFragment());
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * @return 64-bit hash (first 8 bytes of SHA-256) of a normalized URL and redirect type, stored as url_hash
+     */
+    public static long hash(String normalizedUrl, RedirectType redirectType) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(redirectType.name().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) ' ');
+            return ByteBuffer.wrap(digest.digest(normalizedUrl.getBytes(StandardCharsets.UTF_8))).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record Key(long userId, String normalizedUrl, RedirectType redirectType) {
+    }
+
+    private record Recent(UrlMappingDTO urlMapping, long cachedUntilMillis) {
+    }
+}
@@ -8,4 +8,5 @@ import java.time.LocalDate;
 public class ClickEventDTO {
     private LocalDate clickDate;
     private Long count;
+    private Long uniqueVisitors; // HyperLogLog estimate, ~1.6% standard error
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.url.shortener.dtos;
+
+import lombok.Data;
+
+/**
+ * A link that is trending in a time window.
+ * <p>
+ * estimatedClicks comes from a bounded heavy-hitters summary: the true count lies between
+ * estimatedClicks - maxOverestimate and estimatedClicks.
+ */
+@Data
+public class TrendingLinkDTO {
+    private String shortUrl;
+    private String originalUrl;
+    private long estimatedClicks;
+    private long maxOverestimate;
+}
@@ -0,0 +1,17 @@
+package com.url.shortener.dtos;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Approximate unique visitor counts (HyperLogLog estimates, ~1.6% standard error) for a date range.
+ * <p>
+ * The total is not the sum of the daily values: a visitor who came back on several days counts once.
+ */
+@Data
+public class UniqueVisitorsDTO {
+    private Map<LocalDate, Long> dailyUniqueVisitors;
+    private Long totalUniqueVisitors;
+}
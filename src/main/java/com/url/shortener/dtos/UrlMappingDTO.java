@@ -1,5 +1,6 @@
 package com.url.shortener.dtos;
 
+import com.url.shortener.models.RedirectType;
 import lombok.Data;
 
 import java.time.LocalDateTime;
@@ -16,6 +17,9 @@ import java.time.LocalDateTime;
  *   <li>clickCount - Number of times the short URL has been accessed.</li>
  *   <li>createdDate - Timestamp when the mapping was created.</li>
  *   <li>username - Username of the user who created the mapping.</li>
+ *   <li>expiresAt - When the short URL stops working, or null if it never expires.</li>
+ *   <li>maxClicks - Maximum number of redirects, or null for no limit.</li>
+ *   <li>redirectType - How the short URL redirects (302 temporary, 301/308 permanent and cacheable).</li>
  * </ul>
  */
 public class UrlMappingDTO {
@@ -25,4 +29,7 @@ public class UrlMappingDTO {
     private int clickCount;
     private LocalDateTime createdDate;
     private String username;
+    private LocalDateTime expiresAt;
+    private Integer maxClicks;
+    private RedirectType redirectType;
 }
\ No newline at end of file
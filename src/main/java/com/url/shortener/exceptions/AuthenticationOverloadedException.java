@@ -0,0 +1,8 @@
+package com.url.shortener.exceptions;
+
+// Thrown when the password hashing pool is saturated and a login/register request is rejected instead of queued
+public class AuthenticationOverloadedException extends RuntimeException {
+    public AuthenticationOverloadedException(String message) {
+        super(message);
+    }
+}
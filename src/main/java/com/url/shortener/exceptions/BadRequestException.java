@@ -0,0 +1,9 @@
+package com.url.shortener.exceptions;
+
+// Thrown for invalid request parameters (unknown dimension, window or format, bad link settings); answered with 400
+// and the message, which is written for the client
+public class BadRequestException extends RuntimeException {
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package com.url.shortener.exceptions;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+
+// Thrown when a shard's database is unreachable, right away while its circuit breaker is open
+public class DatabaseUnavailableException extends DataAccessResourceFailureException {
+    public DatabaseUnavailableException(String message) {
+        super(message);
+    }
+
+    public DatabaseUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,11 +1,14 @@
 package com.url.shortener.exceptions;
 
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
+import java.time.format.DateTimeParseException;
+
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
@@ -24,6 +27,49 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(401).body("Invalid username or password");
     }
 
+    // @PreAuthorize failures (e.g. a USER calling an ADMIN endpoint) would otherwise end up as a 500 below
+    @ExceptionHandler(AccessDeniedException.class)
+    public ResponseEntity<String> handleAccessDenied(AccessDeniedException ex) {
+        return ResponseEntity.status(403).body("Access denied");
+    }
+
+    // Bad request parameters, e.g. an unknown analytics dimension. Only this type: an IllegalArgumentException
+    // from deeper down (Spring, Hibernate, our own code) is a bug and stays a 500 without its message
+    @ExceptionHandler(BadRequestException.class)
+    public ResponseEntity<String> handleBadRequest(BadRequestException ex) {
+        return ResponseEntity.badRequest().body(ex.getMessage());
+    }
+
+    // Malformed date parameters (startDate, endDate, expiresAt)
+    @ExceptionHandler(DateTimeParseException.class)
+    public ResponseEntity<String> handleDateTimeParse(DateTimeParseException ex) {
+        return ResponseEntity.badRequest().body("Invalid date: " + ex.getParsedString());
+    }
+
+    // The password hashing pool is full: tell the client to back off instead of queueing indefinitely
+    @ExceptionHandler(AuthenticationOverloadedException.class)
+    public ResponseEntity<String> handleAuthenticationOverloaded(AuthenticationOverloadedException ex) {
+        return ResponseEntity.status(503).header("Retry-After", "1").body(ex.getMessage());
+    }
+
+    // The lookup this redirect was waiting on (a concurrent miss for the same short URL) didn't finish in time
+    @ExceptionHandler(RedirectLookupTimeoutException.class)
+    public ResponseEntity<String> handleRedirectLookupTimeout(RedirectLookupTimeoutException ex) {
+        return ResponseEntity.status(503).header("Retry-After", "1").body(ex.getMessage());
+    }
+
+    // The database is down (or its circuit breaker open) and there was nothing cached to fall back on
+    @ExceptionHandler(DatabaseUnavailableException.class)
+    public ResponseEntity<String> handleDatabaseUnavailable(DatabaseUnavailableException ex) {
+        return ResponseEntity.status(503).header("Retry-After", "5").body("Service temporarily unavailable");
+    }
+
+    // The short URL existed but has expired or reached its click limit
+    @ExceptionHandler(LinkExpiredException.class)
+    public ResponseEntity<String> handleLinkExpired(LinkExpiredException ex) {
+        return ResponseEntity.status(410).body(ex.getMessage());
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<String> handleGenericException(Exception ex) {
         return ResponseEntity.status(500).body("Internal server error");
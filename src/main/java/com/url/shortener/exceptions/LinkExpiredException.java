@@ -0,0 +1,8 @@
+package com.url.shortener.exceptions;
+
+// Thrown when a short URL has passed its expiry time or used up its click limit (answered with 410 Gone)
+public class LinkExpiredException extends RuntimeException {
+    public LinkExpiredException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.url.shortener.exceptions;
+
+// Thrown when a redirect waited too long for another request's lookup of the same short URL
+public class RedirectLookupTimeoutException extends RuntimeException {
+    public RedirectLookupTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,9 @@
+package com.url.shortener.expiry;
+
+import java.time.LocalDateTime;
+
+/**
+ * A link with an expiry time, as read by the expiry preload (JPQL constructor projection).
+ */
+public record ExpiringLink(Long id, LocalDateTime expiresAt) {
+}
@@ -0,0 +1,182 @@
+package com.url.shortener.expiry;
+
+import com.url.shortener.purge.LinkPurgeService;
+import com.url.shortener.repository.UrlMappingRepository;
+import com.url.shortener.sharding.ShardContext;
+import com.url.shortener.sharding.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Removes expired links from the database.
+ * <p>
+ * Expired links answer 410 Gone for the retention period and are then deleted: marked as deleted here, with
+ * their clicks and visitor sketches removed in the background by {@link LinkPurgeService}.
+ * Instead of periodically scanning the whole table for expired rows, links expiring within the next preload window
+ * are read once through the expires_at index and put on an in-memory timing wheel; the wheel fires each link at its
+ * removal time and the fired ids are marked in batches. Links created with an expiry inside the already loaded
+ * window are put on the wheel directly.
+ * <p>
+ * Every instance runs this for the links it knows about. Marking is idempotent and re-checks the expiry,
+ * so instances doing the same work is harmless.
+ * <p>
+ * With sharding the wheel holds the links of all shards: the preload reads every shard and the
+ * removal runs on the shard of each link.
+ */
+@Service
+public class LinkExpiryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LinkExpiryService.class);
+    private static final long TICK_MILLIS = 1000;
+    private static final Duration RETRY_DELAY = Duration.ofMinutes(1);
+
+    private final UrlMappingRepository urlMappingRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final LinkPurgeService linkPurgeService;
+    private final ShardRouter shardRouter;
+    private final TimingWheel<Long> wheel;
+    private final Duration retention;
+    private final Duration preloadWindow;
+    private final int batchSize;
+    // Links with expiresAt before this are on the wheel (or already gone); later ones are picked up by the next preload
+    private volatile LocalDateTime loadedUntil;
+
+    public LinkExpiryService(UrlMappingRepository urlMappingRepository,
+                             TransactionTemplate transactionTemplate,
+                             LinkPurgeService linkPurgeService,
+                             ShardRouter shardRouter,
+                             @Value("${links.expiry.retention-hours:24}") long retentionHours,
+                             @Value("${links.expiry.preload-hours:24}") long preloadHours,
+                             @Value("${links.expiry.batch-size:500}") int batchSize) {
+        this.urlMappingRepository = urlMappingRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.linkPurgeService = linkPurgeService;
+        this.shardRouter = shardRouter;
+        this.retention = Duration.ofHours(retentionHours);
+        this.preloadWindow = Duration.ofHours(preloadHours);
+        this.batchSize = batchSize;
+        this.wheel = new TimingWheel<>(TICK_MILLIS, 4, System.currentTimeMillis());
+    }
+
+    /**
+     * Called for a newly created link with an expiry. Links expiring after the loaded window are left to the preload.
+     */
+    public void linkCreated(long urlMappingId, LocalDateTime expiresAt) {
+        LocalDateTime until = loadedUntil;
+        if (until != null && expiresAt.isBefore(until)) {
+            wheel.schedule(urlMappingId, toMillis(expiresAt.plus(retention)));
+        }
+    }
+
+    /**
+     * Expires a link right away because its click limit was reached; it is removed after the retention period.
+     */
+    public void expireNow(long urlMappingId) {
+        LocalDateTime now = LocalDateTime.now();
+        ShardContext.run(ShardRouter.shardOf(urlMappingId), () -> urlMappingRepository.expire(urlMappingId, now));
+        wheel.schedule(urlMappingId, toMillis(now.plus(retention)));
+    }
+
+    /**
+     * Loads the links expiring in the next window onto the wheel, one indexed range read per window.
+     * The first run also picks up links that expired while the application was down.
+     */
+    @Scheduled(fixedDelayString = "${links.expiry.preload-interval-ms:3600000}")
+    public void preload() {
+        LocalDateTime from = loadedUntil;
+        // a link is removed retention after it expires: load those whose removal falls within the window
+        LocalDateTime until = LocalDateTime.now().plus(preloadWindow).minus(retention);
+        if (from != null && !until.isAfter(from)) {
+            return;
+        }
+        // publish the new bound first: links created from now on are scheduled by linkCreated() even if
+        // the query below doesn't see them yet (scheduling a link twice just replaces the first entry)
+        loadedUntil = until;
+        LocalDateTime rangeStart = from != null ? from : LocalDateTime.of(1970, 1, 1, 0, 0);
+        int loaded = 0;
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            loaded += ShardContext.call(shard, () -> preload(rangeStart, until));
+        }
+        logger.debug("Loaded {} expiring links up to {}, {} scheduled", loaded, until, wheel.size());
+    }
+
+    // Keyset-paged read of the current shard's links expiring in [rangeStart, until)
+    private int preload(LocalDateTime rangeStart, LocalDateTime until) {
+        LocalDateTime afterExpiresAt = rangeStart;
+        long afterId = 0;
+        int loaded = 0;
+        while (true) {
+            LocalDateTime pageAfterExpiresAt = afterExpiresAt;
+            long pageAfterId = afterId;
+            List<ExpiringLink> page = transactionTemplate.execute(status -> urlMappingRepository.findExpiring(
+                    rangeStart, until, pageAfterExpiresAt, pageAfterId, PageRequest.of(0, batchSize)));
+            for (ExpiringLink link : page) {
+                wheel.schedule(link.id(), toMillis(link.expiresAt().plus(retention)));
+            }
+            loaded += page.size();
+            if (page.size() < batchSize) {
+                break;
+            }
+            afterExpiresAt = page.getLast().expiresAt();
+            afterId = page.getLast().id();
+        }
+        return loaded;
+    }
+
+    /**
+     * Advances the wheel and deletes the links whose retention has run out, in batches.
+     */
+    @Scheduled(fixedDelayString = "${links.expiry.sweep-interval-ms:1000}")
+    public void sweep() {
+        List<Long> due = wheel.advance(System.currentTimeMillis());
+        for (int start = 0; start < due.size(); start += batchSize) {
+            List<Long> batch = due.subList(start, Math.min(start + batchSize, due.size()));
+            try {
+                purge(batch);
+            } catch (DataAccessException e) {
+                logger.warn("Failed to remove {} expired links, retrying later: {}", batch.size(), e.getMessage());
+                long retryAt = System.currentTimeMillis() + RETRY_DELAY.toMillis();
+                batch.forEach(id -> wheel.schedule(id, retryAt));
+            }
+        }
+    }
+
+    private void purge(List<Long> ids) {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        int removed = 0;
+        for (Map.Entry<Integer, List<Long>> shard : shardRouter.groupByShard(ids).entrySet()) {
+            removed += ShardContext.call(shard.getKey(), () -> purge(shard.getValue(), cutoff));
+        }
+        logger.debug("Removed {} expired links", removed);
+        if (removed > 0) {
+            linkPurgeService.requestPurge();
+        }
+    }
+
+    // Marks the expired links of the current shard as deleted; their clicks are removed by the purge
+    private int purge(List<Long> ids, LocalDateTime cutoff) {
+        LocalDateTime now = LocalDateTime.now();
+        // re-check: only links whose expiry (plus retention) has really passed are deleted
+        return transactionTemplate.execute(status -> {
+            List<Long> expired = urlMappingRepository.findExpiredIds(new ArrayList<>(ids), cutoff);
+            return expired.isEmpty() ? 0 : urlMappingRepository.markDeleted(expired, now);
+        });
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,154 @@
+package com.url.shortener.expiry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hierarchical timing wheel: schedules keys to fire at a deadline with O(1) insert and cancel,
+ * and advancing costs one slot per tick no matter how many keys are scheduled.
+ * <p>
+ * Level 0 has 64 slots of one tick each, every level above has 64 slots covering a whole rotation of the
+ * level below (1 s ticks with 4 levels reach about 194 days). A key is put on the lowest level whose range
+ * covers its deadline; when a lower level wraps around, the matching slot of the level above is cascaded down,
+ * so each key moves at most once per level before it fires. Deadlines beyond the top level wait in its
+ * furthest slot and are re-placed whenever they are cascaded.
+ * Thread-safe.
+ */
+public class TimingWheel<K> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private static final class Entry<K> {
+        final K key;
+        final long deadline;
+        int level;
+        int slot;
+
+        Entry(K key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+    }
+
+    private final long tickMillis;
+    private final int levels;
+    private final List<List<Set<Entry<K>>>> wheels = new ArrayList<>();
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+    private long currentTick;
+
+    /**
+     * @param tickMillis resolution of the wheel; keys fire up to one tick late
+     * @param levels number of wheels (1 to 10)
+     * @param nowMillis current time, the wheel's starting point
+     */
+    public TimingWheel(long tickMillis, int levels, long nowMillis) {
+        if (tickMillis <= 0 || levels < 1 || levels > 10) {
+            throw new IllegalArgumentException("Invalid timing wheel configuration");
+        }
+        this.tickMillis = tickMillis;
+        this.levels = levels;
+        for (int level = 0; level < levels; level++) {
+            List<Set<Entry<K>>> slots = new ArrayList<>(SLOTS);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                slots.add(new HashSet<>());
+            }
+            wheels.add(slots);
+        }
+        this.currentTick = Math.floorDiv(nowMillis, tickMillis);
+    }
+
+    /**
+     * Schedules the key to fire at the deadline, replacing any earlier schedule of the same key.
+     * Deadlines in the past fire on the next tick.
+     */
+    public synchronized void schedule(K key, long deadlineMillis) {
+        cancel(key);
+        Entry<K> entry = new Entry<>(key, Math.ceilDiv(deadlineMillis, tickMillis));
+        entries.put(key, entry);
+        // the current tick's slot has already been processed
+        place(entry, currentTick + 1);
+    }
+
+    /**
+     * @return true if the key was scheduled and is now removed
+     */
+    public synchronized boolean cancel(K key) {
+        Entry<K> entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        wheels.get(entry.level).get(entry.slot).remove(entry);
+        return true;
+    }
+
+    public synchronized boolean contains(K key) {
+        return entries.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Moves the wheel forward to the given time.
+     *
+     * @return keys whose deadline has passed, in deadline order (per tick)
+     */
+    public synchronized List<K> advance(long nowMillis) {
+        List<K> fired = new ArrayList<>();
+        long targetTick = Math.floorDiv(nowMillis, tickMillis);
+        while (currentTick < targetTick) {
+            currentTick++;
+            // cascade from the top so entries coming down from level 2 are redistributed again by level 1
+            for (int level = levels - 1; level >= 1; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK));
+                }
+            }
+            Set<Entry<K>> slot = wheels.get(0).get((int) (currentTick & SLOT_MASK));
+            List<Entry<K>> due = new ArrayList<>(slot);
+            slot.clear();
+            for (Entry<K> entry : due) {
+                if (entry.deadline <= currentTick) {
+                    entries.remove(entry.key);
+                    fired.add(entry.key);
+                } else {
+                    place(entry, currentTick + 1);
+                }
+            }
+        }
+        return fired;
+    }
+
+    private void cascade(int level, int slotIndex) {
+        Set<Entry<K>> slot = wheels.get(level).get(slotIndex);
+        List<Entry<K>> moving = new ArrayList<>(slot);
+        slot.clear();
+        for (Entry<K> entry : moving) {
+            // level 0 of the current tick is processed right after cascading, so it may still receive entries
+            place(entry, currentTick);
+        }
+    }
+
+    private void place(Entry<K> entry, long earliestTick) {
+        long deadline = Math.max(entry.deadline, earliestTick);
+        long maxDelta = (1L << (SLOT_BITS * levels)) - 1;
+        if (deadline - currentTick > maxDelta) {
+            deadline = currentTick + maxDelta;
+        }
+        long delta = deadline - currentTick;
+        int level = 0;
+        while (level < levels - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        entry.level = level;
+        entry.slot = (int) ((deadline >>> (SLOT_BITS * level)) & SLOT_MASK);
+        wheels.get(level).get(entry.slot).add(entry);
+    }
+}
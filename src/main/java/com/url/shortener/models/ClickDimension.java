@@ -0,0 +1,24 @@
+package com.url.shortener.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * Dictionary entry for a click analytics dimension value.
+ * ClickEvent rows store the (small) id of the entry instead of the string itself.
+ */
+@Entity
+@Data
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"kind", "dimension_value"}))
+public class ClickDimension {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private DimensionKind kind;
+
+    @Column(name = "dimension_value", nullable = false) // "value" is a reserved word in some databases
+    private String value;
+}
@@ -7,19 +7,28 @@ import java.time.LocalDateTime;
 
 @Entity
 @Data
+// a link's clicks in id order: analytics by link, and the purge of deleted links in keyed batches;
+// all clicks in time order: the archive compaction pages through the old ones
+@Table(indexes = {
+        @Index(name = "idx_click_event_url_mapping_id", columnList = "url_mapping_id, id"),
+        @Index(name = "idx_click_event_click_date", columnList = "click_date, id")
+})
 public class ClickEvent {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
-    private LocalDateTime clickDate; // Currently, I'm just storing the date and time when the URL was clicked
+    private LocalDateTime clickDate; // date and time when the URL was clicked
 
     @ManyToOne
     @JoinColumn(name = "url_mapping_id")
     private UrlMapping urlMapping;
+
+    // Analytics dimensions are dictionary-coded: each column holds the id of a ClickDimension row
+    // (e.g. referrer "google.com" -> 17) instead of repeating the same strings on millions of rows.
+    // Null for clicks recorded before these dimensions existed.
+    private Integer referrerId;   // host of the site they came from
+    private Integer deviceTypeId; // DESKTOP / MOBILE / TABLET / BOT, parsed from the User-Agent
+    private Integer countryId;    // ISO country code from the offline geo-IP database
 }
 
-// Later, I might add more details for analytics:
-//	•	ipAddress
-//	•	deviceType
-//	•	referrer (what site they came from)
-//	•	country (geo-IP lookup)
\ No newline at end of file
+// The raw ipAddress is deliberately not stored: it is only used for the geo lookup while the click is ingested.
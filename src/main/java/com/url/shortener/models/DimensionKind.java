@@ -0,0 +1,37 @@
+package com.url.shortener.models;
+
+import com.url.shortener.exceptions.BadRequestException;
+
+/**
+ * The analytics dimensions captured for each click.
+ * Each kind knows the ClickEvent attribute holding its dictionary-coded value.
+ */
+public enum DimensionKind {
+    REFERRER("referrerId"),
+    DEVICE_TYPE("deviceTypeId"),
+    COUNTRY("countryId");
+
+    private final String clickEventAttribute;
+
+    DimensionKind(String clickEventAttribute) {
+        this.clickEventAttribute = clickEventAttribute;
+    }
+
+    public String getClickEventAttribute() {
+        return clickEventAttribute;
+    }
+
+    /**
+     * Resolves the value of the "dimension" request parameter (referrer, device or country).
+     *
+     * @throws BadRequestException for anything else
+     */
+    public static DimensionKind fromParam(String param) {
+        return switch (param.toLowerCase()) {
+            case "referrer" -> REFERRER;
+            case "device", "devicetype" -> DEVICE_TYPE;
+            case "country" -> COUNTRY;
+            default -> throw new BadRequestException("Unknown dimension: " + param + " (expected referrer, device or country)");
+        };
+    }
+}
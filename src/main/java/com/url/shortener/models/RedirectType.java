@@ -0,0 +1,48 @@
+package com.url.shortener.models;
+
+import com.url.shortener.exceptions.BadRequestException;
+
+/**
+ * How a short URL redirects.
+ * Temporary redirects reach the server on every click, so each one is counted. Permanent ones may be cached by
+ * browsers and CDNs, which makes repeat visits faster but means those visits are never seen (or counted) here.
+ */
+public enum RedirectType {
+    /** 302, not cacheable: every click is counted. The default. */
+    FOUND(302),
+    /** 301, cacheable. Clients may turn a POST into a GET on the redirected request. */
+    MOVED_PERMANENTLY(301),
+    /** 308, cacheable, keeps the request method and body. */
+    PERMANENT_REDIRECT(308);
+
+    private final int status;
+
+    RedirectType(int status) {
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isPermanent() {
+        return this != FOUND;
+    }
+
+    /**
+     * Resolves the "redirectType" request value: the status code (301, 302, 308) or null for the default.
+     *
+     * @throws BadRequestException for anything else
+     */
+    public static RedirectType fromParam(String param) {
+        if (param == null) {
+            return FOUND;
+        }
+        return switch (param.trim()) {
+            case "302" -> FOUND;
+            case "301" -> MOVED_PERMANENTLY;
+            case "308" -> PERMANENT_REDIRECT;
+            default -> throw new BadRequestException("Unknown redirectType: " + param + " (expected 301, 302 or 308)");
+        };
+    }
+}
@@ -2,6 +2,7 @@ package com.url.shortener.models;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.SQLRestriction;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -11,9 +12,17 @@ import java.util.List;
  * Entity representing the mapping between an original URL and its shortened version.
  * Stores information such as the original URL, the generated short URL, click count, creation date,
  * associated user, and related click events.
+ * Deleted links keep their row (with deletedAt set) until LinkPurgeService has removed their clicks; every JPA
+ * query and lookup leaves them out, so a deletion takes effect right away.
  */
 @Entity // @Entity makes it a table (url_mapping by default, unless overridden).
 @Data
+@Table(indexes = {
+        @Index(name = "idx_url_mapping_expires_at", columnList = "expires_at"), // lets the expiry preload read only the links expiring soon
+        @Index(name = "idx_url_mapping_user_url_hash", columnList = "user_id, url_hash"), // finds a user's existing link for a URL (dedup)
+        @Index(name = "idx_url_mapping_deleted_at", columnList = "deleted_at") // lets the purge find deleted links
+})
+@SQLRestriction("deleted_at is null") // deleted links are invisible to the application (native queries excepted)
 public class UrlMapping {
     /** Unique identifier for each URL mapping. */
     @Id
@@ -27,18 +36,48 @@ public class UrlMapping {
     @Column(nullable = true)
     private String shortUrl;
 
+    /**
+     * Hash of the normalized original URL and redirect type (see LinkDeduplicator), set only on links that
+     * may be returned again when their owner shortens the same URL. Null for all other links.
+     */
+    @Column(name = "url_hash")
+    private Long urlHash;
+
     /** Number of times the short URL was clicked. */
     private int clickCount = 0;
 
     /** Timestamp when this mapping was created. */
     private LocalDateTime createdDate;
 
+    /** When the short URL stops redirecting (HTTP 410), or null if it never expires. */
+    @Column(name = "expires_at")
+    private LocalDateTime expiresAt;
+
+    /** Maximum number of redirects before the short URL stops working, or null for no limit. */
+    private Integer maxClicks;
+
+    /** Status code and cacheability of the redirect; null means the default 302. */
+    @Enumerated(EnumType.STRING)
+    private RedirectType redirectType;
+
+    /**
+     * Last time the mapping or its clicks changed (created, clicked, expired).
+     * Together with clickCount it versions analytics responses for HTTP caching.
+     */
+    private LocalDateTime lastModified;
+
+    /** When the link was deleted (by its owner, with the owner's account, or after expiring); null while it exists. */
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+
     /**
      * The user who owns this URL mapping.
      * Many URLs can belong to one user.
+     * Users are only stored on shard 0 while links are spread over all shards, so the column has no foreign key
+     * constraint and the user is never loaded through the mapping (lazy; only its id is read).
      */
-    @ManyToOne // This says: “Many URLs belong to one user.”
-    @JoinColumn(name = "user_id") // Creates a user_id foreign key column in the url_mapping table.
+    @ManyToOne(fetch = FetchType.LAZY) // This says: “Many URLs belong to one user.”
+    @JoinColumn(name = "user_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT)) // Creates a user_id column in the url_mapping table.
     private User user;
 
     /**
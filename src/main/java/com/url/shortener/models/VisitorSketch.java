@@ -0,0 +1,34 @@
+package com.url.shortener.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * HyperLogLog sketch of the visitors of one URL mapping on one day.
+ * Lets us answer "unique visitors" for any range of days or set of links by merging a few small sketches
+ * instead of running COUNT(DISTINCT ...) over every click.
+ */
+@Entity
+@Data
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"url_mapping_id", "sketch_day"}))
+public class VisitorSketch {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "url_mapping_id", nullable = false)
+    private Long urlMappingId;
+
+    @Column(name = "sketch_day", nullable = false) // "day" is a reserved word in some databases
+    private LocalDate day;
+
+    /** Serialized HyperLogLog (sparse for quiet days, at most ~3 KB dense). */
+    @Column(nullable = false, length = 8192)
+    private byte[] sketch;
+
+    /** Optimistic lock, so two writers merging into the same row can't overwrite each other. */
+    @Version
+    private Long version;
+}
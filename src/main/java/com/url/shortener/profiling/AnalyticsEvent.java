@@ -0,0 +1,79 @@
+package com.url.shortener.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import lombok.Setter;
+
+/**
+ * JFR event for an analytics aggregation or export over a link or all of a user's links.
+ * The range is only formatted for events that are actually recorded (see {@link #finish}).
+ */
+@Name("com.url.shortener.Analytics")
+@Label("Analytics")
+@Category({"URL Shortener", "Analytics"})
+@Description("Aggregation of clicks or visitors over a date range, or a raw click export")
+@StackTrace(false)
+@Threshold("10 ms")
+@Setter
+public class AnalyticsEvent extends Event {
+
+    @Label("Operation")
+    @Description("clicksByDay, uniqueVisitors, breakdown or export")
+    private String operation;
+
+    @Label("Dimension")
+    @Description("REFERRER, DEVICE_TYPE or COUNTRY, for a breakdown")
+    private String dimension;
+
+    @Label("Short URL")
+    @Description("Set for a single link")
+    private String shortUrl;
+
+    @Label("User Id")
+    @Description("Set for all of a user's links")
+    private long userId;
+
+    @Label("Range Start")
+    private String rangeStart;
+
+    @Label("Range End")
+    private String rangeEnd;
+
+    @Label("Links")
+    @Description("Number of links aggregated")
+    private int links;
+
+    @Label("Rows")
+    @Description("Rows returned (days, dimension values or exported clicks)")
+    private long rows;
+
+    @Label("Clicks")
+    @Description("Clicks counted, where the operation counts clicks")
+    private long clicks;
+
+    public static AnalyticsEvent start(String operation) {
+        AnalyticsEvent event = new AnalyticsEvent();
+        event.operation = operation;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event and commits it if it is enabled and took longer than its threshold.
+     */
+    public void finish(Object rangeStart, Object rangeEnd, long rows, long clicks) {
+        end();
+        if (shouldCommit()) {
+            this.rangeStart = String.valueOf(rangeStart);
+            this.rangeEnd = String.valueOf(rangeEnd);
+            this.rows = rows;
+            this.clicks = clicks;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.url.shortener.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import lombok.Setter;
+
+/**
+ * JFR event for recording one click in the background: enrichment, dictionary coding and the database writes.
+ */
+@Name("com.url.shortener.ClickRecord")
+@Label("Click Record")
+@Category({"URL Shortener", "Analytics"})
+@Description("Recording of a click (from the ingestion queue, the click journal or the outage buffer)")
+@StackTrace(false)
+@Threshold("5 ms")
+@Setter
+public class ClickRecordEvent extends Event {
+
+    @Label("Link Id")
+    private long urlMappingId;
+
+    @Label("Shard")
+    private int shard;
+
+    @Label("Recorded")
+    @Description("False if the click failed (and was buffered, retried or dropped)")
+    private boolean recorded;
+
+    public static ClickRecordEvent start(long urlMappingId, int shard) {
+        ClickRecordEvent event = new ClickRecordEvent();
+        event.urlMappingId = urlMappingId;
+        event.shard = shard;
+        event.begin();
+        return event;
+    }
+}
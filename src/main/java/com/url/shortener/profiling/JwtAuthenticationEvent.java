@@ -0,0 +1,42 @@
+package com.url.shortener.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import lombok.Setter;
+
+/**
+ * JFR event for the JWT filter's work on a request: parsing and validating the token and loading the user.
+ * The rest of the request isn't included.
+ */
+@Name("com.url.shortener.JwtAuthentication")
+@Label("JWT Authentication")
+@Category({"URL Shortener", "Security"})
+@Description("Token validation and user lookup of the JWT filter")
+@StackTrace(false)
+@Threshold("1 ms")
+@Setter
+public class JwtAuthenticationEvent extends Event {
+
+    @Label("Path")
+    private String path;
+
+    @Label("Username")
+    private String username;
+
+    @Label("Token Present")
+    private boolean tokenPresent;
+
+    @Label("Authenticated")
+    private boolean authenticated;
+
+    public static JwtAuthenticationEvent start() {
+        JwtAuthenticationEvent event = new JwtAuthenticationEvent();
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,45 @@
+package com.url.shortener.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import lombok.Setter;
+
+/**
+ * JFR event for resolving a short URL on the redirect path: cache, single-flight lookup and click limit check.
+ * Recording the click itself is a {@link ClickRecordEvent}.
+ */
+@Name("com.url.shortener.Redirect")
+@Label("Redirect")
+@Category({"URL Shortener", "Redirect"})
+@Description("Resolution of a short URL for a redirect")
+@StackTrace(false)
+@Threshold("1 ms")
+@Setter
+public class RedirectEvent extends Event {
+
+    @Label("Short URL")
+    private String shortUrl;
+
+    @Label("Link Id")
+    private long urlMappingId;
+
+    @Label("Cache Hit")
+    @Description("Served from the redirect cache, without a database lookup")
+    private boolean cacheHit;
+
+    @Label("Outcome")
+    @Description("ALLOWED, LAST_CLICK, GONE, NOT_FOUND or FAILED")
+    private String outcome = "FAILED";
+
+    public static RedirectEvent start(String shortUrl) {
+        RedirectEvent event = new RedirectEvent();
+        event.shortUrl = shortUrl;
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,43 @@
+package com.url.shortener.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import lombok.Setter;
+
+/**
+ * JFR event for creating a short URL. Shortening is rare next to redirects, so every one is recorded.
+ */
+@Name("com.url.shortener.Shorten")
+@Label("Shorten")
+@Category({"URL Shortener", "Links"})
+@Description("Creation of a short URL (or return of the existing one, with dedup)")
+@StackTrace(false)
+@Threshold("0 ms")
+@Setter
+public class ShortenEvent extends Event {
+
+    @Label("User Id")
+    private long userId;
+
+    @Label("Short URL")
+    private String shortUrl;
+
+    @Label("Shard")
+    private int shard;
+
+    @Label("Deduplicated")
+    @Description("The user's existing link for the URL was returned")
+    private boolean deduplicated;
+
+    public static ShortenEvent start(long userId) {
+        ShortenEvent event = new ShortenEvent();
+        event.userId = userId;
+        event.begin();
+        return event;
+    }
+}
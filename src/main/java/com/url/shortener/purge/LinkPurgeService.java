@@ -0,0 +1,182 @@
+package com.url.shortener.purge;
+
+import com.url.shortener.analytics.archive.ClickArchiveCompactionJob;
+import com.url.shortener.repository.ClickEventRepository;
+import com.url.shortener.repository.UrlMappingRepository;
+import com.url.shortener.repository.VisitorSketchRepository;
+import com.url.shortener.sharding.ShardContext;
+import com.url.shortener.sharding.ShardRouter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Removes deleted links from the database in the background: first their archived clicks, then their clicks,
+ * their visitor sketches and the url_mapping row itself.
+ * <p>
+ * A link can have millions of clicks, and deleting them in one statement would hold locks on click_event for as
+ * long as that takes. Instead they are deleted a page at a time, keyed by id (each page a statement and
+ * transaction of its own), with a pause between pages so the purge never crowds out the redirect path's writes.
+ * Progress is logged while a large link is being purged.
+ * <p>
+ * The only state is the deleted_at column, so a purge interrupted by a restart or failure simply continues with
+ * the next run, and several instances purging at once just delete the same pages. A link is only purged once it
+ * has been deleted for min-age-ms, so the other instances' DeletedLinkEvictor sees the row before it goes.
+ */
+@Service
+public class LinkPurgeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LinkPurgeService.class);
+    private static final int LINKS_PER_QUERY = 100;
+
+    private final UrlMappingRepository urlMappingRepository;
+    private final ClickEventRepository clickEventRepository;
+    private final VisitorSketchRepository visitorSketchRepository;
+    private final ClickArchiveCompactionJob clickArchiveCompactionJob;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final int batchSize;
+    private final long batchPauseMillis;
+    private final long progressIntervalMillis;
+    private final Duration minAge;
+    private final ExecutorService executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public LinkPurgeService(UrlMappingRepository urlMappingRepository,
+                            ClickEventRepository clickEventRepository,
+                            VisitorSketchRepository visitorSketchRepository,
+                            ClickArchiveCompactionJob clickArchiveCompactionJob,
+                            TransactionTemplate transactionTemplate,
+                            ShardRouter shardRouter,
+                            @Value("${links.purge.batch-size:1000}") int batchSize,
+                            @Value("${links.purge.batch-pause-ms:50}") long batchPauseMillis,
+                            @Value("${links.purge.progress-interval-ms:10000}") long progressIntervalMillis,
+                            @Value("${links.purge.min-age-ms:120000}") long minAgeMillis) {
+        this.urlMappingRepository = urlMappingRepository;
+        this.clickEventRepository = clickEventRepository;
+        this.visitorSketchRepository = visitorSketchRepository;
+        this.clickArchiveCompactionJob = clickArchiveCompactionJob;
+        this.transactionTemplate = transactionTemplate;
+        this.shardRouter = shardRouter;
+        this.batchSize = batchSize;
+        this.batchPauseMillis = batchPauseMillis;
+        this.progressIntervalMillis = progressIntervalMillis;
+        this.minAge = Duration.ofMillis(minAgeMillis);
+        // one purge at a time, off the scheduler threads (a large link can take minutes)
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "link-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts a purge run unless one is going on already. Called after links were deleted, and periodically
+     * to pick up what an earlier run (or another instance) left behind.
+     */
+    @Scheduled(fixedDelayString = "${links.purge.interval-ms:60000}")
+    public void requestPurge() {
+        if (running.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    purgeAll();
+                } finally {
+                    running.set(false);
+                }
+            });
+        }
+    }
+
+    private void purgeAll() {
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            int current = shard;
+            LocalDateTime deletedBefore = LocalDateTime.now().minus(minAge);
+            try {
+                List<Long> deleted;
+                while (!(deleted = ShardContext.call(current, () -> urlMappingRepository.findPurgeableIds(deletedBefore, LINKS_PER_QUERY))).isEmpty()) {
+                    // archived clicks first: once the row is gone nothing would remember to remove them
+                    long archived = clickArchiveCompactionJob.dropLinks(new HashSet<>(deleted));
+                    if (archived > 0) {
+                        logger.info("Removed {} archived clicks of {} deleted links", archived, deleted.size());
+                    }
+                    for (long urlMappingId : deleted) {
+                        if (!purge(current, urlMappingId)) {
+                            return; // shutting down
+                        }
+                    }
+                }
+            } catch (DataAccessException | IOException | UncheckedIOException e) {
+                logger.warn("Purge of deleted links on shard {} failed, retrying with the next run: {}", shard, e.getMessage());
+            }
+        }
+    }
+
+    // Removes one deleted link of the given shard; false if interrupted
+    private boolean purge(int shard, long urlMappingId) {
+        long started = System.currentTimeMillis();
+        long lastReport = started;
+        long removed = 0;
+        long afterId = 0;
+        PageRequest page = PageRequest.of(0, batchSize);
+        while (true) {
+            long from = afterId;
+            List<Long> ids = ShardContext.call(shard, () -> clickEventRepository.findIdsByUrlMappingId(urlMappingId, from, page));
+            if (ids.isEmpty()) {
+                break;
+            }
+            long upTo = ids.getLast();
+            removed += ShardContext.call(shard, () -> clickEventRepository.deleteByUrlMappingId(urlMappingId, from, upTo));
+            afterId = upTo;
+            long now = System.currentTimeMillis();
+            if (now - lastReport >= progressIntervalMillis) {
+                logger.info("Purging deleted link {}: {} clicks removed so far", urlMappingId, removed);
+                lastReport = now;
+            }
+            try {
+                Thread.sleep(batchPauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        // sketches first (they are on shard 0): if the rest fails, the link is still marked and the next run finishes it
+        ShardContext.run(0, () -> visitorSketchRepository.deleteByUrlMappingIds(List.of(urlMappingId)));
+        // clicks recorded while the pages above were deleted go together with the row
+        ShardContext.run(shard, () -> transactionTemplate.executeWithoutResult(status -> {
+            clickEventRepository.deleteByUrlMappingIds(List.of(urlMappingId));
+            urlMappingRepository.deleteDeleted(urlMappingId);
+        }));
+        if (removed >= batchSize) {
+            logger.info("Purged deleted link {}: {} clicks in {} ms", urlMappingId, removed, System.currentTimeMillis() - started);
+        } else {
+            logger.debug("Purged deleted link {} ({} clicks)", urlMappingId, removed);
+        }
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // the link being purged is finished by the next start
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,69 @@
+package com.url.shortener.redirect;
+
+import com.url.shortener.repository.UrlMappingRepository;
+import com.url.shortener.service.ShortUrlCodec;
+import com.url.shortener.sharding.ShardContext;
+import com.url.shortener.sharding.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Drops links deleted on other instances from this instance's {@link RedirectCache}.
+ * <p>
+ * The instance deleting a link evicts it right away; the others find out here, by polling every shard for links
+ * deleted since the last poll (through the deleted_at index). Until then they may still redirect it, for at most
+ * about one poll interval, also from a stale entry while the database is unavailable. Deleted rows are kept for
+ * links.purge.min-age-ms before LinkPurgeService removes them, so every instance sees them at least once; the
+ * poll reaches back by a margin to allow for clocks of different instances and transactions committing late.
+ * <p>
+ * An instance that can't reach a shard for longer than the purge min age can miss its deletions; its cached
+ * entries still run out after links.cache.ttl-seconds, but stale ones could be served during a later outage.
+ */
+@Component
+public class DeletedLinkEvictor {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeletedLinkEvictor.class);
+
+    private final UrlMappingRepository urlMappingRepository;
+    private final RedirectCache redirectCache;
+    private final Duration margin;
+    // per shard: deletions before this have been seen
+    private final LocalDateTime[] polledUntil;
+
+    public DeletedLinkEvictor(UrlMappingRepository urlMappingRepository,
+                              RedirectCache redirectCache,
+                              ShardRouter shardRouter,
+                              @Value("${links.cache.deletion-margin-ms:30000}") long marginMillis) {
+        this.urlMappingRepository = urlMappingRepository;
+        this.redirectCache = redirectCache;
+        this.margin = Duration.ofMillis(marginMillis);
+        this.polledUntil = new LocalDateTime[shardRouter.getShardCount()];
+        // nothing is cached yet, so nothing deleted before the start matters
+        Arrays.fill(polledUntil, LocalDateTime.now());
+    }
+
+    @Scheduled(fixedDelayString = "${links.cache.deletion-poll-ms:5000}")
+    public void evictDeleted() {
+        for (int shard = 0; shard < polledUntil.length; shard++) {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime since = polledUntil[shard].minus(margin);
+            try {
+                List<Long> ids = ShardContext.call(shard, () -> urlMappingRepository.findIdsDeletedSince(since));
+                ids.forEach(id -> redirectCache.evict(ShortUrlCodec.encode(id)));
+                polledUntil[shard] = now;
+            } catch (DataAccessException e) {
+                // retried from the same point with the next poll
+                logger.debug("Could not poll shard {} for deleted links: {}", shard, e.getMessage());
+            }
+        }
+    }
+}
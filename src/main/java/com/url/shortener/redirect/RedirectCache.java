@@ -0,0 +1,99 @@
+package com.url.shortener.redirect;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory cache of redirect targets by short URL, so popular links are served without a database lookup.
+ * <p>
+ * Entries live for the configured TTL but never past the link's own expiry: a link expiring in 30 seconds is cached
+ * for 30 seconds, so the cache can't keep a link alive and is refreshed right when it expires.
+ * Lock-free on the read path (redirects hit it on request threads); when full, stale entries and then arbitrary
+ * ones are dropped.
+ * <p>
+ * Entries past their lifetime aren't served by {@link #get} but stay until they are replaced or room is needed:
+ * while the database is unavailable, redirects fall back on them ({@link #getStale}). Deleted links are evicted,
+ * right away on the instance deleting them and by {@link DeletedLinkEvictor} on the others, so neither method
+ * serves them afterwards.
+ */
+@Component
+public class RedirectCache {
+
+    private final Map<String, RedirectTarget> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    public RedirectCache(@Value("${links.cache.max-entries:100000}") int maxEntries,
+                         @Value("${links.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    /**
+     * @return the cached target, or null if absent or past its cache lifetime
+     */
+    public RedirectTarget get(String shortUrl) {
+        RedirectTarget target = entries.get(shortUrl);
+        if (target != null && target.getCachedUntilMillis() <= System.currentTimeMillis()) {
+            return null;
+        }
+        return target;
+    }
+
+    /**
+     * @return the last target cached for the short URL even if past its cache lifetime, or null if none is left
+     */
+    public RedirectTarget getStale(String shortUrl) {
+        return entries.get(shortUrl);
+    }
+
+    /**
+     * Caches a freshly loaded target, replacing a stale entry. If another thread cached the same short URL
+     * meanwhile, that entry wins so all redirects count clicks on the same target.
+     *
+     * @return the target now in the cache
+     */
+    public RedirectTarget put(RedirectTarget target) {
+        long now = System.currentTimeMillis();
+        long cachedUntil = now + ttlMillis;
+        LocalDateTime expiresAt = target.getExpiresAt();
+        if (expiresAt != null) {
+            long expiresAtMillis = expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            // an already expired target is still cached (answering 410 from memory), otherwise only until it expires
+            if (expiresAtMillis > now) {
+                cachedUntil = Math.min(cachedUntil, expiresAtMillis);
+            }
+        }
+        target.setCachedUntilMillis(cachedUntil);
+        if (entries.size() >= maxEntries) {
+            makeRoom(now);
+        }
+        return entries.compute(target.getShortUrl(),
+                (shortUrl, existing) -> existing != null && existing.getCachedUntilMillis() > now ? existing : target);
+    }
+
+    public void evict(String shortUrl) {
+        entries.remove(shortUrl);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Drops entries past their lifetime; if that isn't enough, a tenth of the cache in iteration (effectively random) order
+    private void makeRoom(long now) {
+        entries.values().removeIf(target -> target.getCachedUntilMillis() <= now);
+        int toRemove = entries.size() - maxEntries + Math.max(1, maxEntries / 10);
+        Iterator<RedirectTarget> iterator = entries.values().iterator();
+        while (toRemove-- > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.url.shortener.redirect;
+
+import com.url.shortener.exceptions.RedirectLookupTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight loading of redirect targets: concurrent cache misses for the same short URL share one database load.
+ * <p>
+ * When a link goes viral (or its cache entry expires under load) hundreds of redirects can miss the cache at once;
+ * without this they would all run the same query. The first miss loads on its own thread, the others wait for its
+ * result, up to a timeout. A failed load fails every waiting redirect with the same exception, and nothing is
+ * remembered once the load is over, so the next miss tries again.
+ */
+@Component
+public class RedirectLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedirectLoader.class);
+
+    private final Map<String, CompletableFuture<RedirectTarget>> inFlight = new ConcurrentHashMap<>();
+    private final long timeoutMillis;
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    // totals at the last stats log line (only touched by the scheduler thread)
+    private long loggedLoads;
+    private long loggedCoalesced;
+
+    public RedirectLoader(@Value("${links.single-flight.timeout-ms:2000}") long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Returns what the loader produces for this short URL, running it only if no load for it is in flight already.
+     *
+     * @param loader loads the target (and caches it); may return null for an unknown short URL
+     * @throws RedirectLookupTimeoutException if the load in flight didn't finish within the timeout
+     */
+    public RedirectTarget load(String shortUrl, Supplier<RedirectTarget> loader) {
+        CompletableFuture<RedirectTarget> flight = new CompletableFuture<>();
+        CompletableFuture<RedirectTarget> existing = inFlight.putIfAbsent(shortUrl, flight);
+        if (existing != null) {
+            coalesced.increment();
+            return await(shortUrl, existing);
+        }
+        loads.increment();
+        try {
+            RedirectTarget target = loader.get();
+            flight.complete(target);
+            return target;
+        } catch (Throwable e) {
+            failures.increment();
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(shortUrl, flight);
+        }
+    }
+
+    private RedirectTarget await(String shortUrl, CompletableFuture<RedirectTarget> flight) {
+        try {
+            return flight.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new RedirectLookupTimeoutException("Lookup of " + shortUrl + " is taking too long");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RedirectLookupTimeoutException("Interrupted while waiting for the lookup of " + shortUrl);
+        } catch (ExecutionException e) {
+            // the loading redirect failed: fail with the same exception (e.g. the database is unreachable)
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /** Database loads run for cache misses. */
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    /** Cache misses that waited for a load already in flight instead of running their own. */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /** Waiting cache misses that gave up after the timeout. */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /** Loads that failed (each failed the redirects waiting for it too). */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    // One line per interval in which misses were coalesced, e.g. to see how much a burst on a hot link saved
+    @Scheduled(fixedDelayString = "${links.single-flight.stats-interval-ms:60000}")
+    public void logStats() {
+        long currentLoads = getLoads();
+        long currentCoalesced = getCoalesced();
+        if (currentCoalesced != loggedCoalesced) {
+            logger.info("Redirect lookups: {} loads, {} coalesced into them since last report (totals: {} loads, {} coalesced, {} timeouts, {} failures)",
+                    currentLoads - loggedLoads, currentCoalesced - loggedCoalesced,
+                    currentLoads, currentCoalesced, getTimeouts(), getFailures());
+        }
+        loggedLoads = currentLoads;
+        loggedCoalesced = currentCoalesced;
+    }
+}
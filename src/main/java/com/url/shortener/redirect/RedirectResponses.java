@@ -0,0 +1,55 @@
+package com.url.shortener.redirect;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Builds the HTTP response for a redirect according to the link's redirect type.
+ * <ul>
+ *   <li>302: Cache-Control: no-store, so browsers and CDNs come back for every click and each one is counted.</li>
+ *   <li>301/308: cacheable for links.redirect.permanent-max-age-seconds, but never past the link's expiry.</li>
+ * </ul>
+ * A cached permanent redirect is out of our hands: deleting the link evicts it from the server-side caches only,
+ * so browsers and CDNs that stored the response keep redirecting until its max-age runs out.
+ */
+@Component
+public class RedirectResponses {
+
+    private final Duration permanentMaxAge;
+
+    public RedirectResponses(@Value("${links.redirect.permanent-max-age-seconds:86400}") long permanentMaxAgeSeconds) {
+        this.permanentMaxAge = Duration.ofSeconds(permanentMaxAgeSeconds);
+    }
+
+    public ResponseEntity<Void> redirect(RedirectTarget target, LocalDateTime now) {
+        HttpHeaders httpHeaders = new HttpHeaders();
+        httpHeaders.add(HttpHeaders.LOCATION, target.getOriginalUrl());
+        return ResponseEntity.status(target.getRedirectType().getStatus())
+                .headers(httpHeaders)
+                .cacheControl(cacheControl(target, now))
+                .build();
+    }
+
+    private CacheControl cacheControl(RedirectTarget target, LocalDateTime now) {
+        if (!target.getRedirectType().isPermanent()) {
+            return CacheControl.noStore();
+        }
+        Duration maxAge = permanentMaxAge;
+        if (target.getExpiresAt() != null) {
+            Duration remaining = Duration.between(now, target.getExpiresAt());
+            if (remaining.compareTo(maxAge) < 0) {
+                maxAge = remaining;
+            }
+        }
+        if (maxAge.toSeconds() < 1) {
+            return CacheControl.noStore();
+        }
+        return CacheControl.maxAge(maxAge).cachePublic();
+    }
+}
@@ -0,0 +1,117 @@
+package com.url.shortener.redirect;
+
+import com.url.shortener.models.RedirectType;
+import com.url.shortener.models.UrlMapping;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What the redirect path needs to know about a short URL, cached in memory.
+ * Expiry and the click limit are checked here on every redirect, so enforcing them costs no extra query.
+ */
+public final class RedirectTarget {
+
+    /** Outcome of {@link #admit(LocalDateTime)}. */
+    public enum Admission {
+        /** Redirect. */
+        ALLOWED,
+        /** Redirect; this click used up the click limit. */
+        LAST_CLICK,
+        /** Expired or out of clicks: answer 410 Gone. */
+        GONE
+    }
+
+    private final long urlMappingId;
+    private final Long userId;
+    private final String shortUrl;
+    private final String originalUrl;
+    private final RedirectType redirectType;
+    private final Integer maxClicks;
+    private final AtomicLong clicks;
+    private volatile LocalDateTime expiresAt;
+    private volatile long cachedUntilMillis;
+
+    public RedirectTarget(long urlMappingId, Long userId, String shortUrl, String originalUrl, RedirectType redirectType,
+                          LocalDateTime expiresAt, Integer maxClicks, long clicks) {
+        this.urlMappingId = urlMappingId;
+        this.userId = userId;
+        this.shortUrl = shortUrl;
+        this.originalUrl = originalUrl;
+        this.redirectType = redirectType != null ? redirectType : RedirectType.FOUND;
+        this.expiresAt = expiresAt;
+        this.maxClicks = maxClicks;
+        this.clicks = new AtomicLong(clicks);
+    }
+
+    public static RedirectTarget of(UrlMapping urlMapping) {
+        return new RedirectTarget(urlMapping.getId(), urlMapping.getUser().getId(), urlMapping.getShortUrl(),
+                urlMapping.getOriginalUrl(), urlMapping.getRedirectType(), urlMapping.getExpiresAt(),
+                urlMapping.getMaxClicks(), urlMapping.getClickCount());
+    }
+
+    /**
+     * Decides whether a click may be redirected and counts it against the click limit.
+     * The counter starts at the click count stored when the target was loaded, so with several instances
+     * a link can overshoot its limit by the clicks the other instances served since then.
+     */
+    public Admission admit(LocalDateTime now) {
+        LocalDateTime expiry = expiresAt;
+        if (expiry != null && !now.isBefore(expiry)) {
+            return Admission.GONE;
+        }
+        if (maxClicks == null) {
+            clicks.incrementAndGet();
+            return Admission.ALLOWED;
+        }
+        long before = clicks.getAndUpdate(count -> count < maxClicks ? count + 1 : count);
+        if (before >= maxClicks) {
+            return Admission.GONE;
+        }
+        return before + 1 == maxClicks ? Admission.LAST_CLICK : Admission.ALLOWED;
+    }
+
+    /** Marks the target as expired from now on (its click limit was reached). */
+    public void expire(LocalDateTime at) {
+        LocalDateTime expiry = expiresAt;
+        if (expiry == null || expiry.isAfter(at)) {
+            expiresAt = at;
+        }
+    }
+
+    public long getUrlMappingId() {
+        return urlMappingId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getShortUrl() {
+        return shortUrl;
+    }
+
+    public String getOriginalUrl() {
+        return originalUrl;
+    }
+
+    public RedirectType getRedirectType() {
+        return redirectType;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public Integer getMaxClicks() {
+        return maxClicks;
+    }
+
+    long getCachedUntilMillis() {
+        return cachedUntilMillis;
+    }
+
+    void setCachedUntilMillis(long cachedUntilMillis) {
+        this.cachedUntilMillis = cachedUntilMillis;
+    }
+}
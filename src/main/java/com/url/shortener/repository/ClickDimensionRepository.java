@@ -0,0 +1,14 @@
+package com.url.shortener.repository;
+
+import com.url.shortener.models.ClickDimension;
+import com.url.shortener.models.DimensionKind;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ClickDimensionRepository extends JpaRepository<ClickDimension, Integer> {
+    // Looks up the dictionary entry for a dimension value, e.g. (COUNTRY, "DE")
+    Optional<ClickDimension> findByKindAndValue(DimensionKind kind, String value);
+}
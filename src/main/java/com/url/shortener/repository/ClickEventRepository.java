@@ -1,21 +1,53 @@
 package com.url.shortener.repository;
 
+import com.url.shortener.analytics.archive.ClickEventRow;
 import com.url.shortener.models.ClickEvent;
-import com.url.shortener.models.UrlMapping;
-import com.url.shortener.models.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface ClickEventRepository extends JpaRepository<ClickEvent, Long> {
+public interface ClickEventRepository extends JpaRepository<ClickEvent, Long>, ClickEventRepositoryCustom {
     // Repository for managing ClickEvent entities, providing methods to retrieve click events based on URL mappings and date ranges.
 
-    // Finds click events for a specific UrlMapping within the given date range.
-    List<ClickEvent> findByUrlMappingAndClickDateBetween(UrlMapping mapping, LocalDateTime startDate, LocalDateTime endDate);
+    // Next page (in click time, then id order) of clicks older than the cutoff, after the given key, read as plain
+    // rows for the columnar archive. Keyed by time rather than id: ids don't follow click time (clicks replayed
+    // from the journal or the outage buffer get new ids long after they happened). Clicks of deleted links are
+    // left out: they are purged from the table, and must not reach the archive after it was purged of them.
+    @Query("select new com.url.shortener.analytics.archive.ClickEventRow(c.id, c.clickDate, c.urlMapping.id, c.referrerId, c.deviceTypeId, c.countryId)" +
+            " from ClickEvent c where c.clickDate < :cutoff and c.urlMapping.deletedAt is null" +
+            " and (c.clickDate > :afterClickDate or (c.clickDate = :afterClickDate and c.id > :afterId))" +
+            " order by c.clickDate, c.id")
+    List<ClickEventRow> findArchivable(@Param("afterClickDate") LocalDateTime afterClickDate, @Param("afterId") long afterId,
+                                       @Param("cutoff") LocalDateTime cutoff, Pageable pageable);
 
-    // Finds click events for a list of UrlMappings within the given date range.
-    List<ClickEvent> findByUrlMappingInAndClickDateBetween(List<UrlMapping> urlMappings, LocalDateTime startDate, LocalDateTime endDate);
-}
\ No newline at end of file
+    // Deletes archived clicks by id, one page of them per statement.
+    @Transactional
+    @Modifying
+    @Query("delete from ClickEvent c where c.id in :ids")
+    int deleteArchived(@Param("ids") Collection<Long> ids);
+
+    // Next page (in id order) of the ids of a link's clicks, after the given id; keys the purge of a deleted link.
+    @Query("select c.id from ClickEvent c where c.urlMapping.id = :urlMappingId and c.id > :afterId order by c.id")
+    List<Long> findIdsByUrlMappingId(@Param("urlMappingId") long urlMappingId, @Param("afterId") long afterId, Pageable pageable);
+
+    // Deletes the link's clicks with afterId < id <= upToId: one page per statement and transaction.
+    @Transactional
+    @Modifying
+    @Query("delete from ClickEvent c where c.urlMapping.id = :urlMappingId and c.id > :afterId and c.id <= :upToId")
+    int deleteByUrlMappingId(@Param("urlMappingId") long urlMappingId, @Param("afterId") long afterId, @Param("upToId") long upToId);
+
+    // Removes all clicks of the given links (the last few clicks of a purged link).
+    @Transactional
+    @Modifying
+    @Query("delete from ClickEvent c where c.urlMapping.id in :urlMappingIds")
+    int deleteByUrlMappingIds(@Param("urlMappingIds") Collection<Long> urlMappingIds);
+}
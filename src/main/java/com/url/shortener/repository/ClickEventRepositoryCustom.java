@@ -0,0 +1,33 @@
+package com.url.shortener.repository;
+
+import com.url.shortener.models.DimensionKind;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+// Queries on ClickEvent that can't be expressed as Spring Data derived queries.
+public interface ClickEventRepositoryCustom {
+
+    /**
+     * Counts clicks of the given URL mappings within the date range, grouped by one analytics dimension.
+     *
+     * @param kind the dimension to group by
+     * @param urlMappingIds ids of the URL mappings whose clicks are counted
+     * @param startDate start of the range (inclusive)
+     * @param endDate end of the range (inclusive)
+     * @return map of dictionary id (null for clicks without that dimension) to click count
+     */
+    Map<Integer, Long> countByDimension(DimensionKind kind, List<Long> urlMappingIds, LocalDateTime startDate, LocalDateTime endDate);
+
+    /**
+     * Counts clicks of the given URL mappings within the date range, grouped by day, in the database.
+     *
+     * @param urlMappingIds ids of the URL mappings whose clicks are counted
+     * @param startDate start of the range (inclusive)
+     * @param endDate end of the range (inclusive)
+     * @return map of day to click count (days without clicks are absent)
+     */
+    Map<LocalDate, Long> countByDay(List<Long> urlMappingIds, LocalDateTime startDate, LocalDateTime endDate);
+}
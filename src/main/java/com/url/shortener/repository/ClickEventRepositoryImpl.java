@@ -0,0 +1,60 @@
+package com.url.shortener.repository;
+
+import com.url.shortener.models.DimensionKind;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Spring Data picks this class up by name ("Impl" suffix) as the implementation of ClickEventRepositoryCustom.
+public class ClickEventRepositoryImpl implements ClickEventRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Map<Integer, Long> countByDimension(DimensionKind kind, List<Long> urlMappingIds, LocalDateTime startDate, LocalDateTime endDate) {
+        Map<Integer, Long> counts = new HashMap<>();
+        if (urlMappingIds.isEmpty()) {
+            return counts;
+        }
+        // The attribute name comes from the enum, never from user input, so concatenating it is safe
+        String attribute = "c." + kind.getClickEventAttribute();
+        List<Object[]> rows = entityManager.createQuery(
+                        "select " + attribute + ", count(c) from ClickEvent c" +
+                                " where c.urlMapping.id in :ids and c.clickDate between :start and :end" +
+                                " group by " + attribute, Object[].class)
+                .setParameter("ids", urlMappingIds)
+                .setParameter("start", startDate)
+                .setParameter("end", endDate)
+                .getResultList();
+        for (Object[] row : rows) {
+            counts.merge((Integer) row[0], (Long) row[1], Long::sum);
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<LocalDate, Long> countByDay(List<Long> urlMappingIds, LocalDateTime startDate, LocalDateTime endDate) {
+        Map<LocalDate, Long> counts = new HashMap<>();
+        if (urlMappingIds.isEmpty()) {
+            return counts;
+        }
+        List<Object[]> rows = entityManager.createQuery(
+                        "select cast(c.clickDate as LocalDate), count(c) from ClickEvent c" +
+                                " where c.urlMapping.id in :ids and c.clickDate between :start and :end" +
+                                " group by cast(c.clickDate as LocalDate)", Object[].class)
+                .setParameter("ids", urlMappingIds)
+                .setParameter("start", startDate)
+                .setParameter("end", endDate)
+                .getResultList();
+        for (Object[] row : rows) {
+            counts.merge((LocalDate) row[0], (Long) row[1], Long::sum);
+        }
+        return counts;
+    }
+}
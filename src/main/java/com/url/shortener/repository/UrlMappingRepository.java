@@ -1,10 +1,19 @@
 package com.url.shortener.repository;
 
+import com.url.shortener.analytics.AnalyticsVersion;
+import com.url.shortener.expiry.ExpiringLink;
 import com.url.shortener.models.UrlMapping;
 import com.url.shortener.models.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -29,4 +38,176 @@ public interface UrlMappingRepository extends JpaRepository<UrlMapping, Long> {
      * @return a list of UrlMapping entities belonging to the specified user
      */
     List<UrlMapping> findByUser(User user);
-}
\ No newline at end of file
+
+    /**
+     * Finds a user's links with the given URL hash (see LinkDeduplicator), through the (user_id, url_hash) index.
+     * More than one row only on a hash collision or a lost race, so callers compare the URLs themselves.
+     *
+     * @param user the owner of the links
+     * @param urlHash hash of the normalized URL and redirect type
+     * @return the matching links
+     */
+    List<UrlMapping> findByUserAndUrlHash(User user, Long urlHash);
+
+    /**
+     * Retrieves only the ids of a user's URL mappings, without loading the entities.
+     *
+     * @param user the owner of the URL mappings
+     * @return ids of the user's URL mappings
+     */
+    @Query("select m.id from UrlMapping m where m.user = :user")
+    List<Long> findIdsByUser(@Param("user") User user);
+
+    /**
+     * Atomically adds to the click count of a mapping in the database,
+     * so concurrent clicks can't overwrite each other's increments.
+     * Also bumps lastModified, which versions analytics responses. Deleted mappings are left alone.
+     *
+     * @param id the URL mapping id
+     * @param delta number of clicks to add
+     * @param now modification time to record
+     * @return number of rows updated, 0 if the mapping is deleted or gone
+     */
+    @Transactional
+    @Modifying
+    @Query("update UrlMapping m set m.clickCount = m.clickCount + :delta, m.lastModified = :now where m.id = :id and m.deletedAt is null")
+    int incrementClickCount(@Param("id") Long id, @Param("delta") int delta, @Param("now") LocalDateTime now);
+
+    /**
+     * Version of the analytics of one short URL (see AnalyticsVersion), without reading its clicks.
+     *
+     * @param shortUrl the short URL
+     * @param user the owner of the link
+     * @return the version; links is 0 if the user has no such short URL
+     */
+    @Query("select new com.url.shortener.analytics.AnalyticsVersion(count(m), coalesce(sum(m.clickCount), 0)," +
+            " max(coalesce(m.lastModified, m.createdDate))) from UrlMapping m where m.shortUrl = :shortUrl and m.user = :user")
+    AnalyticsVersion findAnalyticsVersion(@Param("shortUrl") String shortUrl, @Param("user") User user);
+
+    /**
+     * Version of everything derived from a user's links (see AnalyticsVersion), without reading their clicks.
+     *
+     * @param user the owner of the links
+     * @return the version of the user's links
+     */
+    @Query("select new com.url.shortener.analytics.AnalyticsVersion(count(m), coalesce(sum(m.clickCount), 0)," +
+            " max(coalesce(m.lastModified, m.createdDate))) from UrlMapping m where m.user = :user")
+    AnalyticsVersion findAnalyticsVersion(@Param("user") User user);
+
+    /**
+     * Next page of links expiring in [from, until), ordered by (expiresAt, id) and continuing after the given key.
+     * Served by the expires_at index, so only the links expiring in the window are read.
+     *
+     * @param from start of the window (inclusive)
+     * @param until end of the window (exclusive)
+     * @param afterExpiresAt expiresAt of the last row of the previous page, or from for the first page
+     * @param afterId id of the last row of the previous page, or 0 for the first page
+     * @return ids and expiry times of the next page of links
+     */
+    @Query("select new com.url.shortener.expiry.ExpiringLink(m.id, m.expiresAt) from UrlMapping m" +
+            " where m.expiresAt >= :from and m.expiresAt < :until" +
+            " and (m.expiresAt > :afterExpiresAt or (m.expiresAt = :afterExpiresAt and m.id > :afterId))" +
+            " order by m.expiresAt, m.id")
+    List<ExpiringLink> findExpiring(@Param("from") LocalDateTime from, @Param("until") LocalDateTime until,
+                                    @Param("afterExpiresAt") LocalDateTime afterExpiresAt, @Param("afterId") long afterId,
+                                    Pageable pageable);
+
+    /**
+     * Sets the expiry of a link to now, unless it already expired earlier (used when its click limit is reached).
+     *
+     * @param id the URL mapping id
+     * @param now the expiry time to set
+     * @return number of rows updated
+     */
+    @Transactional
+    @Modifying
+    @Query("update UrlMapping m set m.expiresAt = :now, m.lastModified = :now where m.id = :id and (m.expiresAt is null or m.expiresAt > :now)")
+    int expire(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * Marks a link as deleted. From then on no query or lookup sees it (see UrlMapping), and LinkPurgeService
+     * removes its clicks and the row in the background.
+     *
+     * @param id the URL mapping id
+     * @param now the deletion time
+     * @return number of rows updated (0 if it was deleted already)
+     */
+    @Transactional
+    @Modifying
+    @Query("update UrlMapping m set m.deletedAt = :now, m.lastModified = :now where m.id = :id and m.deletedAt is null")
+    int markDeleted(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * Marks the given links as deleted (expired links past their retention).
+     *
+     * @param ids the URL mapping ids
+     * @param now the deletion time
+     * @return number of rows updated
+     */
+    @Transactional
+    @Modifying
+    @Query("update UrlMapping m set m.deletedAt = :now, m.lastModified = :now where m.id in :ids and m.deletedAt is null")
+    int markDeleted(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * Marks all of a user's links as deleted (the account is being deleted).
+     *
+     * @param user the owner of the links
+     * @param now the deletion time
+     * @return number of rows updated
+     */
+    @Transactional
+    @Modifying
+    @Query("update UrlMapping m set m.deletedAt = :now, m.lastModified = :now where m.user = :user and m.deletedAt is null")
+    int markDeletedByUser(@Param("user") User user, @Param("now") LocalDateTime now);
+
+    /**
+     * Ids of deleted links still waiting to be purged. Native, because UrlMapping itself hides deleted links.
+     *
+     * @param limit maximum number of ids to return
+     * @return ids of deleted links, lowest first
+     */
+    @Query(value = "select id from url_mapping where deleted_at is not null order by id limit :limit", nativeQuery = true)
+    List<Long> findDeletedIds(@Param("limit") int limit);
+
+    /**
+     * Ids of deleted links that are ready to be purged: deleted before the given time, so every instance has had
+     * the chance to see the deletion (see DeletedLinkEvictor).
+     *
+     * @param deletedBefore only links deleted before this time
+     * @param limit maximum number of ids to return
+     * @return ids of deleted links, lowest first
+     */
+    @Query(value = "select id from url_mapping where deleted_at < :deletedBefore order by id limit :limit", nativeQuery = true)
+    List<Long> findPurgeableIds(@Param("deletedBefore") LocalDateTime deletedBefore, @Param("limit") int limit);
+
+    /**
+     * Ids of links deleted at or after the given time and not purged yet, through the deleted_at index.
+     *
+     * @param since earliest deletion time to include
+     * @return ids of the links deleted since then
+     */
+    @Query(value = "select id from url_mapping where deleted_at >= :since", nativeQuery = true)
+    List<Long> findIdsDeletedSince(@Param("since") LocalDateTime since);
+
+    /**
+     * Removes the row of a deleted link once its clicks are gone.
+     *
+     * @param id the URL mapping id
+     * @return number of rows deleted (0 if the link isn't marked as deleted)
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "delete from url_mapping where id = :id and deleted_at is not null", nativeQuery = true)
+    int deleteDeleted(@Param("id") long id);
+
+    /**
+     * Filters the given ids down to links that expired at or before the cutoff.
+     *
+     * @param ids candidate URL mapping ids
+     * @param cutoff latest expiry time to include
+     * @return ids of the links that may be removed
+     */
+    @Query("select m.id from UrlMapping m where m.id in :ids and m.expiresAt <= :cutoff")
+    List<Long> findExpiredIds(@Param("ids") Collection<Long> ids, @Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,29 @@
+package com.url.shortener.repository;
+
+import com.url.shortener.models.VisitorSketch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface VisitorSketchRepository extends JpaRepository<VisitorSketch, Long> {
+    // The sketch of one link on one day, if anyone visited it
+    Optional<VisitorSketch> findByUrlMappingIdAndDay(Long urlMappingId, LocalDate day);
+
+    // All daily sketches of the given links within the date range (inclusive)
+    List<VisitorSketch> findByUrlMappingIdInAndDayBetween(Collection<Long> urlMappingIds, LocalDate startDay, LocalDate endDay);
+
+    // Removes all sketches of the given links (expired links being purged)
+    @Transactional
+    @Modifying
+    @Query("delete from VisitorSketch s where s.urlMappingId in :urlMappingIds")
+    int deleteByUrlMappingIds(@Param("urlMappingIds") Collection<Long> urlMappingIds);
+}
@@ -3,6 +3,7 @@ package com.url.shortener.security;
 import com.url.shortener.security.jwt.JwtAuthenticationFilter;
 import com.url.shortener.service.UserDetailsServiceImpl;
 import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -42,8 +43,9 @@ public class WebSecurityConfig {
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() { // PasswordEncoder → Uses BCryptPasswordEncoder for hashing passwords before saving them to DB.
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${auth.bcrypt.strength:10}") int strength) { // PasswordEncoder → Uses BCryptPasswordEncoder for hashing passwords before saving them to DB.
+        // strength = BCrypt work factor (log2 rounds). Each +1 doubles the CPU cost of every login.
+        return new BCryptPasswordEncoder(strength);
     }
 
     // AuthenticationManager is the Spring Security component that performs authentication (checks username/password).
@@ -56,10 +58,10 @@ public class WebSecurityConfig {
 //            •	Looks up users via your UserDetailsServiceImpl.
 //            •	Validates passwords using the PasswordEncoder.
     @Bean
-    public DaoAuthenticationProvider authenticationProvider() {
+    public DaoAuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
         return authProvider;
     }
 
@@ -70,7 +72,7 @@ public class WebSecurityConfig {
 // •	/{shortUrl} → open (so anyone with the short link can be redirected).
 // •	.anyRequest().authenticated() → everything else needs authentication.
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, DaoAuthenticationProvider authenticationProvider) throws Exception {
         http.csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
@@ -79,7 +81,7 @@ public class WebSecurityConfig {
                         .requestMatchers("/{shortUrl}").permitAll()
                         .anyRequest().authenticated()
                 );
-        http.authenticationProvider(authenticationProvider());
+        http.authenticationProvider(authenticationProvider);
         http.addFilterBefore(jwtAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class);
         return http.build();
     }
@@ -1,5 +1,6 @@
 package com.url.shortener.security.jwt;
 
+import com.url.shortener.profiling.JwtAuthenticationEvent;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -30,15 +31,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter { // Since we
                                     HttpServletResponse response,
                                     FilterChain filterChain)
             throws ServletException, IOException {
+        JwtAuthenticationEvent event = JwtAuthenticationEvent.start();
         try {
             // steps:
 
             // 1. get jwt token from header
             String jwt = jwtTokenProvider.getJwtFromHeader(request);
+            event.setTokenPresent(jwt != null);
 
             // 2. validate token
             if (jwt != null && jwtTokenProvider.validateToken(jwt)){
                 String username = jwtTokenProvider.getUserNameFromJwtToken(jwt);
+                event.setUsername(username);
                 // 3. if valid -> get user details
                 // -- get username -> load User -> Set the auth context
                 UserDetails userDetails = userDetailsService.loadUserByUsername(username);
@@ -46,11 +50,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter { // Since we
                     UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                     authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(authentication);
+                    event.setAuthenticated(true);
                 }
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
+        // only the filter's own work is timed, not the rest of the request
+        event.end();
+        if (event.shouldCommit()) {
+            event.setPath(request.getRequestURI());
+            event.commit();
+        }
 
         filterChain.doFilter(request, response);
     }
@@ -0,0 +1,100 @@
+package com.url.shortener.service;
+
+import com.url.shortener.exceptions.AuthenticationOverloadedException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs BCrypt hashing and verification on a small dedicated thread pool.
+ * BCrypt is deliberately CPU-heavy, so a burst of logins running on Tomcat request threads would pin every worker
+ * and starve redirects. Here the pool and its queue are bounded: when both are full the request is rejected
+ * right away (HTTP 503) instead of waiting, and a queued task that can't start within the timeout is abandoned
+ * (also 503). A task that has started always runs to completion.
+ */
+@Service
+public class PasswordHashingService {
+
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int ABANDONED = 2;
+
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+
+    public PasswordHashingService(@Value("${auth.hashing.pool-size:0}") int poolSize,
+                                  @Value("${auth.hashing.queue-capacity:64}") int queueCapacity,
+                                  @Value("${auth.hashing.timeout-ms:5000}") long timeoutMs) {
+        // 0 means "auto": leave at least half of the cores for everything else running in this JVM
+        int threads = poolSize > 0 ? poolSize : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Runs the given hashing task on the pool and waits for its result.
+     * Exceptions thrown by the task (e.g. BadCredentialsException) are rethrown unchanged on the caller's thread.
+     * The timeout only covers the wait for a hashing thread: once the task has started it is allowed to finish,
+     * since a hash that is already being computed costs nothing more to wait for than to throw away.
+     *
+     * @param task work that hashes or verifies a password
+     * @return the task's result
+     * @throws AuthenticationOverloadedException if the pool is saturated or the task could not start in time
+     */
+    public <T> T submit(Callable<T> task) {
+        // QUEUED -> RUNNING when a hashing thread picks the task up, QUEUED -> ABANDONED when the caller gives up first
+        AtomicInteger state = new AtomicInteger(QUEUED);
+        Future<T> future;
+        try {
+            future = executor.submit(() -> state.compareAndSet(QUEUED, RUNNING) ? task.call() : null);
+        } catch (RejectedExecutionException e) {
+            throw new AuthenticationOverloadedException("Too many authentication requests, please retry shortly");
+        }
+        try {
+            try {
+                return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (state.compareAndSet(QUEUED, ABANDONED)) {
+                    // give its queue slot to the next login right away
+                    executor.remove((Runnable) future);
+                    throw new AuthenticationOverloadedException("Authentication timed out, please retry shortly");
+                }
+                // started just in time (or is running a slow hash): wait for it
+                return future.get();
+            }
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AuthenticationOverloadedException("Authentication was interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
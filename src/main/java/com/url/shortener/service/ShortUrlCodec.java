@@ -0,0 +1,44 @@
+package com.url.shortener.service;
+
+/**
+ * Base62 encoding between URL mapping ids and short URLs ("A" = 0, "B" = 1, ..., "9" = 61, most significant first).
+ * Short URLs are just encoded ids, so decoding one gives the id (and with it the shard) without any lookup.
+ */
+public final class ShortUrlCodec {
+
+    private static final String CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    private ShortUrlCodec() {
+    }
+
+    public static String encode(long id) {
+        if (id == 0) {
+            return String.valueOf(CHARACTERS.charAt(0));
+        }
+        StringBuilder shortUrl = new StringBuilder();
+        while (id > 0) {
+            int rem = (int) (id % 62);
+            shortUrl.insert(0, CHARACTERS.charAt(rem));
+            id = id / 62;
+        }
+        return shortUrl.toString();
+    }
+
+    /**
+     * @return the id the short URL encodes, or -1 if it isn't a valid short URL
+     */
+    public static long decode(String shortUrl) {
+        if (shortUrl == null || shortUrl.isEmpty() || shortUrl.length() > 11) {
+            return -1;
+        }
+        long id = 0;
+        for (int i = 0; i < shortUrl.length(); i++) {
+            int digit = CHARACTERS.indexOf(shortUrl.charAt(i));
+            if (digit < 0 || id > (Long.MAX_VALUE - digit) / 62) {
+                return -1;
+            }
+            id = id * 62 + digit;
+        }
+        return id;
+    }
+}
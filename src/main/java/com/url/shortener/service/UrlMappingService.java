@@ -1,69 +1,271 @@
 package com.url.shortener.service;
 
+import com.url.shortener.analytics.AnalyticsVersion;
+import com.url.shortener.analytics.ChunkedAggregationService;
+import com.url.shortener.analytics.ClickContext;
+import com.url.shortener.analytics.ClickIngestionService;
+import com.url.shortener.analytics.DimensionDictionary;
+import com.url.shortener.analytics.HeavyHitter;
+import com.url.shortener.analytics.TrendingLinksTracker;
+import com.url.shortener.analytics.TrendingWindow;
+import com.url.shortener.analytics.UniqueVisitorService;
+import com.url.shortener.analytics.archive.ClickArchiveStore;
+import com.url.shortener.config.ReadOnlyTransactionTemplate;
+import com.url.shortener.config.ReplicaSet;
+import com.url.shortener.dedup.LinkDeduplicator;
 import com.url.shortener.dtos.ClickEventDTO;
+import com.url.shortener.dtos.TrendingLinkDTO;
+import com.url.shortener.dtos.UniqueVisitorsDTO;
 import com.url.shortener.dtos.UrlMappingDTO;
-import com.url.shortener.models.ClickEvent;
+import com.url.shortener.exceptions.BadRequestException;
+import com.url.shortener.exceptions.DatabaseUnavailableException;
+import com.url.shortener.exceptions.LinkExpiredException;
+import com.url.shortener.expiry.LinkExpiryService;
+import com.url.shortener.models.DimensionKind;
+import com.url.shortener.models.RedirectType;
 import com.url.shortener.models.UrlMapping;
 import com.url.shortener.models.User;
+import com.url.shortener.profiling.AnalyticsEvent;
+import com.url.shortener.profiling.RedirectEvent;
+import com.url.shortener.profiling.ShortenEvent;
+import com.url.shortener.purge.LinkPurgeService;
+import com.url.shortener.redirect.RedirectCache;
+import com.url.shortener.redirect.RedirectLoader;
+import com.url.shortener.redirect.RedirectTarget;
 import com.url.shortener.repository.ClickEventRepository;
 import com.url.shortener.repository.UrlMappingRepository;
+import com.url.shortener.sharding.ShardCircuitBreaker;
+import com.url.shortener.sharding.ShardContext;
+import com.url.shortener.sharding.ShardRouter;
 import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
  * Service class responsible for managing URL mappings, generating short URLs, tracking click events,
  * and providing analytics for users in the URL shortener application.
+ * <p>
+ * Links and their clicks are spread over shards (see ShardRouter). Queries for one short URL go to the shard
+ * encoded in it; queries over a user's links run on every shard and merge the results. Since a transaction
+ * can only use one shard, transactions are opened per shard here rather than around whole methods.
  */
 @Service
 @AllArgsConstructor
 public class UrlMappingService {
 
+    private static final Logger logger = LoggerFactory.getLogger(UrlMappingService.class);
+
     private UrlMappingRepository urlMappingRepository;
     private ClickEventRepository clickEventRepository;
+    private ClickIngestionService clickIngestionService;
+    private DimensionDictionary dimensionDictionary;
+    private ClickArchiveStore clickArchiveStore;
+    private UniqueVisitorService uniqueVisitorService;
+    private TrendingLinksTracker trendingLinksTracker;
+    private ReplicaSet replicaSet;
+    private TransactionTemplate transactionTemplate;
+    private ReadOnlyTransactionTemplate readOnlyTransactionTemplate;
+    private RedirectCache redirectCache;
+    private RedirectLoader redirectLoader;
+    private LinkExpiryService linkExpiryService;
+    private ChunkedAggregationService chunkedAggregationService;
+    private ShardRouter shardRouter;
+    private LinkDeduplicator linkDeduplicator;
+    private ShardCircuitBreaker shardCircuitBreaker;
+    private LinkPurgeService linkPurgeService;
 
     /**
      * Creates a new shortened URL mapping for the given original URL and user.
-     * Saves the mapping, generates a short URL based on the auto-generated ID (using base62 encoding), updates the mapping,
-     * and returns its DTO representation.
+     * Saves the mapping on the next shard, generates a short URL based on the auto-generated ID (using base62 encoding),
+     * updates the mapping, and returns its DTO representation.
+     * With dedup enabled, a plain link (no expiry or click limit) the user already shortened is returned instead.
      *
      * @param originalUrl The original long URL to shorten.
+     * @param expiresAt When the short URL stops working, or null if it never expires.
+     * @param maxClicks Maximum number of redirects, or null for no limit.
+     * @param redirectType How the short URL redirects (302 by default).
      * @param user The user creating the shortened URL.
      * @return UrlMappingDTO representing the saved URL mapping.
      */
-    public UrlMappingDTO createShortUrl(String originalUrl, User user) {
+    public UrlMappingDTO createShortUrl(String originalUrl, LocalDateTime expiresAt, Integer maxClicks,
+                                       RedirectType redirectType, User user) {
+        ShortenEvent event = ShortenEvent.start(user.getId());
+        try {
+            UrlMappingDTO urlMappingDTO = shorten(originalUrl, expiresAt, maxClicks, redirectType, user, event);
+            event.setShortUrl(urlMappingDTO.getShortUrl());
+            event.setShard(ShardRouter.shardOf(urlMappingDTO.getId()));
+            return urlMappingDTO;
+        } finally {
+            event.commit();
+        }
+    }
+
+    private UrlMappingDTO shorten(String originalUrl, LocalDateTime expiresAt, Integer maxClicks,
+                                  RedirectType redirectType, User user, ShortenEvent event) {
+        LocalDateTime now = LocalDateTime.now();
+        if (expiresAt != null && !expiresAt.isAfter(now)) {
+            throw new BadRequestException("expiresAt must be in the future");
+        }
+        if (maxClicks != null && maxClicks <= 0) {
+            throw new BadRequestException("maxClicks must be positive");
+        }
+        if (maxClicks != null && redirectType.isPermanent()) {
+            // clients that cached a permanent redirect never come back, so their clicks couldn't be limited
+            throw new BadRequestException("maxClicks requires a 302 redirect");
+        }
+        boolean dedup = linkDeduplicator.applies(expiresAt, maxClicks);
+        String normalizedUrl = dedup ? LinkDeduplicator.normalize(originalUrl) : null;
+        Long urlHash = dedup ? LinkDeduplicator.hash(normalizedUrl, redirectType) : null;
+        if (dedup) {
+            UrlMappingDTO existing = findDuplicate(user, normalizedUrl, redirectType, urlHash);
+            if (existing != null) {
+                event.setDeduplicated(true);
+                return existing;
+            }
+        }
         UrlMapping urlMapping = new UrlMapping();
         urlMapping.setOriginalUrl(originalUrl);
+        urlMapping.setUrlHash(urlHash);
         urlMapping.setUser(user);
-        urlMapping.setCreatedDate(LocalDateTime.now());
-        // Save first to get the generated ID
-        UrlMapping savedUrlMapping = urlMappingRepository.save(urlMapping);
-        String shortUrl = encodeIdToShortUrl(savedUrlMapping.getId());
-        savedUrlMapping.setShortUrl(shortUrl);
-        savedUrlMapping = urlMappingRepository.save(savedUrlMapping);
-        return convertToDto(savedUrlMapping);
+        urlMapping.setCreatedDate(now);
+        urlMapping.setExpiresAt(expiresAt);
+        urlMapping.setMaxClicks(maxClicks);
+        urlMapping.setRedirectType(redirectType);
+        urlMapping.setLastModified(now);
+        // a link that may be deduplicated is placed by its hash, so finding it again asks only one shard
+        int shard = dedup ? shardRouter.shardFor(urlHash) : shardRouter.nextShard();
+        UrlMapping savedUrlMapping = ShardContext.call(shard, () -> transactionTemplate.execute(status -> {
+            // Save first to get the generated ID
+            UrlMapping saved = urlMappingRepository.save(urlMapping);
+            if (ShardRouter.shardOf(saved.getId()) != shard) {
+                // the short URL would point to another shard: the shard's id range isn't set up (see ShardSchemaIntegrator)
+                throw new IllegalStateException("Shard " + shard + " generated id " + saved.getId() + " outside its range");
+            }
+            saved.setShortUrl(encodeIdToShortUrl(saved.getId()));
+            return urlMappingRepository.save(saved);
+        }));
+        if (expiresAt != null) {
+            linkExpiryService.linkCreated(savedUrlMapping.getId(), expiresAt);
+        }
+        UrlMappingDTO created = convertToDto(savedUrlMapping, user);
+        if (dedup) {
+            linkDeduplicator.remember(user.getId(), normalizedUrl, redirectType, created);
+        }
+        return created;
+    }
+
+    /**
+     * Deletes one of the user's links. It stops redirecting right away (other instances within a poll of
+     * DeletedLinkEvictor) and disappears from all listings and analytics; its clicks are removed in the background.
+     * Browsers and CDNs that cached a 301/308 response of the link still redirect until its max-age runs out.
+     *
+     * @param shortUrl The short URL to delete.
+     * @param user The user deleting it.
+     * @return false if the user has no link with this short URL.
+     */
+    public boolean deleteShortUrl(String shortUrl, User user) {
+        int shard = shardRouter.shardOf(shortUrl);
+        if (shard < 0) {
+            return false;
+        }
+        UrlMapping deleted = ShardContext.call(shard, () -> transactionTemplate.execute(status -> {
+            UrlMapping urlMapping = urlMappingRepository.findByShortUrl(shortUrl);
+            if (urlMapping == null || !urlMapping.getUser().getId().equals(user.getId())) {
+                return null;
+            }
+            urlMappingRepository.markDeleted(urlMapping.getId(), LocalDateTime.now());
+            return urlMapping;
+        }));
+        if (deleted == null) {
+            return false;
+        }
+        redirectCache.evict(shortUrl);
+        if (deleted.getUrlHash() != null) {
+            RedirectType redirectType = deleted.getRedirectType() == null ? RedirectType.FOUND : deleted.getRedirectType();
+            linkDeduplicator.forget(user.getId(), LinkDeduplicator.normalize(deleted.getOriginalUrl()), redirectType);
+        }
+        linkPurgeService.requestPurge();
+        return true;
+    }
+
+    /**
+     * Deletes all of a user's links on every shard (their account is being deleted), like {@link #deleteShortUrl}.
+     *
+     * @param user The owner of the links.
+     * @return Number of links deleted.
+     */
+    public int deleteAllLinks(User user) {
+        LocalDateTime now = LocalDateTime.now();
+        int deleted = 0;
+        for (List<Long> ids : shardRouter.onEveryShard(shard -> transactionTemplate.execute(status -> {
+            List<Long> shardIds = urlMappingRepository.findIdsByUser(user);
+            urlMappingRepository.markDeletedByUser(user, now);
+            return shardIds;
+        }))) {
+            ids.forEach(id -> redirectCache.evict(encodeIdToShortUrl(id)));
+            deleted += ids.size();
+        }
+        linkPurgeService.requestPurge();
+        return deleted;
+    }
+
+    // The user's existing link for the same URL: from the recent cache, or else one indexed lookup on the hash's shard
+    private UrlMappingDTO findDuplicate(User user, String normalizedUrl, RedirectType redirectType, long urlHash) {
+        UrlMappingDTO recent = linkDeduplicator.recent(user.getId(), normalizedUrl, redirectType);
+        if (recent != null) {
+            // the link may have been deleted since, on another instance: a primary key lookup on its shard tells
+            if (ShardContext.call(ShardRouter.shardOf(recent.getId()), () -> urlMappingRepository.existsById(recent.getId()))) {
+                return recent;
+            }
+            linkDeduplicator.forget(user.getId(), normalizedUrl, redirectType);
+        }
+        // on the primary: a link created a moment ago may not have reached a replica yet
+        List<UrlMapping> candidates = ShardContext.call(shardRouter.shardFor(urlHash), () ->
+                transactionTemplate.execute(status -> urlMappingRepository.findByUserAndUrlHash(user, urlHash)));
+        for (UrlMapping candidate : candidates) {
+            // the hash only narrows it down: compare the URLs to rule out collisions
+            RedirectType candidateType = candidate.getRedirectType() == null ? RedirectType.FOUND : candidate.getRedirectType();
+            if (candidateType == redirectType && normalizedUrl.equals(LinkDeduplicator.normalize(candidate.getOriginalUrl()))) {
+                UrlMappingDTO existing = convertToDto(candidate, user);
+                linkDeduplicator.remember(user.getId(), normalizedUrl, redirectType, existing);
+                return existing;
+            }
+        }
+        return null;
     }
 
     /**
      * Converts a UrlMapping entity to its DTO representation.
      *
      * @param urlMapping The UrlMapping entity.
+     * @param owner The user owning the mapping (users aren't stored on the mapping's shard).
      * @return UrlMappingDTO containing mapped data.
      */
-    private UrlMappingDTO convertToDto(UrlMapping urlMapping){
+    private UrlMappingDTO convertToDto(UrlMapping urlMapping, User owner){
         UrlMappingDTO urlMappingDTO = new UrlMappingDTO();
         urlMappingDTO.setId(urlMapping.getId());
         urlMappingDTO.setOriginalUrl(urlMapping.getOriginalUrl());
         urlMappingDTO.setShortUrl(urlMapping.getShortUrl());
         urlMappingDTO.setClickCount(urlMapping.getClickCount());
         urlMappingDTO.setCreatedDate(urlMapping.getCreatedDate());
-        urlMappingDTO.setUsername(urlMapping.getUser().getUsername());
+        urlMappingDTO.setUsername(owner.getUsername());
+        urlMappingDTO.setExpiresAt(urlMapping.getExpiresAt());
+        urlMappingDTO.setMaxClicks(urlMapping.getMaxClicks());
+        urlMappingDTO.setRedirectType(urlMapping.getRedirectType() == null ? RedirectType.FOUND : urlMapping.getRedirectType());
         return urlMappingDTO;
     }
 
@@ -75,50 +277,128 @@ public class UrlMappingService {
      * @return The base62-encoded string.
      */
     private String encodeIdToShortUrl(long id) {
-        String characters = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
-        StringBuilder shortUrl = new StringBuilder();
-        if (id == 0) {
-            return String.valueOf(characters.charAt(0));
-        }
-        while (id > 0) {
-            int rem = (int)(id % 62);
-            shortUrl.insert(0, characters.charAt(rem));
-            id = id / 62;
-        }
-        return shortUrl.toString();
+        return ShortUrlCodec.encode(id);
+    }
+
+    // Runs a read-only query in its own transaction on the given shard
+    private <T> T readOnShard(int shard, Supplier<T> query) {
+        return ShardContext.call(shard, () -> readOnlyTransactionTemplate.execute(status -> query.get()));
+    }
+
+    // Looks the short URL up on its shard; null if it doesn't exist or no shard can hold it
+    private UrlMapping findByShortUrl(String shortUrl) {
+        int shard = shardRouter.shardOf(shortUrl);
+        return shard < 0 ? null : readOnShard(shard, () -> urlMappingRepository.findByShortUrl(shortUrl));
+    }
+
+    // The user's own link with this short URL; other users' links are reported as missing rather than forbidden,
+    // so their short URLs can't be probed for analytics
+    private UrlMapping findOwnedByShortUrl(String shortUrl, User user) {
+        UrlMapping urlMapping = findByShortUrl(shortUrl);
+        return urlMapping != null && urlMapping.getUser().getId().equals(user.getId()) ? urlMapping : null;
+    }
+
+    // Ids of all the user's links, gathered from every shard
+    private List<Long> findIdsByUser(User user) {
+        List<Long> ids = new ArrayList<>();
+        shardRouter.onEveryShard(shard -> readOnlyTransactionTemplate.execute(status -> urlMappingRepository.findIdsByUser(user)))
+                .forEach(ids::addAll);
+        return ids;
     }
 
     /**
-     * Retrieves all URL mappings created by a specific user, converted to DTOs.
+     * Retrieves all URL mappings created by a specific user, converted to DTOs, oldest first.
+     * Read from the primary (a read-write transaction that only reads), not a replica: the owner expects a link
+     * they just created or deleted to show up in their list right away, which a lagging replica can't promise.
      *
      * @param user The user whose URLs are to be retrieved.
      * @return List of UrlMappingDTOs for the user.
      */
     public List<UrlMappingDTO> getUrlsByUser(User user) {
-        return urlMappingRepository.findByUser(user).stream()
-                .map(this::convertToDto)
+        return shardRouter.onEveryShard(shard -> transactionTemplate.execute(status -> urlMappingRepository.findByUser(user)))
+                .stream()
+                .flatMap(List::stream)
+                .map(urlMapping -> convertToDto(urlMapping, user))
+                .sorted(Comparator.comparing(UrlMappingDTO::getCreatedDate, Comparator.nullsFirst(Comparator.naturalOrder())))
                 .toList();
     }
 
+    /**
+     * Version of the analytics of a short URL, for HTTP conditional requests. Much cheaper than the analytics
+     * themselves: one aggregate over the mapping row, no click data.
+     *
+     * @param shortUrl The short URL.
+     * @param user The user asking, who must own the short URL.
+     * @return The version, or null if the user has no such short URL.
+     */
+    public AnalyticsVersion getAnalyticsVersion(String shortUrl, User user) {
+        int shard = shardRouter.shardOf(shortUrl);
+        if (shard < 0) {
+            return null;
+        }
+        AnalyticsVersion version = readOnShard(shard, () -> urlMappingRepository.findAnalyticsVersion(shortUrl, user));
+        return version.links() == 0 ? null : version;
+    }
+
+    /**
+     * Version of everything derived from a user's links (their click totals), for HTTP conditional requests.
+     *
+     * @param user The owner of the links.
+     * @return The version of the user's links.
+     */
+    public AnalyticsVersion getAnalyticsVersion(User user) {
+        return shardRouter.onEveryShard(shard -> readOnlyTransactionTemplate.execute(status -> urlMappingRepository.findAnalyticsVersion(user)))
+                .stream()
+                .reduce(AnalyticsVersion::plus)
+                .orElseThrow();
+    }
+
+    /**
+     * Version of the user's list of links, for HTTP conditional requests. Read from the primary like
+     * {@link #getUrlsByUser}, so a 304 is never answered from a replica that hasn't seen the latest change.
+     *
+     * @param user The owner of the links.
+     * @return The version of the user's links.
+     */
+    public AnalyticsVersion getUrlsVersion(User user) {
+        return shardRouter.onEveryShard(shard -> transactionTemplate.execute(status -> urlMappingRepository.findAnalyticsVersion(user)))
+                .stream()
+                .reduce(AnalyticsVersion::plus)
+                .orElseThrow();
+    }
+
     /**
      * Retrieves click events for a given short URL between the specified start and end date-times,
      * grouped by date, and returns them as a list of ClickEventDTOs.
      *
-     * @param shortUrl The short URL to fetch click events for.
+     * @param shortUrl The short URL to fetch click events for (must belong to the user).
+     * @param user The user asking.
      * @param start The start datetime of the range.
      * @param end The end datetime of the range.
-     * @return List of ClickEventDTOs grouped by date, or null if the URL is not found.
+     * @return List of ClickEventDTOs grouped by date, or null if the user has no such short URL.
      */
-    public List<ClickEventDTO> getClickEventsByDate(String shortUrl, LocalDateTime start, LocalDateTime end) {
-        UrlMapping urlMapping = urlMappingRepository.findByShortUrl(shortUrl);
+    public List<ClickEventDTO> getClickEventsByDate(String shortUrl, User user, LocalDateTime start, LocalDateTime end) {
+        AnalyticsEvent event = AnalyticsEvent.start("clicksByDay");
+        UrlMapping urlMapping = findOwnedByShortUrl(shortUrl, user);
         if (urlMapping != null) {
-            return clickEventRepository.findByUrlMappingAndClickDateBetween(urlMapping, start, end).stream()
-                    .collect(Collectors.groupingBy(click -> click.getClickDate().toLocalDate(), Collectors.counting()))
-                    .entrySet().stream()
+            // Clicks older than the archive boundary come from the columnar archive, newer ones from click_event
+            Map<LocalDate, Long> counts = clickArchiveStore.countByDay(Set.of(urlMapping.getId()), start, end);
+            LocalDateTime liveStart = clickArchiveStore.liveStart(start);
+            if (!liveStart.isAfter(end)) {
+                // counted per day in the database, on the link's shard
+                readOnShard(ShardRouter.shardOf(urlMapping.getId()), () -> clickEventRepository.countByDay(List.of(urlMapping.getId()), liveStart, end))
+                        .forEach((day, count) -> counts.merge(day, count, Long::sum));
+            }
+            Map<LocalDate, Long> uniqueVisitors = uniqueVisitorService.dailyUniqueVisitors(Set.of(urlMapping.getId()), start.toLocalDate(), end.toLocalDate());
+            event.setShortUrl(shortUrl);
+            event.setLinks(1);
+            event.finish(start, end, counts.size(), sum(counts));
+            return counts.entrySet().stream()
                     .map(entry -> {
                         ClickEventDTO clickEventDTO = new ClickEventDTO();
                         clickEventDTO.setClickDate(entry.getKey());
                         clickEventDTO.setCount(entry.getValue());
+                        clickEventDTO.setUniqueVisitors(uniqueVisitors.getOrDefault(entry.getKey(), 0L));
                         return clickEventDTO;
                     })
                     .collect(Collectors.toList());
@@ -136,33 +416,252 @@ public class UrlMappingService {
      * @return Map of LocalDate to total click count for each day in the range.
      */
     public Map<LocalDate, Long> getTotalClicksByUserAndDate(User user, LocalDate start, LocalDate end) {
-        List<UrlMapping> urlMappings = urlMappingRepository.findByUser(user);
-        List<ClickEvent> clickEvents = clickEventRepository.findByUrlMappingInAndClickDateBetween(urlMappings, start.atStartOfDay(), end.plusDays(1).atStartOfDay());
-        return clickEvents.stream()
-                .collect(Collectors.groupingBy(click -> click.getClickDate().toLocalDate(), Collectors.counting()));
+        AnalyticsEvent event = AnalyticsEvent.start("clicksByDay");
+        List<Long> urlMappingIds = findIdsByUser(user);
+        LocalDateTime rangeStart = start.atStartOfDay();
+        LocalDateTime rangeEnd = end.plusDays(1).atStartOfDay();
+        // Archived (old) clicks are merged with the live table, split at the archive boundary
+        Map<LocalDate, Long> counts = clickArchiveStore.countByDay(new HashSet<>(urlMappingIds), rangeStart, rangeEnd);
+        LocalDateTime liveStart = clickArchiveStore.liveStart(rangeStart);
+        if (!liveStart.isAfter(rangeEnd)) {
+            // counted per day in the database, over bounded chunks of the user's links
+            chunkedAggregationService.sum(urlMappingIds, chunk -> clickEventRepository.countByDay(chunk, liveStart, rangeEnd))
+                    .forEach((day, count) -> counts.merge(day, count, Long::sum));
+        }
+        event.setUserId(user.getId());
+        event.setLinks(urlMappingIds.size());
+        event.finish(start, end, counts.size(), sum(counts));
+        return counts;
+    }
 
+    /**
+     * Retrieves approximate unique visitors of a short URL, per day and for the whole date range.
+     *
+     * @param shortUrl The short URL to fetch unique visitors for.
+     * @param user The user asking; only the owner of the short URL may see its visitors.
+     * @param start The start date (inclusive).
+     * @param end The end date (inclusive).
+     * @return UniqueVisitorsDTO with daily and total estimates, or null if the user has no such URL.
+     */
+    public UniqueVisitorsDTO getUniqueVisitors(String shortUrl, User user, LocalDate start, LocalDate end) {
+        UrlMapping urlMapping = findOwnedByShortUrl(shortUrl, user);
+        if (urlMapping == null) {
+            return null;
+        }
+        AnalyticsEvent event = AnalyticsEvent.start("uniqueVisitors");
+        event.setShortUrl(shortUrl);
+        return uniqueVisitors(List.of(urlMapping.getId()), start, end, event);
     }
 
     /**
-     * Retrieves the original URL mapping for a given short URL, increments its click count,
-     * and records a click event.
+     * Retrieves approximate unique visitors across all URLs belonging to a user, per day and for the whole range.
+     * A visitor who clicked several of the user's links counts once.
+     *
+     * @param user The user whose visitors are to be counted.
+     * @param start The start date (inclusive).
+     * @param end The end date (inclusive).
+     * @return UniqueVisitorsDTO with daily and total estimates.
+     */
+    public UniqueVisitorsDTO getUniqueVisitorsByUser(User user, LocalDate start, LocalDate end) {
+        AnalyticsEvent event = AnalyticsEvent.start("uniqueVisitors");
+        event.setUserId(user.getId());
+        return uniqueVisitors(findIdsByUser(user), start, end, event);
+    }
+
+    private UniqueVisitorsDTO uniqueVisitors(List<Long> urlMappingIds, LocalDate start, LocalDate end, AnalyticsEvent event) {
+        UniqueVisitorsDTO uniqueVisitorsDTO = new UniqueVisitorsDTO();
+        uniqueVisitorsDTO.setDailyUniqueVisitors(uniqueVisitorService.dailyUniqueVisitors(urlMappingIds, start, end));
+        uniqueVisitorsDTO.setTotalUniqueVisitors(uniqueVisitorService.uniqueVisitors(urlMappingIds, start, end));
+        event.setLinks(urlMappingIds.size());
+        event.finish(start, end, uniqueVisitorsDTO.getDailyUniqueVisitors().size(), 0);
+        return uniqueVisitorsDTO;
+    }
+
+    /**
+     * Retrieves click counts for a given short URL between the specified start and end date-times,
+     * grouped by one analytics dimension (referrer, device type or country).
+     *
+     * @param shortUrl The short URL to fetch the breakdown for.
+     * @param user The user asking; only the owner of the short URL may see its breakdown.
+     * @param kind The dimension to group by.
+     * @param start The start datetime of the range.
+     * @param end The end datetime of the range.
+     * @return Map of dimension value to click count, or null if the user has no such URL.
+     */
+    public Map<String, Long> getClickBreakdown(String shortUrl, User user, DimensionKind kind, LocalDateTime start, LocalDateTime end) {
+        UrlMapping urlMapping = findOwnedByShortUrl(shortUrl, user);
+        if (urlMapping == null) {
+            return null;
+        }
+        AnalyticsEvent event = AnalyticsEvent.start("breakdown");
+        event.setDimension(kind.name());
+        event.setShortUrl(shortUrl);
+        return decodeDimensions(countByDimension(kind, List.of(urlMapping.getId()), start, end, event));
+    }
+
+    /**
+     * Retrieves click counts for all URLs belonging to a user within a date range,
+     * grouped by one analytics dimension (referrer, device type or country).
+     *
+     * @param user The user whose click data is to be retrieved.
+     * @param kind The dimension to group by.
+     * @param start The start date (inclusive).
+     * @param end The end date (inclusive).
+     * @return Map of dimension value to click count.
+     */
+    public Map<String, Long> getClickBreakdownByUser(User user, DimensionKind kind, LocalDate start, LocalDate end) {
+        AnalyticsEvent event = AnalyticsEvent.start("breakdown");
+        event.setDimension(kind.name());
+        event.setUserId(user.getId());
+        List<Long> urlMappingIds = findIdsByUser(user);
+        return decodeDimensions(countByDimension(kind, urlMappingIds, start.atStartOfDay(), end.plusDays(1).atStartOfDay(), event));
+    }
+
+    // Dimension counts from the archive (before its boundary) merged with the live table (from the boundary on)
+    private Map<Integer, Long> countByDimension(DimensionKind kind, List<Long> urlMappingIds, LocalDateTime start, LocalDateTime end,
+                                                AnalyticsEvent event) {
+        Map<Integer, Long> counts = clickArchiveStore.countByDimension(kind, new HashSet<>(urlMappingIds), start, end);
+        LocalDateTime liveStart = clickArchiveStore.liveStart(start);
+        if (!liveStart.isAfter(end)) {
+            chunkedAggregationService.sum(urlMappingIds, chunk -> clickEventRepository.countByDimension(kind, chunk, liveStart, end))
+                    .forEach((id, count) -> counts.merge(id, count, Long::sum));
+        }
+        event.setLinks(urlMappingIds.size());
+        event.finish(start, end, counts.size(), sum(counts));
+        return counts;
+    }
+
+    private static long sum(Map<?, Long> counts) {
+        long total = 0;
+        for (long count : counts.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    // Turns dictionary ids back into readable values ("google.com", "MOBILE", "DE", ...)
+    private Map<String, Long> decodeDimensions(Map<Integer, Long> countsById) {
+        Map<String, Long> counts = new HashMap<>();
+        countsById.forEach((id, count) -> counts.merge(dimensionDictionary.decode(id), count, Long::sum));
+        return counts;
+    }
+
+    /**
+     * Retrieves the links with the most clicks in a recent time window, from the in-memory trending tracker.
+     *
+     * @param user The user whose links to rank, or null for all links of all users.
+     * @param window The time window (last minute, hour or day).
+     * @param limit Maximum number of links to return.
+     * @return TrendingLinkDTOs ordered by estimated clicks, highest first.
+     */
+    public List<TrendingLinkDTO> getTrendingLinks(User user, TrendingWindow window, int limit) {
+        List<HeavyHitter<Long>> hitters = user == null
+                ? trendingLinksTracker.topGlobal(window, limit)
+                : trendingLinksTracker.topForUser(user.getId(), window, limit);
+        Map<Long, UrlMapping> urlMappings = new HashMap<>();
+        shardRouter.groupByShard(hitters.stream().map(HeavyHitter::key).toList()).forEach((shard, ids) ->
+                readOnShard(shard, () -> urlMappingRepository.findAllById(ids))
+                        .forEach(urlMapping -> urlMappings.put(urlMapping.getId(), urlMapping)));
+        return hitters.stream()
+                .filter(hitter -> urlMappings.containsKey(hitter.key()))
+                .map(hitter -> {
+                    UrlMapping urlMapping = urlMappings.get(hitter.key());
+                    TrendingLinkDTO trendingLinkDTO = new TrendingLinkDTO();
+                    trendingLinkDTO.setShortUrl(urlMapping.getShortUrl());
+                    trendingLinkDTO.setOriginalUrl(urlMapping.getOriginalUrl());
+                    trendingLinkDTO.setEstimatedClicks(hitter.count());
+                    trendingLinkDTO.setMaxOverestimate(hitter.error());
+                    return trendingLinkDTO;
+                })
+                .toList();
+    }
+
+    /**
+     * Resolves a short URL for a redirect and hands the click over to the ingestion pipeline,
+     * which increments the click count and records the click event in the background.
+     * Targets are served from the redirect cache when possible; expiry and click limits are checked in memory.
+     * Concurrent misses for the same short URL share a single database lookup.
+     * While the link's database is unavailable, the last cached target is served even past its cache lifetime.
      *
      * @param shortUrl The short URL to resolve.
-     * @return The UrlMapping entity, or null if not found.
+     * @param clickContext Request data describing the click (IP, User-Agent, referrer).
+     * @return The redirect target, or null if not found.
+     * @throws LinkExpiredException if the link has expired or reached its click limit
      */
-    public UrlMapping getOriginalUrl(String shortUrl) {
-        UrlMapping urlMapping = urlMappingRepository.findByShortUrl(shortUrl);
-        if (urlMapping != null) {
-            urlMapping.setClickCount(urlMapping.getClickCount() + 1);
-            urlMappingRepository.save(urlMapping);
+    public RedirectTarget getOriginalUrl(String shortUrl, ClickContext clickContext) {
+        RedirectEvent event = RedirectEvent.start(shortUrl);
+        try {
+            return resolve(shortUrl, clickContext, event);
+        } finally {
+            event.commit();
+        }
+    }
+
+    private RedirectTarget resolve(String shortUrl, ClickContext clickContext, RedirectEvent event) {
+        RedirectTarget target = redirectCache.get(shortUrl);
+        event.setCacheHit(target != null);
+        if (target == null) {
+            target = redirectLoader.load(shortUrl, () -> loadForRedirect(shortUrl));
+            if (target == null) {
+                event.setOutcome("NOT_FOUND");
+                return null;
+            }
+        }
+        event.setUrlMappingId(target.getUrlMappingId());
+
+        RedirectTarget.Admission admission = target.admit(clickContext.clickDate());
+        event.setOutcome(admission.name());
+        if (admission == RedirectTarget.Admission.GONE) {
+            throw new LinkExpiredException("This short URL has expired");
+        }
+        if (admission == RedirectTarget.Admission.LAST_CLICK) {
+            // the link is used up: expire it for everyone (and schedule its removal)
+            target.expire(clickContext.clickDate());
+            long urlMappingId = target.getUrlMappingId();
+            try {
+                shardCircuitBreaker.run(ShardRouter.shardOf(urlMappingId), () -> linkExpiryService.expireNow(urlMappingId));
+            } catch (DatabaseUnavailableException e) {
+                // still expired here; once the buffered clicks are recorded, a reload finds the limit reached anyway
+                logger.warn("Could not expire used-up link {}: {}", urlMappingId, e.getMessage());
+            }
+        }
+        // Record Click Event (asynchronously, so the redirect doesn't wait on it)
+        clickIngestionService.submit(target.getUrlMappingId(), clickContext);
+        trendingLinksTracker.record(target.getUrlMappingId(), target.getUserId());
+        return target;
+    }
 
-            // Record Click Event
-            ClickEvent clickEvent = new ClickEvent();
-            clickEvent.setClickDate(LocalDateTime.now());
-            clickEvent.setUrlMapping(urlMapping);
-            clickEventRepository.save(clickEvent);
+    // Runs once per burst of misses: a load that finished just before this one started has cached its target already
+    private RedirectTarget loadForRedirect(String shortUrl) {
+        RedirectTarget cached = redirectCache.get(shortUrl);
+        if (cached != null) {
+            return cached;
+        }
+        UrlMapping urlMapping;
+        try {
+            urlMapping = findForRedirect(shortUrl);
+        } catch (DatabaseUnavailableException e) {
+            // degraded mode: a link's target never changes once created, so the last known one is still good
+            RedirectTarget stale = redirectCache.getStale(shortUrl);
+            if (stale == null) {
+                throw e;
+            }
+            return stale;
         }
+        return urlMapping == null ? null : redirectCache.put(RedirectTarget.of(urlMapping));
+    }
 
+    private UrlMapping findForRedirect(String shortUrl) {
+        int shard = shardRouter.shardOf(shortUrl);
+        if (shard < 0) {
+            return null;
+        }
+        // Lookups are read-only and go to a replica; a link created a moment ago may not have reached it yet,
+        // so a miss is confirmed on the primary before answering 404 (only shard 0 has replicas)
+        UrlMapping urlMapping = shardCircuitBreaker.call(shard, () -> readOnShard(shard, () -> urlMappingRepository.findByShortUrl(shortUrl)));
+        if (urlMapping == null && shard == 0 && !replicaSet.isEmpty()) {
+            urlMapping = shardCircuitBreaker.call(shard, () -> transactionTemplate.execute(status -> urlMappingRepository.findByShortUrl(shortUrl)));
+        }
         return urlMapping;
     }
-}
\ No newline at end of file
+}
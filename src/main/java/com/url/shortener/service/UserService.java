@@ -1,6 +1,7 @@
 package com.url.shortener.service;
 
 import com.url.shortener.dtos.LoginRequest;
+import com.url.shortener.exceptions.AuthenticationOverloadedException;
 import com.url.shortener.exceptions.UserAlreadyExistsException;
 import com.url.shortener.models.User;
 import com.url.shortener.repository.UserRepository;
@@ -14,6 +15,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 @AllArgsConstructor
@@ -26,6 +28,8 @@ public class UserService {
     private UserRepository userRepository;
     private AuthenticationManager authenticationManager;
     private JwtUtils jwtUtils;
+    private PasswordHashingService passwordHashingService;
+    private UrlMappingService urlMappingService;
 
     /**
      * Registers a new user after validating that the email and username are unique.
@@ -35,6 +39,8 @@ public class UserService {
      * @return The saved user entity
      * @throws UserAlreadyExistsException if email or username is already taken
      */
+    // read-write transaction so the uniqueness checks read the primary rather than a possibly lagging replica
+    @Transactional
     public User registerUser(User user){
         // Check if email is already in use
         if (userRepository.existsByEmail(user.getEmail())) {
@@ -44,8 +50,9 @@ public class UserService {
         else if (userRepository.existsByUsername(user.getUsername())) {
             throw new UserAlreadyExistsException("Username already taken");
         }
-        // Encode the user's password for security
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
+        // Encode the user's password for security (on the hashing pool, not the request thread)
+        String rawPassword = user.getPassword();
+        user.setPassword(passwordHashingService.submit(() -> passwordEncoder.encode(rawPassword)));
         user.setRole("ROLE_USER");
         // Save and return the new user
         return userRepository.save(user);
@@ -56,12 +63,14 @@ public class UserService {
      *
      * @param loginRequest Contains username and password
      * @return JWT authentication response with token
+     * @throws AuthenticationOverloadedException if the hashing pool is saturated
      */
     public JwtAuthenticationResponse authenticateUser(LoginRequest loginRequest){
-        // Perform authentication using AuthenticationManager
-        Authentication authentication = authenticationManager.authenticate(
+        // Perform authentication using AuthenticationManager.
+        // The BCrypt check inside it runs on the hashing pool so login bursts can't tie up request threads.
+        Authentication authentication = passwordHashingService.submit(() -> authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(loginRequest.getUsername(),
-                        loginRequest.getPassword()));
+                        loginRequest.getPassword())));
         // Set authentication context
         SecurityContextHolder.getContext().setAuthentication(authentication);
         // Retrieve user details from authentication principal
@@ -84,4 +93,18 @@ public class UserService {
                 () -> new UsernameNotFoundException("User not found with username: " + name)
         );
     }
+
+    /**
+     * Deletes a user's account: all their links first (see UrlMappingService#deleteShortUrl), then the user.
+     * Not one transaction, since the links are spread over the shards; if removing the user fails,
+     * the links are gone already and deleting the account again finishes it.
+     *
+     * @param user The user to delete
+     * @return The number of links deleted with the account
+     */
+    public int deleteAccount(User user) {
+        int links = urlMappingService.deleteAllLinks(user);
+        userRepository.delete(user);
+        return links;
+    }
 }
\ No newline at end of file
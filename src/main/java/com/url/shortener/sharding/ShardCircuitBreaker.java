@@ -0,0 +1,132 @@
+package com.url.shortener.sharding;
+
+import com.url.shortener.exceptions.DatabaseUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * One circuit breaker per shard, around the database calls of the redirect path and click ingestion.
+ * <p>
+ * After failure-threshold consecutive calls failed because the shard's database was unreachable, the breaker opens:
+ * for open-ms every call fails immediately with {@link DatabaseUnavailableException} instead of waiting for a
+ * connection that won't come, so request threads aren't tied up on connection timeouts. Then a single call is let
+ * through as a probe; if it succeeds the breaker closes, otherwise it stays open for another open-ms.
+ * Errors that show the database is up don't count as failures: a constraint violation, a bad query, and also
+ * transient errors of a working database such as a deadlock or a lock wait, which a retry can fix right away.
+ */
+@Component
+public class ShardCircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardCircuitBreaker.class);
+
+    private final Circuit[] circuits;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    public ShardCircuitBreaker(ShardRouter shardRouter,
+                               @Value("${app.datasource.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                               @Value("${app.datasource.circuit-breaker.open-ms:10000}") long openMillis) {
+        this.circuits = new Circuit[shardRouter.getShardCount()];
+        for (int shard = 0; shard < circuits.length; shard++) {
+            circuits[shard] = new Circuit();
+        }
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Runs a database call for the given shard through its breaker.
+     *
+     * @throws DatabaseUnavailableException if the breaker is open, or the call failed because the database is unreachable
+     */
+    public <T> T call(int shard, Supplier<T> call) {
+        Circuit circuit = circuits[shard];
+        if (!circuit.allow()) {
+            throw new DatabaseUnavailableException("Database of shard " + shard + " is unavailable");
+        }
+        try {
+            T result = call.get();
+            circuit.succeeded(shard);
+            return result;
+        } catch (RuntimeException e) {
+            if (!isUnavailable(e)) {
+                circuit.succeeded(shard);
+                throw e;
+            }
+            circuit.failed(shard);
+            throw e instanceof DatabaseUnavailableException unavailable ? unavailable
+                    : new DatabaseUnavailableException("Database of shard " + shard + " is unavailable", e);
+        }
+    }
+
+    public void run(int shard, Runnable call) {
+        call(shard, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * @return true while the shard's breaker rejects calls (not yet due for a probe)
+     */
+    public boolean isOpen(int shard) {
+        return circuits[shard].openUntil > System.currentTimeMillis();
+    }
+
+    /**
+     * @return true if the exception means the database couldn't be reached (no connection, a dropped connection,
+     * a statement that timed out), as opposed to rejecting the statement or losing a deadlock
+     */
+    public static boolean isUnavailable(Throwable e) {
+        // DataAccessResourceFailureException also covers CannotGetJdbcConnectionException
+        return e instanceof DataAccessResourceFailureException || e instanceof TransientDataAccessResourceException
+                || e instanceof CannotCreateTransactionException || e instanceof RecoverableDataAccessException
+                || e instanceof QueryTimeoutException;
+    }
+
+    private final class Circuit {
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicBoolean probing = new AtomicBoolean();
+        // 0 while closed; otherwise calls are rejected until then, after which one probe is let through
+        private volatile long openUntil;
+
+        boolean allow() {
+            long until = openUntil;
+            if (until == 0) {
+                return true;
+            }
+            return System.currentTimeMillis() >= until && probing.compareAndSet(false, true);
+        }
+
+        void succeeded(int shard) {
+            failures.set(0);
+            if (openUntil != 0) {
+                openUntil = 0;
+                logger.warn("Circuit breaker of shard {} closed: database reachable again", shard);
+            }
+            probing.set(false);
+        }
+
+        void failed(int shard) {
+            boolean wasProbe = probing.get();
+            if (wasProbe || failures.incrementAndGet() >= failureThreshold) {
+                if (openUntil == 0) {
+                    logger.warn("Circuit breaker of shard {} opened: database unreachable, failing fast for {} ms", shard, openMillis);
+                }
+                openUntil = System.currentTimeMillis() + openMillis;
+                probing.set(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.url.shortener.sharding;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+/**
+ * The shard the current thread works on.
+ * ShardRoutingDataSource reads it when a transaction fetches its connection, so it has to be set before the
+ * transaction starts, and a transaction always stays on one shard. Threads that never set it work on shard 0,
+ * which also holds everything that isn't sharded (users, the dimension dictionary, visitor sketches).
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * @return the shard of the current thread (0 unless set)
+     */
+    public static int current() {
+        Integer shard = CURRENT.get();
+        return shard == null ? 0 : shard;
+    }
+
+    /**
+     * Runs the work with the current thread switched to the given shard, then switches back.
+     *
+     * @throws IllegalStateException when called inside a transaction on another shard, whose statements
+     *                               would silently keep going to that shard
+     */
+    public static <T> T call(int shard, Supplier<T> work) {
+        Integer previous = CURRENT.get();
+        if (shard != current() && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Cannot switch to shard " + shard + " inside a transaction on shard " + current());
+        }
+        CURRENT.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public static void run(int shard, Runnable work) {
+        call(shard, () -> {
+            work.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,31 @@
+package com.url.shortener.sharding;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Additional shards for url_mapping and click_event, bound from app.sharding.*.
+ * Shard 0 is spring.datasource; shards 1, 2, ... are configured here by number and must be contiguous.
+ */
+@Data
+@ConfigurationProperties("app.sharding")
+public class ShardProperties {
+
+    private Map<Integer, Shard> shards = new TreeMap<>();
+
+    /** Threads running per-shard queries of scatter-gather reads (myurls, per-user analytics). */
+    private int scatterThreads = 8;
+
+    @Data
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+        /** Defaults to app.datasource.connection-timeout-ms, like the primary pool. */
+        private Long connectionTimeoutMs;
+    }
+}
@@ -0,0 +1,143 @@
+package com.url.shortener.sharding;
+
+import com.url.shortener.service.ShortUrlCodec;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Decides which shard a link lives on.
+ * <p>
+ * A link's id carries its shard in the bits above {@link #SHARD_SHIFT}: shard k hands out ids from k * 2^36 on
+ * (see ShardSchemaIntegrator), so every id is unique across shards and existing ids, all below 2^36, are shard 0.
+ * Short URLs are base62 ids, so a redirect finds the shard by decoding the short URL, with no directory lookup.
+ * Clicks live on the shard of their link. New links are spread over all shards round-robin; a user's links end up
+ * on every shard, so per-user reads scatter to all shards and gather the results.
+ */
+@Component
+public class ShardRouter {
+
+    /** 2^36 (about 68 billion) links per shard. Fixed: changing it would move existing links. */
+    public static final int SHARD_SHIFT = 36;
+
+    private final int shardCount;
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private final ExecutorService scatterExecutor;
+
+    public ShardRouter(ShardSet shardSet, ShardProperties shardProperties) {
+        this.shardCount = shardSet.size();
+        AtomicInteger counter = new AtomicInteger();
+        this.scatterExecutor = Executors.newFixedThreadPool(Math.max(1, shardProperties.getScatterThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "shard-scatter-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public static int shardOf(long urlMappingId) {
+        return (int) (urlMappingId >>> SHARD_SHIFT);
+    }
+
+    /**
+     * @return first id handed out by the given shard
+     */
+    public static long firstId(int shard) {
+        return Math.max(1, (long) shard << SHARD_SHIFT);
+    }
+
+    /**
+     * @return the shard of the link with this short URL, or -1 if no shard can hold it
+     */
+    public int shardOf(String shortUrl) {
+        long id = ShortUrlCodec.decode(shortUrl);
+        int shard = id < 0 ? -1 : shardOf(id);
+        return shard < shardCount ? shard : -1;
+    }
+
+    /**
+     * @return the shard for a new link
+     */
+    public int nextShard() {
+        return Math.floorMod(nextShard.getAndIncrement(), shardCount);
+    }
+
+    /**
+     * @return the shard for a new link that has to be found again by a key (e.g. a URL hash) without asking
+     *         every shard. Adding shards moves keys, so links placed before that aren't found by their key anymore.
+     */
+    public int shardFor(long key) {
+        return (int) Math.floorMod(key, (long) shardCount);
+    }
+
+    /**
+     * Groups link ids by shard; ids of shards that don't exist are dropped.
+     */
+    public Map<Integer, List<Long>> groupByShard(Collection<Long> urlMappingIds) {
+        Map<Integer, List<Long>> byShard = new TreeMap<>();
+        for (Long id : urlMappingIds) {
+            int shard = shardOf(id);
+            if (shard < shardCount) {
+                byShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(id);
+            }
+        }
+        return byShard;
+    }
+
+    /**
+     * Scatter-gather: runs the work once per shard, in parallel, each on its own shard (see {@link ShardContext}),
+     * and returns the results in shard order. The work must open its own transaction.
+     */
+    public <T> List<T> onEveryShard(IntFunction<T> work) {
+        List<Future<T>> others = new ArrayList<>();
+        for (int shard = 1; shard < shardCount; shard++) {
+            int target = shard;
+            others.add(scatterExecutor.submit(() -> ShardContext.call(target, () -> work.apply(target))));
+        }
+        List<T> results = new ArrayList<>();
+        // the caller handles shard 0 itself instead of just waiting
+        results.add(ShardContext.call(0, () -> work.apply(0)));
+        for (Future<T> other : others) {
+            results.add(await(other));
+        }
+        return results;
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying shards", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scatterExecutor.shutdownNow();
+    }
+}
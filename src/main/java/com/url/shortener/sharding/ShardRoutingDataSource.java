@@ -0,0 +1,30 @@
+package com.url.shortener.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sends each connection to the data source of the current thread's shard (see {@link ShardContext}).
+ * Shard 0 is usually the read/write routing data source, so its read-only transactions still go to replicas.
+ * <p>
+ * Like ReadWriteRoutingDataSource it must sit behind a LazyConnectionDataSourceProxy, so the shard is
+ * looked up at the transaction's first statement.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    public ShardRoutingDataSource(Map<Integer, DataSource> shards) {
+        setTargetDataSources(new HashMap<>(shards));
+        setDefaultTargetDataSource(shards.get(0));
+        // a shard that isn't configured must fail loudly, not quietly land on shard 0
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+}
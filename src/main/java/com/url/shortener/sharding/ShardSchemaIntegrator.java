@@ -0,0 +1,71 @@
+package com.url.shortener.sharding;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Prepares the additional shards while Hibernate starts up.
+ * <p>
+ * Hibernate only manages the schema of the data source it connects to by default, shard 0. This runs the same
+ * schema action (spring.jpa.hibernate.ddl-auto) on every other shard, then moves each shard's url_mapping
+ * identity to the start of its id range, so the ids it hands out carry the shard (see ShardRouter).
+ */
+public class ShardSchemaIntegrator implements Integrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardSchemaIntegrator.class);
+
+    private final Map<Integer, ? extends DataSource> shards;
+
+    public ShardSchemaIntegrator(Map<Integer, ? extends DataSource> shards) {
+        this.shards = shards;
+    }
+
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+        for (Map.Entry<Integer, ? extends DataSource> shard : shards.entrySet()) {
+            // Hibernate's connections come from the routing data source, so the shard context picks the database
+            ShardContext.run(shard.getKey(), () -> SchemaManagementToolCoordinator.process(
+                    metadata, sessionFactory.getServiceRegistry(), sessionFactory.getProperties(), action -> { }));
+            try {
+                startIdentityAt(shard.getValue(), ShardRouter.firstId(shard.getKey()));
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not set the url_mapping id range of shard " + shard.getKey(), e);
+            }
+        }
+    }
+
+    private static void startIdentityAt(DataSource dataSource, long firstId) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            try (ResultSet resultSet = statement.executeQuery("select coalesce(max(id), 0) from url_mapping")) {
+                resultSet.next();
+                if (resultSet.getLong(1) >= firstId) {
+                    return; // already handing out ids from its range
+                }
+            }
+            String product = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+            // SQL standard identity restart (PostgreSQL, H2); MySQL only has AUTO_INCREMENT
+            statement.execute(product.contains("mysql") || product.contains("mariadb")
+                    ? "alter table url_mapping auto_increment = " + firstId
+                    : "alter table url_mapping alter column id restart with " + firstId);
+            logger.info("Shard url_mapping ids now start at {}", firstId);
+        }
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
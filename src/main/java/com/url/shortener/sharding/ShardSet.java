@@ -0,0 +1,34 @@
+package com.url.shortener.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Connection pools of the additional shards (1, 2, ...), by shard number. Shard 0 is the primary data source.
+ */
+public class ShardSet implements AutoCloseable {
+
+    private final Map<Integer, HikariDataSource> dataSources;
+
+    public ShardSet(Map<Integer, HikariDataSource> dataSources) {
+        this.dataSources = new TreeMap<>(dataSources);
+    }
+
+    public Map<Integer, HikariDataSource> getDataSources() {
+        return dataSources;
+    }
+
+    /**
+     * @return number of shards, shard 0 included
+     */
+    public int size() {
+        return dataSources.size() + 1;
+    }
+
+    @Override
+    public void close() {
+        dataSources.values().forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,92 @@
+package com.url.shortener.analytics;
+
+import com.url.shortener.config.ReadOnlyTransactionTemplate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChunkedAggregationServiceTests {
+
+	private final ChunkedAggregationService service = new ChunkedAggregationService(
+			new ReadOnlyTransactionTemplate(new NoOpTransactionManager()), 4, 100, 7, 3);
+
+	@AfterEach
+	void shutdown() {
+		service.shutdown();
+	}
+
+	@Test
+	void sumsEveryChunkExactlyOnce() {
+		List<Long> ids = LongStream.rangeClosed(1, 1000).boxed().toList();
+		for (int run = 0; run < 50; run++) {
+			// counts each id under its remainder mod 10: every key must end up with exactly 100
+			Map<Long, Long> counts = service.sum(ids, chunk -> chunk.stream()
+					.collect(Collectors.groupingBy(id -> id % 10, Collectors.counting())));
+			assertThat(counts).hasSize(10).allSatisfy((key, count) -> assertThat(count).isEqualTo(100L));
+		}
+	}
+
+	@Test
+	void neverRunsMoreChunksAtOnceThanTheParallelismCap() {
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		Map<String, Long> counts = service.sum(LongStream.range(0, 200).boxed().toList(), chunk -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(2);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			running.decrementAndGet();
+			return Map.of("ids", (long) chunk.size());
+		});
+		assertThat(counts).containsEntry("ids", 200L);
+		assertThat(maxRunning.get()).isBetween(1, 3);
+	}
+
+	@Test
+	void reducesBoundedChunksOfIdsOnTheGivenShard() {
+		List<Long> ids = LongStream.rangeClosed(1, 100).boxed().toList();
+		List<Integer> chunkSizes = new CopyOnWriteArrayList<>();
+		// e.g. merging visitor sketches: a set union instead of a sum, all rows on shard 0
+		Set<Long> seen = service.reduce(ids, id -> 0, chunk -> {
+			chunkSizes.add(chunk.size());
+			return new HashSet<>(chunk);
+		}, HashSet::new, Set::addAll);
+		assertThat(seen).containsExactlyInAnyOrderElementsOf(ids);
+		assertThat(chunkSizes).hasSize(15).allSatisfy(size -> assertThat(size).isLessThanOrEqualTo(7));
+	}
+
+	// Transactions are irrelevant here; the template only has to run the callback
+	private static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+		@Override
+		protected Object doGetTransaction() {
+			return new Object();
+		}
+
+		@Override
+		protected void doBegin(Object transaction, TransactionDefinition definition) {
+		}
+
+		@Override
+		protected void doCommit(DefaultTransactionStatus status) {
+		}
+
+		@Override
+		protected void doRollback(DefaultTransactionStatus status) {
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package com.url.shortener.analytics;
+
+import com.url.shortener.dtos.UrlMappingDTO;
+import com.url.shortener.models.RedirectType;
+import com.url.shortener.models.UrlMapping;
+import com.url.shortener.models.User;
+import com.url.shortener.repository.ClickEventRepository;
+import com.url.shortener.repository.UrlMappingRepository;
+import com.url.shortener.repository.UserRepository;
+import com.url.shortener.service.UrlMappingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:ingestion;DB_CLOSE_DELAY=-1")
+class ClickIngestionServiceTests {
+
+	@Autowired
+	private ClickIngestionService clickIngestionService;
+
+	@Autowired
+	private UniqueVisitorService uniqueVisitorService;
+
+	@Autowired
+	private UrlMappingService urlMappingService;
+
+	@Autowired
+	private UrlMappingRepository urlMappingRepository;
+
+	@Autowired
+	private ClickEventRepository clickEventRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Test
+	void clicksAreRecordedWithTheirVisitor() {
+		User user = createUser();
+		UrlMappingDTO link = urlMappingService.createShortUrl("https://example.com/clicked", null, null, RedirectType.FOUND, user);
+		long clicksBefore = clickEventRepository.count();
+
+		clickIngestionService.ingest(link.getId(), click());
+
+		assertThat(clickEventRepository.count()).isEqualTo(clicksBefore + 1);
+		assertThat(urlMappingRepository.findById(link.getId())).get().extracting(UrlMapping::getClickCount).isEqualTo(1);
+		assertThat(uniqueVisitorService.dailyUniqueVisitors(List.of(link.getId()), LocalDate.now(), LocalDate.now()))
+				.containsEntry(LocalDate.now(), 1L);
+	}
+
+	@Test
+	void clicksOfDeletedLinksAreDroppedWithoutAVisitor() {
+		User user = createUser();
+		UrlMappingDTO link = urlMappingService.createShortUrl("https://example.com/deleted", null, null, RedirectType.FOUND, user);
+		assertThat(urlMappingService.deleteShortUrl(link.getShortUrl(), user)).isTrue();
+		long clicksBefore = clickEventRepository.count();
+
+		// e.g. replayed from the journal after the deletion
+		clickIngestionService.ingest(link.getId(), click());
+
+		assertThat(clickEventRepository.count()).isEqualTo(clicksBefore);
+		assertThat(uniqueVisitorService.dailyUniqueVisitors(List.of(link.getId()), LocalDate.now(), LocalDate.now())).isEmpty();
+	}
+
+	@Test
+	void clicksWithoutAReferrerAreDirect() {
+		assertThat(ClickIngestionService.referrerHost(null)).isEqualTo("direct");
+		assertThat(ClickIngestionService.referrerHost("")).isEqualTo("direct");
+		assertThat(ClickIngestionService.referrerHost("  ")).isEqualTo("direct");
+	}
+
+	@Test
+	void referrersThatAreNotUrlsAreUnknown() {
+		assertThat(ClickIngestionService.referrerHost("not a url")).isEqualTo("unknown");
+		assertThat(ClickIngestionService.referrerHost("https://exa mple.com/")).isEqualTo("unknown");
+		assertThat(ClickIngestionService.referrerHost("/relative/path")).isEqualTo("unknown");
+	}
+
+	@Test
+	void onlyTheLowerCaseHostWithoutWwwIsKept() {
+		assertThat(ClickIngestionService.referrerHost("https://www.Google.com/search?q=short+links")).isEqualTo("google.com");
+		assertThat(ClickIngestionService.referrerHost(" https://news.ycombinator.com/item?id=1 ")).isEqualTo("news.ycombinator.com");
+	}
+
+	@Test
+	void longHostsAreCapped() {
+		String host = "a".repeat(300) + ".com";
+		assertThat(ClickIngestionService.referrerHost("https://" + host + "/")).hasSize(255).isEqualTo(host.substring(0, 255));
+	}
+
+	private static ClickContext click() {
+		return new ClickContext(LocalDateTime.now(), "203.0.113.7", "Mozilla/5.0 (X11; Linux x86_64)", "https://www.example.org/");
+	}
+
+	private User createUser() {
+		String username = "ingestion-" + UUID.randomUUID();
+		User user = new User();
+		user.setEmail(username + "@example.com");
+		user.setUsername(username);
+		user.setPassword("x");
+		return userRepository.save(user);
+	}
+}
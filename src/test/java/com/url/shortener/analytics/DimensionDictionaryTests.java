@@ -0,0 +1,87 @@
+package com.url.shortener.analytics;
+
+import com.url.shortener.models.ClickDimension;
+import com.url.shortener.models.DimensionKind;
+import com.url.shortener.repository.ClickDimensionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:dimensions;DB_CLOSE_DELAY=-1")
+class DimensionDictionaryTests {
+
+	@Autowired
+	private DimensionDictionary dimensionDictionary;
+
+	@Autowired
+	private ClickDimensionRepository clickDimensionRepository;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Test
+	void decodeReturnsTheEncodedValue() {
+		String host = "referrer-" + UUID.randomUUID() + ".example";
+		Integer id = dimensionDictionary.encode(DimensionKind.REFERRER, host);
+
+		assertThat(dimensionDictionary.encode(DimensionKind.REFERRER, host)).isEqualTo(id);
+		assertThat(dimensionDictionary.decode(id)).isEqualTo(host);
+		// a fresh dictionary (another instance, or after a restart) reads the same entry back
+		DimensionDictionary other = new DimensionDictionary(clickDimensionRepository, transactionTemplate, 10);
+		assertThat(other.decode(id)).isEqualTo(host);
+		assertThat(other.encode(DimensionKind.REFERRER, host)).isEqualTo(id);
+	}
+
+	@Test
+	void kindsHaveSeparateEntries() {
+		String value = "value-" + UUID.randomUUID();
+		assertThat(dimensionDictionary.encode(DimensionKind.REFERRER, value))
+				.isNotEqualTo(dimensionDictionary.encode(DimensionKind.COUNTRY, value));
+	}
+
+	@Test
+	void nullIdsDecodeToUnknown() {
+		assertThat(dimensionDictionary.decode(null)).isEqualTo("unknown");
+		assertThat(dimensionDictionary.cached(null)).isEqualTo("unknown");
+	}
+
+	@Test
+	void concurrentEncodingsOfANewValueShareOneId() throws Exception {
+		String host = "concurrent-" + UUID.randomUUID() + ".example";
+		// half of the threads use a second dictionary, like another instance inserting the same value
+		DimensionDictionary other = new DimensionDictionary(clickDimensionRepository, transactionTemplate, 10);
+		int threads = 8;
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Integer>> ids = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				DimensionDictionary dictionary = i % 2 == 0 ? dimensionDictionary : other;
+				ids.add(executor.submit(() -> {
+					start.await();
+					return dictionary.encode(DimensionKind.REFERRER, host);
+				}));
+			}
+			start.countDown();
+			Integer first = ids.get(0).get();
+			for (Future<Integer> id : ids) {
+				assertThat(id.get()).isEqualTo(first);
+			}
+			assertThat(clickDimensionRepository.findByKindAndValue(DimensionKind.REFERRER, host)).get()
+					.extracting(ClickDimension::getId).isEqualTo(first);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
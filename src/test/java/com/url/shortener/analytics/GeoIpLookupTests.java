@@ -0,0 +1,69 @@
+package com.url.shortener.analytics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GeoIpLookupTests {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void resolvesAddressesInsideListedRanges() throws IOException {
+		GeoIpLookup lookup = load("""
+				"ip_start","ip_end","country"
+				"8.8.8.0","8.8.8.255","us"
+				"2.16.0.0","2.16.255.255","DE"
+				"2001:db8::","2001:db8::ffff","NL"
+				"134743040","134743295","US"
+				""");
+		assertThat(lookup.country("8.8.8.8")).isEqualTo("US");
+		assertThat(lookup.country("2.16.0.0")).isEqualTo("DE");
+		assertThat(lookup.country("2.16.255.255")).isEqualTo("DE");
+		assertThat(lookup.country("8.8.4.4")).isEqualTo("US"); // 134743040 = 8.8.4.0
+	}
+
+	@Test
+	void privateAndUnlistedAddressesAreUnknown() throws IOException {
+		GeoIpLookup lookup = load("""
+				8.8.8.0,8.8.8.255,US
+				""");
+		assertThat(lookup.country("10.0.0.1")).isEqualTo(GeoIpLookup.UNKNOWN);
+		assertThat(lookup.country("192.168.1.10")).isEqualTo(GeoIpLookup.UNKNOWN);
+		assertThat(lookup.country("127.0.0.1")).isEqualTo(GeoIpLookup.UNKNOWN);
+		assertThat(lookup.country("8.8.9.0")).isEqualTo(GeoIpLookup.UNKNOWN);
+	}
+
+	@Test
+	void unparseableAndIpv6AddressesAreUnknown() throws IOException {
+		GeoIpLookup lookup = load("""
+				0.0.0.0,255.255.255.255,ZZ
+				""");
+		assertThat(lookup.country(null)).isEqualTo(GeoIpLookup.UNKNOWN);
+		assertThat(lookup.country("")).isEqualTo(GeoIpLookup.UNKNOWN);
+		assertThat(lookup.country("::1")).isEqualTo(GeoIpLookup.UNKNOWN);
+		assertThat(lookup.country("256.1.1.1")).isEqualTo(GeoIpLookup.UNKNOWN);
+		assertThat(lookup.country("1.2.3")).isEqualTo(GeoIpLookup.UNKNOWN);
+		assertThat(lookup.country("unknown")).isEqualTo(GeoIpLookup.UNKNOWN);
+	}
+
+	@Test
+	void everyAddressIsUnknownWithoutADatabase() throws IOException {
+		GeoIpLookup lookup = new GeoIpLookup("");
+		lookup.load();
+		assertThat(lookup.country("8.8.8.8")).isEqualTo(GeoIpLookup.UNKNOWN);
+	}
+
+	private GeoIpLookup load(String csv) throws IOException {
+		Path database = Files.writeString(directory.resolve("ip-to-country.csv"), csv);
+		GeoIpLookup lookup = new GeoIpLookup(database.toString());
+		lookup.load();
+		return lookup;
+	}
+}
@@ -0,0 +1,46 @@
+package com.url.shortener.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTests {
+
+	@Test
+	void estimatesDistinctValuesWithinExpectedError() {
+		HyperLogLog sketch = new HyperLogLog();
+		for (int i = 0; i < 100_000; i++) {
+			sketch.add(HyperLogLog.hash("visitor-" + i));
+			sketch.add(HyperLogLog.hash("visitor-" + i)); // repeats must not count
+		}
+		assertThat((double) sketch.estimate()).isCloseTo(100_000, within(5_000.0));
+	}
+
+	@Test
+	void mergeEstimatesTheUnion() {
+		HyperLogLog monday = new HyperLogLog();
+		HyperLogLog tuesday = new HyperLogLog();
+		for (int i = 0; i < 1_000; i++) {
+			monday.add(HyperLogLog.hash("visitor-" + i));
+			tuesday.add(HyperLogLog.hash("visitor-" + (i + 500)));
+		}
+		monday.merge(tuesday);
+		assertThat((double) monday.estimate()).isCloseTo(1_500, within(75.0));
+	}
+
+	@Test
+	void serializationRoundTripsSparseAndDenseSketches() {
+		HyperLogLog small = new HyperLogLog();
+		HyperLogLog large = new HyperLogLog();
+		for (int i = 0; i < 50_000; i++) {
+			if (i < 20) {
+				small.add(HyperLogLog.hash("visitor-" + i));
+			}
+			large.add(HyperLogLog.hash("visitor-" + i));
+		}
+		assertThat(small.toBytes().length).isLessThan(100);
+		assertThat(HyperLogLog.fromBytes(small.toBytes()).estimate()).isEqualTo(small.estimate());
+		assertThat(HyperLogLog.fromBytes(large.toBytes()).estimate()).isEqualTo(large.estimate());
+	}
+}
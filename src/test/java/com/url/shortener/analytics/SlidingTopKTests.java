@@ -0,0 +1,54 @@
+package com.url.shortener.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlidingTopKTests {
+
+	@Test
+	void mergesTheBucketsOfTheWindowHighestFirst() {
+		// a 3 second window in 1 second buckets
+		SlidingTopK<String> topK = new SlidingTopK<>(3000, 3, 10);
+		offer(topK, "a", 3, 0);
+		offer(topK, "b", 2, 0);
+		offer(topK, "b", 2, 1000);
+		offer(topK, "c", 1, 2500);
+
+		assertThat(topK.top(3, 2999)).containsExactly(
+				new HeavyHitter<>("b", 4, 0), new HeavyHitter<>("a", 3, 0), new HeavyHitter<>("c", 1, 0));
+		assertThat(topK.top(2, 2999)).extracting(HeavyHitter::key).containsExactly("b", "a");
+	}
+
+	@Test
+	void errorsAddUpAcrossBuckets() {
+		SlidingTopK<String> topK = new SlidingTopK<>(2000, 2, 1);
+		offer(topK, "a", 1, 0);
+		// evicts "a" from the single counter: count 2, error 1
+		offer(topK, "b", 1, 500);
+		offer(topK, "b", 1, 1000);
+		assertThat(topK.top(1, 1500)).containsExactly(new HeavyHitter<>("b", 3, 1));
+	}
+
+	@Test
+	void bucketsExpireAfterAFullLapAroundTheRing() {
+		SlidingTopK<String> topK = new SlidingTopK<>(3000, 3, 10);
+		offer(topK, "old", 5, 0);
+		offer(topK, "recent", 1, 2000);
+		assertThat(topK.top(10, 2999)).extracting(HeavyHitter::key).containsExactly("old", "recent");
+
+		// one lap later the first bucket has left the window, even before its slot is reused
+		assertThat(topK.top(10, 3000)).extracting(HeavyHitter::key).containsExactly("recent");
+		// reusing the slot starts it from scratch
+		offer(topK, "new", 1, 3500);
+		assertThat(topK.top(10, 3500)).containsExactlyInAnyOrder(new HeavyHitter<>("recent", 1, 0), new HeavyHitter<>("new", 1, 0));
+		// and after a lap without any clicks nothing is left
+		assertThat(topK.top(10, 7000)).isEmpty();
+	}
+
+	private static void offer(SlidingTopK<String> topK, String key, int times, long nowMillis) {
+		for (int i = 0; i < times; i++) {
+			topK.offer(key, nowMillis);
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package com.url.shortener.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpaceSavingTests {
+
+	@Test
+	void anEvictingKeyInheritsTheSmallestCountAsItsError() {
+		SpaceSaving<String> summary = new SpaceSaving<>(2);
+		summary.offer("a", 3);
+		summary.offer("b");
+		// full: "c" replaces "b" (count 1) and may be overestimated by that much
+		summary.offer("c");
+		assertThat(counts(summary)).containsOnly(Map.entry("a", 3L), Map.entry("c", 2L));
+		assertThat(errors(summary)).containsOnly(Map.entry("a", 0L), Map.entry("c", 1L));
+
+		// now "c" (2) is the smallest, the frequent "a" stays
+		summary.offer("d", 5);
+		assertThat(counts(summary)).containsOnly(Map.entry("a", 3L), Map.entry("d", 7L));
+		assertThat(errors(summary)).containsOnly(Map.entry("a", 0L), Map.entry("d", 2L));
+	}
+
+	@Test
+	void keysAboveTotalOverCapacityAreAlwaysTracked() {
+		SpaceSaving<Integer> summary = new SpaceSaving<>(10);
+		long total = 0;
+		for (int i = 0; i < 10_000; i++) {
+			// key 0 on every 5th offer (2000 > 10000 / 10), the rest spread over 1000 rare keys
+			summary.offer(i % 5 == 0 ? 0 : 1 + i % 1000);
+			total++;
+		}
+		Map<Integer, Long> counts = counts(summary);
+		assertThat(counts).containsKey(0).hasSize(10);
+		// never underestimated, and overestimated by at most its error
+		assertThat(counts.get(0)).isGreaterThanOrEqualTo(2000).isLessThanOrEqualTo(2000 + errors(summary).get(0));
+		assertThat(counts.values().stream().mapToLong(Long::longValue).sum()).isEqualTo(total);
+	}
+
+	private static <K> Map<K, Long> counts(SpaceSaving<K> summary) {
+		Map<K, Long> counts = new HashMap<>();
+		summary.addTo(counts, new HashMap<>());
+		return counts;
+	}
+
+	private static <K> Map<K, Long> errors(SpaceSaving<K> summary) {
+		Map<K, Long> errors = new HashMap<>();
+		summary.addTo(new HashMap<>(), errors);
+		return errors;
+	}
+}
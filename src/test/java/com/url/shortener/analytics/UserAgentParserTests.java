@@ -0,0 +1,46 @@
+package com.url.shortener.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserAgentParserTests {
+
+	private final UserAgentParser parser = new UserAgentParser(100);
+
+	@Test
+	void classifiesCommonUserAgents() {
+		assertThat(parser.deviceType("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 Safari/537.36"))
+				.isEqualTo(UserAgentParser.DESKTOP);
+		assertThat(parser.deviceType("Mozilla/5.0 (Macintosh; Intel Mac OS X 14_1) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.1 Safari/605.1.15"))
+				.isEqualTo(UserAgentParser.DESKTOP);
+		assertThat(parser.deviceType("Mozilla/5.0 (iPhone; CPU iPhone OS 17_1 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Mobile/15E148"))
+				.isEqualTo(UserAgentParser.MOBILE);
+		assertThat(parser.deviceType("Mozilla/5.0 (Linux; Android 14; Pixel 8) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 Mobile Safari/537.36"))
+				.isEqualTo(UserAgentParser.MOBILE);
+		assertThat(parser.deviceType("curl/8.4.0")).isEqualTo(UserAgentParser.BOT);
+	}
+
+	@Test
+	void tabletsAreNotPhones() {
+		assertThat(parser.deviceType("Mozilla/5.0 (iPad; CPU OS 17_1 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Mobile/15E148"))
+				.isEqualTo(UserAgentParser.TABLET);
+		// Android tablets leave out the "Mobile" token
+		assertThat(parser.deviceType("Mozilla/5.0 (Linux; Android 13; SM-X700) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 Safari/537.36"))
+				.isEqualTo(UserAgentParser.TABLET);
+	}
+
+	@Test
+	void crawlersPretendingToBePhonesAreBots() {
+		assertThat(parser.deviceType("Mozilla/5.0 (Linux; Android 6.0.1; Nexus 5X Build/MMB29P) AppleWebKit/537.36 (KHTML, like Gecko) "
+				+ "Chrome/120.0 Mobile Safari/537.36 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)"))
+				.isEqualTo(UserAgentParser.BOT);
+	}
+
+	@Test
+	void missingOrUnrecognisedUserAgentsAreUnknown() {
+		assertThat(parser.deviceType(null)).isEqualTo(UserAgentParser.UNKNOWN);
+		assertThat(parser.deviceType(" ")).isEqualTo(UserAgentParser.UNKNOWN);
+		assertThat(parser.deviceType("SomeClient/1.0")).isEqualTo(UserAgentParser.UNKNOWN);
+	}
+}
@@ -0,0 +1,135 @@
+package com.url.shortener.analytics.archive;
+
+import com.url.shortener.dtos.ClickEventDTO;
+import com.url.shortener.dtos.UrlMappingDTO;
+import com.url.shortener.models.ClickEvent;
+import com.url.shortener.models.RedirectType;
+import com.url.shortener.models.UrlMapping;
+import com.url.shortener.models.User;
+import com.url.shortener.repository.ClickEventRepository;
+import com.url.shortener.repository.UrlMappingRepository;
+import com.url.shortener.repository.UserRepository;
+import com.url.shortener.service.UrlMappingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:archive;DB_CLOSE_DELAY=-1",
+		"analytics.archive.directory=target/test-click-archive/${random.uuid}",
+		"analytics.archive.batch-size=2"
+})
+class ClickArchiveCompactionJobTests {
+
+	private static final LocalDateTime FIRST_CUTOFF = LocalDate.now().minusDays(30).atStartOfDay();
+	private static final LocalDateTime SECOND_CUTOFF = LocalDate.now().minusDays(10).atStartOfDay();
+
+	@Autowired
+	private ClickArchiveCompactionJob compactionJob;
+
+	@Autowired
+	private ClickArchiveStore clickArchiveStore;
+
+	@Autowired
+	private UrlMappingService urlMappingService;
+
+	@Autowired
+	private UrlMappingRepository urlMappingRepository;
+
+	@Autowired
+	private ClickEventRepository clickEventRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Test
+	void clicksAreCountedOnceAcrossTheBoundaryWhateverTheirIdOrder() throws IOException {
+		User user = createUser();
+		UrlMappingDTO link = urlMappingService.createShortUrl("https://example.com/archived", null, null, RedirectType.FOUND, user);
+		UrlMapping urlMapping = urlMappingRepository.findById(link.getId()).orElseThrow();
+		UrlMappingDTO other = urlMappingService.createShortUrl("https://example.com/kept", null, null, RedirectType.FOUND, user);
+		click(urlMappingRepository.findById(other.getId()).orElseThrow(), FIRST_CUTOFF.minusDays(3));
+		// ids don't follow click time: the newer click was recorded between two older ones (e.g. replayed late)
+		click(urlMapping, FIRST_CUTOFF.minusDays(1));
+		ClickEvent straddling = click(urlMapping, FIRST_CUTOFF.plusDays(1));
+		click(urlMapping, FIRST_CUTOFF.minusDays(2));
+		click(urlMapping, FIRST_CUTOFF.minusNanos(1_000_000));
+		click(urlMapping, SECOND_CUTOFF.plusDays(1));
+		assertThat(totalClicks(link, user)).isEqualTo(5);
+
+		// a run that wrote its files but died before moving the boundary: its file must not be counted
+		clickArchiveStore.append(0, List.of(new ArchivedClick(urlMapping.getId(), straddling.getClickDate(), null, null, null)),
+				new long[]{straddling.getId()}, SECOND_CUTOFF);
+		assertThat(totalClicks(link, user)).isEqualTo(5);
+
+		compactionJob.compact(FIRST_CUTOFF);
+		assertThat(clickArchiveStore.getBoundary()).isEqualTo(FIRST_CUTOFF);
+		assertThat(liveClicks()).isEqualTo(2);
+		assertThat(totalClicks(link, user)).isEqualTo(5);
+		assertThat(clickArchiveStore.pendingDeletions()).isEmpty();
+
+		// the straddling click has a lower id than the last archived one, and is archived anyway
+		compactionJob.compact(SECOND_CUTOFF);
+		assertThat(liveClicks()).isEqualTo(1);
+		assertThat(totalClicks(link, user)).isEqualTo(5);
+		assertThat(urlMappingService.getClickEventsByDate(link.getShortUrl(), user, FIRST_CUTOFF, SECOND_CUTOFF))
+				.extracting(ClickEventDTO::getClickDate, ClickEventDTO::getCount)
+				.containsExactly(tuple(FIRST_CUTOFF.plusDays(1).toLocalDate(), 1L));
+
+		// a click replayed after its day was archived is only visible again once the next run archives it
+		click(urlMapping, FIRST_CUTOFF.minusDays(5));
+		assertThat(totalClicks(link, user)).isEqualTo(5);
+		compactionJob.compact(SECOND_CUTOFF.plusDays(1));
+		assertThat(liveClicks()).isEqualTo(1);
+		assertThat(totalClicks(link, user)).isEqualTo(6);
+
+		// deleting the link drops its archived clicks, those of other links in the same files stay
+		click(urlMapping, FIRST_CUTOFF.minusDays(6));
+		assertThat(urlMappingService.deleteShortUrl(link.getShortUrl(), user)).isTrue();
+		assertThat(compactionJob.dropLinks(Set.of(link.getId()))).isEqualTo(5);
+		assertThat(archivedClicks(link.getId())).isZero();
+		assertThat(archivedClicks(other.getId())).isEqualTo(1);
+		// and its clicks still in the table are left to the purge, never archived again
+		compactionJob.compact(SECOND_CUTOFF.plusDays(2));
+		assertThat(archivedClicks(link.getId())).isZero();
+		assertThat(archivedClicks(other.getId())).isEqualTo(1);
+	}
+
+	private long archivedClicks(long urlMappingId) {
+		return clickArchiveStore.countByDay(Set.of(urlMappingId), FIRST_CUTOFF.minusYears(1), LocalDateTime.now())
+				.values().stream().mapToLong(Long::longValue).sum();
+	}
+
+	private ClickEvent click(UrlMapping urlMapping, LocalDateTime clickDate) {
+		ClickEvent clickEvent = new ClickEvent();
+		clickEvent.setUrlMapping(urlMapping);
+		clickEvent.setClickDate(clickDate);
+		return clickEventRepository.save(clickEvent);
+	}
+
+	private long liveClicks() {
+		return clickEventRepository.count();
+	}
+
+	private long totalClicks(UrlMappingDTO link, User user) {
+		return urlMappingService.getClickEventsByDate(link.getShortUrl(), user, FIRST_CUTOFF.minusYears(1), LocalDateTime.now())
+				.stream().mapToLong(ClickEventDTO::getCount).sum();
+	}
+
+	private User createUser() {
+		User user = new User();
+		user.setEmail("archive@example.com");
+		user.setUsername("archive");
+		user.setPassword("x");
+		return userRepository.save(user);
+	}
+}
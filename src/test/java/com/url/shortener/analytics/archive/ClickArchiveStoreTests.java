@@ -0,0 +1,45 @@
+package com.url.shortener.analytics.archive;
+
+import com.url.shortener.sharding.ShardRouter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClickArchiveStoreTests {
+
+	private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void aFileEmptiedByADropStillDeletesItsRowsOnItsOwnShard() throws IOException {
+		long urlMappingId = ShardRouter.firstId(2) + 5;
+		ClickArchiveStore store = new ClickArchiveStore(directory.toString());
+		store.load();
+		store.append(2, List.of(new ArchivedClick(urlMappingId, T0, null, null, null),
+				new ArchivedClick(urlMappingId, T0.plusHours(1), 1, 1, 1)), new long[]{7, 8}, T0.plusDays(1));
+		store.append(0, List.of(new ArchivedClick(3, T0, null, null, null)), new long[]{7}, T0.plusDays(1));
+
+		// the link is deleted while the file's rows are still waiting to be deleted from click_event
+		assertThat(store.drop(Set.of(urlMappingId))).isEqualTo(2);
+		List<PendingDeletion> pending = store.pendingDeletions();
+		assertThat(pending).extracting(PendingDeletion::shard).containsExactlyInAnyOrder(2, 0);
+		PendingDeletion emptied = pending.stream().filter(deletion -> deletion.shard() == 2).findFirst().orElseThrow();
+		assertThat(emptied.file().rowCount()).isZero();
+		assertThat(emptied.file().minMappingId()).isZero();
+		assertThat(store.clickIds(emptied)).containsExactly(7, 8);
+
+		// after a restart too
+		ClickArchiveStore reloaded = new ClickArchiveStore(directory.toString());
+		reloaded.load();
+		assertThat(reloaded.pendingDeletions()).extracting(PendingDeletion::shard).containsExactlyInAnyOrder(2, 0);
+	}
+}
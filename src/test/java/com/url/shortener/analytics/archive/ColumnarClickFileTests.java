@@ -0,0 +1,105 @@
+package com.url.shortener.analytics.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ColumnarClickFileTests {
+
+	private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void writesAndReadsBackClicksInTimeOrder() throws IOException {
+		// out of time order, with equal times, sub-second and multi-year gaps, large and small mapping ids, and nulls
+		List<ArchivedClick> clicks = List.of(
+				new ArchivedClick(1_000_000_007L, T0.plusYears(2).plusNanos(5_000_000), 3, null, 250),
+				new ArchivedClick(42, T0, null, null, null),
+				new ArchivedClick(5, T0.plusNanos(1_000_000), 0, 1, 2),
+				new ArchivedClick(42, T0.plusNanos(1_000_000), 7, 2, null),
+				new ArchivedClick(5, T0.minusDays(400), 1, 1, 1));
+		Path path = directory.resolve("clicks.clka");
+		ClickArchiveHeader written = ColumnarClickFile.write(path, clicks, 11, 99, T0.plusYears(3));
+
+		ClickArchiveHeader header = ColumnarClickFile.readHeader(path);
+		assertThat(header).isEqualTo(written);
+		assertThat(header.rowCount()).isEqualTo(5);
+		assertThat(header.minTime()).isEqualTo(ColumnarClickFile.toMillis(T0.minusDays(400)));
+		assertThat(header.maxTime()).isEqualTo(ColumnarClickFile.toMillis(T0.plusYears(2).plusNanos(5_000_000)));
+		assertThat(header.minMappingId()).isEqualTo(5);
+		assertThat(header.maxMappingId()).isEqualTo(1_000_000_007L);
+		assertThat(header.minClickId()).isEqualTo(11);
+		assertThat(header.maxClickId()).isEqualTo(99);
+		assertThat(ColumnarClickFile.fromMillis(header.cutoff())).isEqualTo(T0.plusYears(3));
+
+		List<ArchivedClick> expected = new ArrayList<>(clicks);
+		expected.sort(Comparator.comparing(ArchivedClick::clickDate));
+		assertThat(scan(header, null, T0.minusYears(10), T0.plusYears(10)))
+				.extracting(ArchivedClick::clickDate).isSorted();
+		assertThat(scan(header, null, T0.minusYears(10), T0.plusYears(10))).containsExactlyInAnyOrderElementsOf(expected);
+
+		// filtered by mapping and by an inclusive time range
+		assertThat(scan(header, Set.of(42L), T0.minusYears(10), T0.plusYears(10)))
+				.containsExactly(clicks.get(1), clicks.get(3));
+		assertThat(scan(header, null, T0, T0.plusNanos(1_000_000)))
+				.containsExactlyInAnyOrder(clicks.get(1), clicks.get(2), clicks.get(3));
+	}
+
+	@Test
+	void skipsFilesByTheirStatsWithoutDecompressing() throws IOException {
+		Path path = directory.resolve("clicks.clka");
+		ClickArchiveHeader header = ColumnarClickFile.write(path,
+				List.of(new ArchivedClick(5, T0, 1, 1, 1), new ArchivedClick(8, T0.plusHours(1), 1, 1, 1)), 1, 2, T0.plusDays(1));
+		corruptBody(path);
+
+		// the time range and the mapping dictionary are checked before the (now unreadable) body
+		assertThat(scan(header, null, T0.plusDays(1), T0.plusDays(2))).isEmpty();
+		assertThat(scan(header, Set.of(6L, 7L), T0.minusDays(1), T0.plusDays(1))).isEmpty();
+		assertThatThrownBy(() -> scan(header, Set.of(8L), T0.minusDays(1), T0.plusDays(1))).isInstanceOf(IOException.class);
+
+		// the store reads another file of the archive for other links without touching this one
+		ClickArchiveStore store = new ClickArchiveStore(directory.toString());
+		store.load();
+		store.append(0, List.of(new ArchivedClick(100, T0, null, null, null)), new long[]{3}, T0.plusDays(1));
+		store.commitBoundary(T0.plusDays(1));
+		assertThat(store.countByDay(Set.of(100L), T0.minusDays(1), T0.plusDays(1))).containsExactly(Map.entry(T0.toLocalDate(), 1L));
+	}
+
+	@Test
+	void writesAndReadsBackClickIds() throws IOException {
+		Path path = directory.resolve("clicks.clka.ids");
+		ColumnarClickFile.writeClickIds(path, new long[]{900, 3, 1L << 40, 4});
+		assertThat(ColumnarClickFile.readClickIds(path)).containsExactly(3, 4, 900, 1L << 40);
+	}
+
+	private static List<ArchivedClick> scan(ClickArchiveHeader header, Set<Long> urlMappingIds,
+											LocalDateTime from, LocalDateTime to) throws IOException {
+		List<ArchivedClick> result = new ArrayList<>();
+		ColumnarClickFile.scan(header, urlMappingIds, from, to, result::add);
+		return result;
+	}
+
+	// Overwrites the last bytes of the file (inside the compressed body) so that inflating it fails
+	private static void corruptBody(Path path) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+			for (long position = file.length() - 4; position < file.length(); position++) {
+				file.seek(position);
+				file.write(0xFF);
+			}
+		}
+	}
+}
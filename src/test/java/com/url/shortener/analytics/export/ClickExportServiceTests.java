@@ -0,0 +1,188 @@
+package com.url.shortener.analytics.export;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.url.shortener.analytics.DimensionDictionary;
+import com.url.shortener.dtos.UrlMappingDTO;
+import com.url.shortener.models.ClickEvent;
+import com.url.shortener.models.DimensionKind;
+import com.url.shortener.models.RedirectType;
+import com.url.shortener.models.UrlMapping;
+import com.url.shortener.models.User;
+import com.url.shortener.repository.ClickEventRepository;
+import com.url.shortener.repository.UrlMappingRepository;
+import com.url.shortener.repository.UserRepository;
+import com.url.shortener.service.UrlMappingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:export;DB_CLOSE_DELAY=-1")
+class ClickExportServiceTests {
+
+	private static final LocalDateTime CLICKED_AT = LocalDateTime.of(2025, 3, 14, 15, 9, 26);
+
+	@Autowired
+	private ClickExportService clickExportService;
+
+	@Autowired
+	private UrlMappingService urlMappingService;
+
+	@Autowired
+	private UrlMappingRepository urlMappingRepository;
+
+	@Autowired
+	private ClickEventRepository clickEventRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private DimensionDictionary dimensionDictionary;
+
+	private User owner;
+	private UrlMappingDTO link;
+	private UrlMapping urlMapping;
+
+	@BeforeEach
+	void createLink() {
+		owner = createUser();
+		link = urlMappingService.createShortUrl("https://example.com/exported", null, null, RedirectType.FOUND, owner);
+		urlMapping = urlMappingRepository.findById(link.getId()).orElseThrow();
+	}
+
+	@Test
+	void csvHasAHeaderAndQuotesValuesThatNeedIt() throws IOException {
+		click(CLICKED_AT, "news.example.com", "MOBILE", "DE");
+		// not a real host, but dictionary values are written as they are
+		click(CLICKED_AT.plusMinutes(1), "odd,\"host\"", "DESKTOP", null);
+
+		String csv = export(ExportFormat.CSV, CLICKED_AT.minusDays(1), CLICKED_AT.plusDays(1));
+
+		assertThat(csv.lines()).containsExactlyInAnyOrder(
+				"clicked_at,short_url,referrer,device_type,country",
+				"2025-03-14T15:09:26," + link.getShortUrl() + ",news.example.com,MOBILE,DE",
+				"2025-03-14T15:10:26," + link.getShortUrl() + ",\"odd,\"\"host\"\"\",DESKTOP,unknown");
+		assertThat(csv.lines().findFirst()).contains("clicked_at,short_url,referrer,device_type,country");
+	}
+
+	@Test
+	void ndjsonHasOneObjectPerLine() throws IOException {
+		click(CLICKED_AT, "news.example.com", "MOBILE", "DE");
+		click(CLICKED_AT.plusMinutes(1), "line\nbreak", "TABLET", "FR");
+
+		String ndjson = export(ExportFormat.NDJSON, CLICKED_AT.minusDays(1), CLICKED_AT.plusDays(1));
+
+		assertThat(ndjson).endsWith("\n");
+		List<JsonNode> objects = new ArrayList<>();
+		for (String line : ndjson.split("\n")) {
+			objects.add(new ObjectMapper().readTree(line));
+		}
+		assertThat(objects).hasSize(2).allMatch(JsonNode::isObject);
+		assertThat(objects).extracting(object -> object.get("referrer").asText())
+				.containsExactlyInAnyOrder("news.example.com", "line\nbreak");
+		assertThat(objects.get(0).get("shortUrl").asText()).isEqualTo(link.getShortUrl());
+	}
+
+	@Test
+	void anEmptyRangeWritesNoRows() throws IOException {
+		click(CLICKED_AT, "news.example.com", "MOBILE", "DE");
+
+		assertThat(export(ExportFormat.CSV, CLICKED_AT.plusDays(1), CLICKED_AT.plusDays(2)))
+				.isEqualTo("clicked_at,short_url,referrer,device_type,country\n");
+		assertThat(export(ExportFormat.NDJSON, CLICKED_AT.plusDays(1), CLICKED_AT.plusDays(2))).isEmpty();
+	}
+
+	@Test
+	void onlyTheOwnerFindsTheLink() {
+		assertThat(clickExportService.findOwnedLink(link.getShortUrl(), owner)).isEqualTo(link.getId());
+		assertThat(clickExportService.findOwnedLink(link.getShortUrl(), createUser())).isNull();
+		assertThat(clickExportService.findOwnedLink("nosuchlink", owner)).isNull();
+	}
+
+	@Test
+	void rowsAreWrittenWhileTheCursorIsOpen() throws IOException {
+		List<ClickEvent> clicks = new ArrayList<>();
+		for (int i = 0; i < 5_000; i++) {
+			ClickEvent clickEvent = new ClickEvent();
+			clickEvent.setUrlMapping(urlMapping);
+			clickEvent.setClickDate(CLICKED_AT.plusSeconds(i));
+			clickEvent.setDeviceTypeId(dimensionDictionary.encode(DimensionKind.DEVICE_TYPE, "MOBILE"));
+			clicks.add(clickEvent);
+		}
+		clickEventRepository.saveAll(clicks);
+		RecordingOutputStream out = new RecordingOutputStream();
+
+		long rows = clickExportService.exportLink(link.getId(), CLICKED_AT, CLICKED_AT.plusDays(1), ExportFormat.CSV, out);
+
+		assertThat(rows).isEqualTo(5_000);
+		// the export (about 300 KB) reaches the client in buffer-sized pieces while the query is still being read,
+		// instead of being collected and written once the cursor is done
+		assertThat(out.bytesInsideTransaction).isGreaterThan(out.size() / 2);
+		assertThat(out.largestWrite).isLessThanOrEqualTo(64 * 1024);
+	}
+
+	private String export(ExportFormat format, LocalDateTime from, LocalDateTime to) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		clickExportService.exportLink(link.getId(), from, to, format, out);
+		return out.toString(StandardCharsets.UTF_8);
+	}
+
+	private void click(LocalDateTime clickDate, String referrer, String deviceType, String country) {
+		ClickEvent clickEvent = new ClickEvent();
+		clickEvent.setUrlMapping(urlMapping);
+		clickEvent.setClickDate(clickDate);
+		clickEvent.setReferrerId(dimensionDictionary.encode(DimensionKind.REFERRER, referrer));
+		clickEvent.setDeviceTypeId(dimensionDictionary.encode(DimensionKind.DEVICE_TYPE, deviceType));
+		clickEvent.setCountryId(country == null ? null : dimensionDictionary.encode(DimensionKind.COUNTRY, country));
+		clickEventRepository.save(clickEvent);
+	}
+
+	private User createUser() {
+		String username = "export-" + UUID.randomUUID();
+		User user = new User();
+		user.setEmail(username + "@example.com");
+		user.setUsername(username);
+		user.setPassword("x");
+		return userRepository.save(user);
+	}
+
+	// Notes how much arrived while the export's read-only transaction (and with it the cursor) was open
+	private static class RecordingOutputStream extends OutputStream {
+
+		private long bytes;
+		private long bytesInsideTransaction;
+		private int largestWrite;
+
+		@Override
+		public void write(int b) {
+			write(new byte[] {(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			bytes += len;
+			largestWrite = Math.max(largestWrite, len);
+			if (TransactionSynchronizationManager.isActualTransactionActive()) {
+				bytesInsideTransaction += len;
+			}
+		}
+
+		long size() {
+			return bytes;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package com.url.shortener.analytics.journal;
+
+import com.url.shortener.analytics.ClickContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClickJournalTests {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void rollsOverSegmentsAndDeletesThemOnceCheckpointed() throws Exception {
+		LocalDateTime clickDate = LocalDateTime.of(2025, 3, 1, 12, 30, 15, 123_456_789);
+		try (ClickJournal journal = new ClickJournal(directory, 4, 1000)) {
+			for (long id = 1; id <= 10; id++) {
+				journal.append(id, new ClickContext(clickDate, "10.0.0." + id, "agent " + id, id % 2 == 0 ? null : "https://example.com/" + id));
+			}
+			assertThat(segmentCount()).isEqualTo(3);
+
+			List<JournalRecord> records = journal.read(1, 10);
+			assertThat(records).extracting(JournalRecord::sequence).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+			assertThat(records.get(4).urlMappingId()).isEqualTo(5);
+			assertThat(records.get(4).context()).isEqualTo(new ClickContext(clickDate, "10.0.0.5", "agent 5", "https://example.com/5"));
+			assertThat(records.get(5).context().referrer()).isNull();
+
+			journal.checkpoint(8);
+			assertThat(segmentCount()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	void recoversUpToATornRecordAndContinuesAfterTheCheckpoint() throws Exception {
+		LocalDateTime clickDate = LocalDateTime.of(2025, 3, 1, 12, 0);
+		try (ClickJournal journal = new ClickJournal(directory, 100, 1000)) {
+			for (long id = 1; id <= 5; id++) {
+				journal.append(id, new ClickContext(clickDate, null, null, null));
+			}
+			journal.checkpoint(2);
+		}
+		// a crash in the middle of writing record 5
+		try (RandomAccessFile file = new RandomAccessFile(directory.resolve("clicks-00000000000000000001.journal").toFile(), "rw")) {
+			file.seek(4L * ClickJournal.RECORD_SIZE + 100);
+			file.write(new byte[]{1, 2, 3});
+		}
+
+		try (ClickJournal journal = new ClickJournal(directory, 100, 1000)) {
+			assertThat(journal.checkpointed()).isEqualTo(2);
+			assertThat(journal.written()).isEqualTo(4);
+			assertThat(journal.append(42, new ClickContext(clickDate, null, "x".repeat(5000), null))).isEqualTo(5);
+			List<JournalRecord> records = journal.read(3, 5);
+			assertThat(records).extracting(JournalRecord::urlMappingId).containsExactly(3L, 4L, 42L);
+			// longer values than their slot are cut, not rejected
+			assertThat(records.get(2).context().userAgent()).hasSize(512);
+		}
+	}
+
+	@Test
+	void keepsSegmentsUntilEveryCursorHasCheckpointedThem() throws Exception {
+		LocalDateTime clickDate = LocalDateTime.of(2025, 3, 1, 12, 0);
+		try (ClickJournal journal = new ClickJournal(directory, 4, 1000)) {
+			for (long id = 1; id <= 6; id++) {
+				journal.append(id, new ClickContext(clickDate, null, null, null));
+			}
+			journal.checkpoint(3);
+		}
+
+		// reopened with more cursors: the new one starts where the journal was
+		try (ClickJournal journal = new ClickJournal(directory, 4, 1000, 2)) {
+			assertThat(journal.checkpointed(1)).isEqualTo(3);
+			for (long id = 7; id <= 10; id++) {
+				journal.append(id, new ClickContext(clickDate, null, null, null));
+			}
+			assertThat(segmentCount()).isEqualTo(3);
+
+			// one cursor stuck at 3 (its shard is down) while the other moves on
+			journal.checkpoint(0, 9);
+			assertThat(journal.checkpointed()).isEqualTo(3);
+			assertThat(segmentCount()).isEqualTo(3);
+			journal.checkpoint(1, 8);
+			assertThat(journal.checkpointed()).isEqualTo(8);
+			assertThat(segmentCount()).isEqualTo(1);
+		}
+
+		try (ClickJournal journal = new ClickJournal(directory, 4, 1000, 2)) {
+			assertThat(journal.checkpointed(0)).isEqualTo(9);
+			assertThat(journal.checkpointed(1)).isEqualTo(8);
+			assertThat(journal.written()).isEqualTo(10);
+			assertThat(journal.read(9, 10)).extracting(JournalRecord::urlMappingId).containsExactly(9L, 10L);
+		}
+	}
+
+	private long segmentCount() throws Exception {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> file.getFileName().toString().endsWith(".journal")).count();
+		}
+	}
+}
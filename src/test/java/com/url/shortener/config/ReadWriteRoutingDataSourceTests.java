@@ -0,0 +1,63 @@
+package com.url.shortener.config;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadWriteRoutingDataSourceTests {
+
+	private ReplicaSet.Replica replica;
+	private TransactionTemplate readWrite;
+	private ReadOnlyTransactionTemplate readOnly;
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void setUp() {
+		replica = new ReplicaSet.Replica("replica-0", embedded("replica"));
+		DataSource dataSource = new LazyConnectionDataSourceProxy(
+				new ReadWriteRoutingDataSource(embedded("primary"), new ReplicaSet(List.of(replica))));
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+		readWrite = new TransactionTemplate(transactionManager);
+		readOnly = new ReadOnlyTransactionTemplate(transactionManager);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	@Test
+	void readOnlyTransactionsGoToTheReplica() {
+		assertThat(databaseIn(readOnly)).isEqualTo("REPLICA");
+		assertThat(databaseIn(readWrite)).isEqualTo("PRIMARY");
+		assertThat(currentDatabase()).isEqualTo("PRIMARY");
+	}
+
+	@Test
+	void readsFallBackToThePrimaryWhileTheReplicaIsOutOfRotation() {
+		replica.update(false, 60);
+		assertThat(databaseIn(readOnly)).isEqualTo("PRIMARY");
+		replica.update(true, 0);
+		assertThat(databaseIn(readOnly)).isEqualTo("REPLICA");
+	}
+
+	private String databaseIn(TransactionTemplate transactionTemplate) {
+		return transactionTemplate.execute(status -> currentDatabase());
+	}
+
+	private String currentDatabase() {
+		return jdbcTemplate.queryForObject("select database()", String.class);
+	}
+
+	private static DataSource embedded(String name) {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+		dataSource.setUser("sa");
+		return dataSource;
+	}
+}
@@ -0,0 +1,82 @@
+package com.url.shortener.controller;
+
+import com.url.shortener.dtos.UrlMappingDTO;
+import com.url.shortener.models.RedirectType;
+import com.url.shortener.models.User;
+import com.url.shortener.repository.UserRepository;
+import com.url.shortener.service.UrlMappingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:redirects;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+class RedirectControllerTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private UrlMappingService urlMappingService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	private User user;
+
+	@BeforeEach
+	void createUser() {
+		String username = "redirects-" + UUID.randomUUID();
+		user = new User();
+		user.setEmail(username + "@example.com");
+		user.setUsername(username);
+		user.setPassword("x");
+		user = userRepository.save(user);
+	}
+
+	@Test
+	void temporaryRedirectsAreNeverCached() throws Exception {
+		UrlMappingDTO link = urlMappingService.createShortUrl("https://example.com/found", null, null, RedirectType.FOUND, user);
+		mockMvc.perform(get("/" + link.getShortUrl()))
+				.andExpect(status().isFound())
+				.andExpect(header().string(HttpHeaders.LOCATION, "https://example.com/found"))
+				.andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-store"));
+	}
+
+	@Test
+	void permanentRedirectsArePubliclyCacheable() throws Exception {
+		UrlMappingDTO moved = urlMappingService.createShortUrl("https://example.com/moved", null, null, RedirectType.MOVED_PERMANENTLY, user);
+		mockMvc.perform(get("/" + moved.getShortUrl()))
+				.andExpect(status().isMovedPermanently())
+				.andExpect(header().string(HttpHeaders.LOCATION, "https://example.com/moved"))
+				.andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=86400, public"));
+
+		UrlMappingDTO permanent = urlMappingService.createShortUrl("https://example.com/permanent", null, null, RedirectType.PERMANENT_REDIRECT, user);
+		mockMvc.perform(get("/" + permanent.getShortUrl()))
+				.andExpect(status().isPermanentRedirect())
+				.andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=86400, public"));
+	}
+
+	@Test
+	void permanentRedirectsAreNotCachedPastTheLinksExpiry() throws Exception {
+		UrlMappingDTO link = urlMappingService.createShortUrl("https://example.com/expiring", LocalDateTime.now().plusHours(1), null,
+				RedirectType.MOVED_PERMANENTLY, user);
+		String cacheControl = mockMvc.perform(get("/" + link.getShortUrl()))
+				.andExpect(status().isMovedPermanently())
+				.andReturn().getResponse().getHeader(HttpHeaders.CACHE_CONTROL);
+		assertThat(cacheControl).matches("max-age=\\d+, public");
+		assertThat(Long.parseLong(cacheControl.replaceAll("\\D", ""))).isBetween(3500L, 3600L);
+	}
+}
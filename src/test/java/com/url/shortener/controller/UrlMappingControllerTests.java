@@ -0,0 +1,188 @@
+package com.url.shortener.controller;
+
+import com.url.shortener.analytics.DimensionDictionary;
+import com.url.shortener.dtos.UrlMappingDTO;
+import com.url.shortener.models.ClickEvent;
+import com.url.shortener.models.DimensionKind;
+import com.url.shortener.models.RedirectType;
+import com.url.shortener.models.User;
+import com.url.shortener.repository.ClickEventRepository;
+import com.url.shortener.repository.UrlMappingRepository;
+import com.url.shortener.repository.UserRepository;
+import com.url.shortener.service.UrlMappingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:controller;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+class UrlMappingControllerTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private UrlMappingService urlMappingService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private UrlMappingRepository urlMappingRepository;
+
+	@Autowired
+	private ClickEventRepository clickEventRepository;
+
+	@Autowired
+	private DimensionDictionary dimensionDictionary;
+
+	private User owner;
+	private User other;
+	private UrlMappingDTO link;
+
+	@BeforeEach
+	void createLink() {
+		owner = createUser("owner");
+		other = createUser("other");
+		link = urlMappingService.createShortUrl("https://example.com/owned", null, null, RedirectType.FOUND, owner);
+	}
+
+	@Test
+	void perLinkAnalyticsAreOwnerOnly() throws Exception {
+		String analytics = "/api/urls/analytics/" + link.getShortUrl();
+		mockMvc.perform(get(analytics).param("startDate", "2020-01-01T00:00:00").param("endDate", "2030-01-01T00:00:00")
+						.with(user(owner.getUsername()).roles("USER")))
+				.andExpect(status().isOk());
+		mockMvc.perform(get(analytics).param("startDate", "2020-01-01T00:00:00").param("endDate", "2030-01-01T00:00:00")
+						.with(user(other.getUsername()).roles("USER")))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	void analyticsAreNotResentWhileTheETagMatches() throws Exception {
+		String analytics = "/api/urls/analytics/" + link.getShortUrl();
+		MvcResult first = mockMvc.perform(get(analytics).param("startDate", "2020-01-01T00:00:00").param("endDate", "2030-01-01T00:00:00")
+						.with(user(owner.getUsername()).roles("USER")))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"))
+				.andReturn();
+		String eTag = first.getResponse().getHeader(HttpHeaders.ETAG);
+		assertThat(eTag).startsWith("W/\"");
+
+		mockMvc.perform(get(analytics).param("startDate", "2020-01-01T00:00:00").param("endDate", "2030-01-01T00:00:00")
+						.header(HttpHeaders.IF_NONE_MATCH, eTag)
+						.with(user(owner.getUsername()).roles("USER")))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"));
+		// the ETag covers the date range: another range is a different response
+		mockMvc.perform(get(analytics).param("startDate", "2021-01-01T00:00:00").param("endDate", "2030-01-01T00:00:00")
+						.header(HttpHeaders.IF_NONE_MATCH, eTag)
+						.with(user(owner.getUsername()).roles("USER")))
+				.andExpect(status().isOk());
+
+		click("MOBILE");
+		mockMvc.perform(get(analytics).param("startDate", "2020-01-01T00:00:00").param("endDate", "2030-01-01T00:00:00")
+						.header(HttpHeaders.IF_NONE_MATCH, eTag)
+						.with(user(owner.getUsername()).roles("USER")))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].count").value(1));
+	}
+
+	@Test
+	void analyticsAreNotResentIfUnmodifiedSinceLastModified() throws Exception {
+		String analytics = "/api/urls/analytics/" + link.getShortUrl();
+		MvcResult first = mockMvc.perform(get(analytics).param("startDate", "2020-01-01T00:00:00").param("endDate", "2030-01-01T00:00:00")
+						.with(user(owner.getUsername()).roles("USER")))
+				.andExpect(status().isOk())
+				.andReturn();
+		String lastModified = first.getResponse().getHeader(HttpHeaders.LAST_MODIFIED);
+		assertThat(lastModified).isNotNull();
+
+		mockMvc.perform(get(analytics).param("startDate", "2020-01-01T00:00:00").param("endDate", "2030-01-01T00:00:00")
+						.header(HttpHeaders.IF_MODIFIED_SINCE, lastModified)
+						.with(user(owner.getUsername()).roles("USER")))
+				.andExpect(status().isNotModified());
+		mockMvc.perform(get(analytics).param("startDate", "2020-01-01T00:00:00").param("endDate", "2030-01-01T00:00:00")
+						.header(HttpHeaders.IF_MODIFIED_SINCE, "Wed, 01 Jan 2020 00:00:00 GMT")
+						.with(user(owner.getUsername()).roles("USER")))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void breakdownCountsClicksPerDimensionValue() throws Exception {
+		click("MOBILE");
+		click("MOBILE");
+		click("DESKTOP");
+		mockMvc.perform(get("/api/urls/analytics/" + link.getShortUrl() + "/breakdown").param("dimension", "device")
+						.param("startDate", "2020-01-01T00:00:00").param("endDate", "2030-01-01T00:00:00")
+						.with(user(owner.getUsername()).roles("USER")))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.MOBILE").value(2))
+				.andExpect(jsonPath("$.DESKTOP").value(1));
+	}
+
+	@Test
+	void breakdownIsOwnerOnly() throws Exception {
+		click("MOBILE");
+		mockMvc.perform(get("/api/urls/analytics/" + link.getShortUrl() + "/breakdown").param("dimension", "device")
+						.param("startDate", "2020-01-01T00:00:00").param("endDate", "2030-01-01T00:00:00")
+						.with(user(other.getUsername()).roles("USER")))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	void breakdownRejectsUnknownDimensions() throws Exception {
+		mockMvc.perform(get("/api/urls/analytics/" + link.getShortUrl() + "/breakdown").param("dimension", "browser")
+						.param("startDate", "2020-01-01T00:00:00").param("endDate", "2030-01-01T00:00:00")
+						.with(user(owner.getUsername()).roles("USER")))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void exportsAreOwnerOnly() throws Exception {
+		String export = "/api/urls/export/" + link.getShortUrl();
+		mockMvc.perform(get(export).param("startDate", "2020-01-01T00:00:00").param("endDate", "2030-01-01T00:00:00")
+						.with(user(owner.getUsername()).roles("USER")))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.CONTENT_TYPE, startsWith("text/csv")));
+		mockMvc.perform(get(export).param("startDate", "2020-01-01T00:00:00").param("endDate", "2030-01-01T00:00:00")
+						.with(user(other.getUsername()).roles("USER")))
+				.andExpect(status().isNotFound());
+	}
+
+	private void click(String deviceType) {
+		ClickEvent clickEvent = new ClickEvent();
+		clickEvent.setUrlMapping(urlMappingRepository.getReferenceById(link.getId()));
+		clickEvent.setClickDate(LocalDateTime.now().minusHours(1));
+		clickEvent.setDeviceTypeId(dimensionDictionary.encode(DimensionKind.DEVICE_TYPE, deviceType));
+		clickEventRepository.save(clickEvent);
+		// as ClickIngestionService does: the count versions the analytics
+		urlMappingRepository.incrementClickCount(link.getId(), 1, LocalDateTime.now().plusSeconds(1));
+	}
+
+	// usernames are unique per test, as every test shares the database
+	private User createUser(String name) {
+		String username = name + "-" + UUID.randomUUID();
+		User user = new User();
+		user.setEmail(username + "@example.com");
+		user.setUsername(username);
+		user.setPassword("x");
+		return userRepository.save(user);
+	}
+}
@@ -0,0 +1,42 @@
+package com.url.shortener.dedup;
+
+import com.url.shortener.dtos.UrlMappingDTO;
+import com.url.shortener.models.RedirectType;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LinkDeduplicatorTests {
+
+	@Test
+	void normalizesOnlyTheCaseInsensitiveParts() {
+		assertThat(LinkDeduplicator.normalize(" HTTPS://Example.COM:443 ")).isEqualTo("https://example.com/");
+		assertThat(LinkDeduplicator.normalize("http://example.com:80/a?b=1#c")).isEqualTo("http://example.com/a?b=1#c");
+		assertThat(LinkDeduplicator.normalize("http://example.com:8080/Path")).isEqualTo("http://example.com:8080/Path");
+		// path, query and fragment may be case-sensitive
+		assertThat(LinkDeduplicator.normalize("https://example.com/A?Q=X"))
+				.isNotEqualTo(LinkDeduplicator.normalize("https://example.com/a?q=x"));
+		assertThat(LinkDeduplicator.normalize("not a url")).isEqualTo("not a url");
+	}
+
+	@Test
+	void forgetsCachedLinksAfterTheirTtl() {
+		UrlMappingDTO link = new UrlMappingDTO();
+		link.setId(7L);
+		LinkDeduplicator cached = new LinkDeduplicator(true, 10, 60);
+		cached.remember(1, "https://example.com/", RedirectType.FOUND, link);
+		assertThat(cached.recent(1, "https://example.com/", RedirectType.FOUND)).isSameAs(link);
+		assertThat(cached.recent(2, "https://example.com/", RedirectType.FOUND)).isNull();
+
+		LinkDeduplicator expired = new LinkDeduplicator(true, 10, 0);
+		expired.remember(1, "https://example.com/", RedirectType.FOUND, link);
+		assertThat(expired.recent(1, "https://example.com/", RedirectType.FOUND)).isNull();
+	}
+
+	@Test
+	void hashesTheRedirectTypeToo() {
+		String url = LinkDeduplicator.normalize("https://example.com");
+		assertThat(LinkDeduplicator.hash(url, RedirectType.FOUND)).isEqualTo(LinkDeduplicator.hash("https://example.com/", RedirectType.FOUND));
+		assertThat(LinkDeduplicator.hash(url, RedirectType.FOUND)).isNotEqualTo(LinkDeduplicator.hash(url, RedirectType.MOVED_PERMANENTLY));
+	}
+}
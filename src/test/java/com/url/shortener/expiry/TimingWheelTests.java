@@ -0,0 +1,47 @@
+package com.url.shortener.expiry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTests {
+
+	@Test
+	void firesEveryKeyExactlyAtItsDeadline() {
+		TimingWheel<Integer> wheel = new TimingWheel<>(1, 3, 0);
+		// deadlines on every level, across level boundaries and beyond the top level (64^3 ticks)
+		long[] deadlines = {1, 5, 63, 64, 65, 127, 4095, 4096, 4097, 100_000, 262_143, 262_144, 600_000};
+		for (int i = 0; i < deadlines.length; i++) {
+			wheel.schedule(i, deadlines[i]);
+		}
+		Map<Integer, Long> firedAt = new HashMap<>();
+		for (long now = 1; now <= 600_000; now++) {
+			for (Integer key : wheel.advance(now)) {
+				firedAt.put(key, now);
+			}
+		}
+		for (int i = 0; i < deadlines.length; i++) {
+			assertThat(firedAt.get(i)).as("key %d", i).isEqualTo(deadlines[i]);
+		}
+		assertThat(wheel.size()).isZero();
+	}
+
+	@Test
+	void cancelledAndRescheduledKeys() {
+		TimingWheel<String> wheel = new TimingWheel<>(1000, 4, 10_000);
+		wheel.schedule("cancelled", 20_000);
+		wheel.schedule("moved", 20_000);
+		wheel.schedule("moved", 90_000);
+		wheel.schedule("overdue", 5_000);
+		assertThat(wheel.cancel("cancelled")).isTrue();
+
+		assertThat(wheel.advance(11_000)).containsExactly("overdue");
+		assertThat(wheel.advance(60_000)).isEmpty();
+		assertThat(wheel.advance(120_000)).isEqualTo(List.of("moved"));
+		assertThat(wheel.size()).isZero();
+	}
+}
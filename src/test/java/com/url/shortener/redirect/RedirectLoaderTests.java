@@ -0,0 +1,96 @@
+package com.url.shortener.redirect;
+
+import com.url.shortener.exceptions.RedirectLookupTimeoutException;
+import com.url.shortener.models.RedirectType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RedirectLoaderTests {
+
+	private static final RedirectTarget TARGET = new RedirectTarget(1, 1L, "b", "https://example.com", RedirectType.FOUND, null, null, 0);
+
+	@Test
+	void concurrentMissesShareOneLoad() throws Exception {
+		RedirectLoader loader = new RedirectLoader(5000);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger calls = new AtomicInteger();
+		List<CompletableFuture<RedirectTarget>> results = loadConcurrently(loader, 8, () -> {
+			calls.incrementAndGet();
+			await(release);
+			return TARGET;
+		});
+		waitUntil(() -> loader.getCoalesced() == 7);
+		release.countDown();
+
+		for (CompletableFuture<RedirectTarget> result : results) {
+			assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(TARGET);
+		}
+		assertThat(calls.get()).isEqualTo(1);
+		assertThat(loader.getLoads()).isEqualTo(1);
+		assertThat(loader.getInFlight()).isZero();
+	}
+
+	@Test
+	void failuresAndTimeoutsReachTheWaiters() throws Exception {
+		RedirectLoader loader = new RedirectLoader(50);
+		CountDownLatch release = new CountDownLatch(1);
+		List<CompletableFuture<RedirectTarget>> results = loadConcurrently(loader, 2, () -> {
+			await(release);
+			throw new IllegalStateException("database down");
+		});
+		waitUntil(() -> loader.getCoalesced() == 1);
+		// the waiter gives up first, then the load fails
+		waitUntil(() -> loader.getTimeouts() == 1);
+		release.countDown();
+
+		List<Throwable> failures = new ArrayList<>();
+		for (CompletableFuture<RedirectTarget> result : results) {
+			failures.add(result.handle((target, e) -> e.getCause()).get(5, TimeUnit.SECONDS));
+		}
+		assertThat(failures).hasAtLeastOneElementOfType(IllegalStateException.class)
+				.hasAtLeastOneElementOfType(RedirectLookupTimeoutException.class);
+		assertThat(loader.getFailures()).isEqualTo(1);
+		// nothing is remembered: the next miss loads again
+		assertThatThrownBy(() -> loader.load("b", () -> { throw new IllegalStateException("still down"); }))
+				.hasMessage("still down");
+		assertThat(loader.load("b", () -> TARGET)).isSameAs(TARGET);
+	}
+
+	private static List<CompletableFuture<RedirectTarget>> loadConcurrently(RedirectLoader loader, int callers, Supplier<RedirectTarget> load) {
+		ExecutorService executor = Executors.newFixedThreadPool(callers);
+		List<CompletableFuture<RedirectTarget>> results = new ArrayList<>();
+		for (int i = 0; i < callers; i++) {
+			results.add(CompletableFuture.supplyAsync(() -> loader.load("b", load), executor));
+		}
+		executor.shutdown();
+		return results;
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void waitUntil(Supplier<Boolean> condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!condition.get() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertThat(condition.get()).isTrue();
+	}
+}
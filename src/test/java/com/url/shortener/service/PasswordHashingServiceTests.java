@@ -0,0 +1,88 @@
+package com.url.shortener.service;
+
+import com.url.shortener.exceptions.AuthenticationOverloadedException;
+import com.url.shortener.exceptions.GlobalExceptionHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+class PasswordHashingServiceTests {
+
+	private final CountDownLatch release = new CountDownLatch(1);
+	private PasswordHashingService service;
+
+	@AfterEach
+	void releaseAndShutdown() {
+		release.countDown();
+		service.shutdown();
+	}
+
+	@Test
+	void rejectsRightAwayWhenThePoolAndQueueAreFull() throws InterruptedException {
+		service = new PasswordHashingService(1, 1, 5000);
+		CountDownLatch started = new CountDownLatch(1);
+		CompletableFuture.runAsync(() -> service.submit(() -> {
+			started.countDown();
+			return release.await(5, TimeUnit.SECONDS);
+		}));
+		started.await(5, TimeUnit.SECONDS);
+		CompletableFuture.runAsync(() -> service.submit(() -> "queued"));
+		waitForQueued(1);
+
+		long start = System.currentTimeMillis();
+		AuthenticationOverloadedException e = catchThrowableOfType(
+				() -> service.submit(() -> "rejected"), AuthenticationOverloadedException.class);
+		assertThat(System.currentTimeMillis() - start).isLessThan(1000);
+		assertThat(e).hasMessageContaining("Too many");
+		assertThat(status(e)).isEqualTo(503);
+	}
+
+	@Test
+	void abandonsATaskThatCannotStartInTime() throws InterruptedException {
+		service = new PasswordHashingService(1, 1, 100);
+		CountDownLatch started = new CountDownLatch(1);
+		CompletableFuture.runAsync(() -> service.submit(() -> {
+			started.countDown();
+			return release.await(5, TimeUnit.SECONDS);
+		}));
+		started.await(5, TimeUnit.SECONDS);
+
+		AtomicBoolean ran = new AtomicBoolean();
+		AuthenticationOverloadedException e = catchThrowableOfType(
+				() -> service.submit(() -> ran.getAndSet(true)), AuthenticationOverloadedException.class);
+		assertThat(e).hasMessageContaining("timed out");
+		assertThat(status(e)).isEqualTo(503);
+		// once the pool frees up the abandoned task is skipped, not run for nobody
+		release.countDown();
+		assertThat(service.submit(() -> "next")).isEqualTo("next");
+		assertThat(ran.get()).isFalse();
+	}
+
+	@Test
+	void aStartedHashIsAllowedToRunPastTheTimeout() {
+		service = new PasswordHashingService(1, 1, 50);
+		assertThat(service.submit(() -> {
+			Thread.sleep(200);
+			return "slow hash";
+		})).isEqualTo("slow hash");
+	}
+
+	private void waitForQueued(int queued) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (service.getQueued() < queued && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertThat(service.getQueued()).isEqualTo(queued);
+	}
+
+	private static int status(AuthenticationOverloadedException e) {
+		return new GlobalExceptionHandler().handleAuthenticationOverloaded(e).getStatusCode().value();
+	}
+}
@@ -0,0 +1,41 @@
+package com.url.shortener.service;
+
+import com.url.shortener.dtos.UrlMappingDTO;
+import com.url.shortener.models.RedirectType;
+import com.url.shortener.models.User;
+import com.url.shortener.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The "replica" is a separate, empty database: anything read from it would fail or come back empty,
+// like a replica that hasn't caught up yet
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:replicated-primary;DB_CLOSE_DELAY=-1",
+		"app.datasource.replicas[0].url=jdbc:h2:mem:lagging-replica;DB_CLOSE_DELAY=-1",
+		"app.datasource.replicas[0].username=sa"
+})
+class UrlMappingServiceReplicaTests {
+
+	@Autowired
+	private UrlMappingService urlMappingService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Test
+	void ownersSeeTheirNewLinksRightAway() {
+		User user = new User();
+		user.setEmail("replicated@example.com");
+		user.setUsername("replicated");
+		user.setPassword("x");
+		user = userRepository.save(user);
+
+		UrlMappingDTO link = urlMappingService.createShortUrl("https://example.com/new", null, null, RedirectType.FOUND, user);
+
+		assertThat(urlMappingService.getUrlsByUser(user)).extracting(UrlMappingDTO::getShortUrl).containsExactly(link.getShortUrl());
+		assertThat(urlMappingService.getUrlsVersion(user).links()).isEqualTo(1);
+	}
+}
@@ -0,0 +1,55 @@
+package com.url.shortener.sharding;
+
+import com.url.shortener.exceptions.DatabaseUnavailableException;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShardCircuitBreakerTests {
+
+	private final ShardRouter shardRouter = new ShardRouter(new ShardSet(Map.of()), new ShardProperties());
+
+	@Test
+	void opensAfterConsecutiveFailuresAndClosesAfterASuccessfulProbe() throws InterruptedException {
+		ShardCircuitBreaker breaker = new ShardCircuitBreaker(shardRouter, 2, 100);
+		AtomicInteger calls = new AtomicInteger();
+		Runnable down = () -> {
+			calls.incrementAndGet();
+			throw new CannotCreateTransactionException("Connection refused");
+		};
+
+		for (int i = 0; i < 2; i++) {
+			assertThatThrownBy(() -> breaker.run(0, down)).isInstanceOf(DatabaseUnavailableException.class);
+		}
+		assertThat(breaker.isOpen(0)).isTrue();
+		// open: fails without calling the database
+		assertThatThrownBy(() -> breaker.run(0, down)).isInstanceOf(DatabaseUnavailableException.class);
+		assertThat(calls.get()).isEqualTo(2);
+
+		Thread.sleep(150);
+		assertThat(breaker.isOpen(0)).isFalse();
+		assertThat(breaker.call(0, () -> "up")).isEqualTo("up");
+		assertThat(breaker.call(0, () -> "still up")).isEqualTo("still up");
+	}
+
+	@Test
+	void errorsOfAReachableDatabaseDontCount() {
+		ShardCircuitBreaker breaker = new ShardCircuitBreaker(shardRouter, 1, 10_000);
+		assertThatThrownBy(() -> breaker.run(0, () -> { throw new DataIntegrityViolationException("duplicate key"); }))
+				.isInstanceOf(DataIntegrityViolationException.class);
+		// transient, but the database answered: a deadlock or a lock wait is retried, not treated as an outage
+		assertThatThrownBy(() -> breaker.run(0, () -> { throw new PessimisticLockingFailureException("deadlock detected"); }))
+				.isInstanceOf(PessimisticLockingFailureException.class);
+		assertThatThrownBy(() -> breaker.run(0, () -> { throw new CannotAcquireLockException("lock wait timeout"); }))
+				.isInstanceOf(CannotAcquireLockException.class);
+		assertThat(breaker.isOpen(0)).isFalse();
+	}
+}
@@ -0,0 +1,166 @@
+package com.url.shortener.sharding;
+
+import com.url.shortener.analytics.ClickContext;
+import com.url.shortener.dtos.UrlMappingDTO;
+import com.url.shortener.models.RedirectType;
+import com.url.shortener.models.User;
+import com.url.shortener.redirect.DeletedLinkEvictor;
+import com.url.shortener.redirect.RedirectCache;
+import com.url.shortener.redirect.RedirectTarget;
+import com.url.shortener.repository.ClickEventRepository;
+import com.url.shortener.repository.UrlMappingRepository;
+import com.url.shortener.repository.UserRepository;
+import com.url.shortener.service.UrlMappingService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:sharded-0;DB_CLOSE_DELAY=-1",
+		"app.sharding.shards.1.url=jdbc:h2:mem:sharded-1;DB_CLOSE_DELAY=-1",
+		"app.sharding.shards.1.username=sa",
+		"app.sharding.shards.2.url=jdbc:h2:mem:sharded-2;DB_CLOSE_DELAY=-1",
+		"app.sharding.shards.2.username=sa",
+		"app.sharding.shards.2.connection-timeout-ms=3000",
+		// short enough for the purge test, long enough that a link deleted "elsewhere" is still there for the poll
+		"links.purge.min-age-ms=1000",
+		"links.purge.interval-ms=200"
+})
+class ShardedUrlMappingTests {
+
+	@Autowired
+	private UrlMappingService urlMappingService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private ShardRouter shardRouter;
+
+	@Autowired
+	private UrlMappingRepository urlMappingRepository;
+
+	@Autowired
+	private ClickEventRepository clickEventRepository;
+
+	@Autowired
+	private RedirectCache redirectCache;
+
+	@Autowired
+	private DeletedLinkEvictor deletedLinkEvictor;
+
+	@Autowired
+	private HikariDataSource primaryDataSource;
+
+	@Autowired
+	private ShardSet shardSet;
+
+	@Test
+	void poolsWaitBrieflyForAConnection() {
+		assertThat(primaryDataSource.getConnectionTimeout()).isEqualTo(1500);
+		assertThat(shardSet.getDataSources().get(1).getConnectionTimeout()).isEqualTo(1500);
+		assertThat(shardSet.getDataSources().get(2).getConnectionTimeout()).isEqualTo(3000);
+	}
+
+	@Test
+	void spreadsLinksOverShardsAndGathersThemPerUser() throws InterruptedException {
+		User user = createUser("sharded");
+
+		for (int i = 0; i < 6; i++) {
+			urlMappingService.createShortUrl("https://example.com/" + i, null, null, RedirectType.FOUND, user);
+		}
+		List<UrlMappingDTO> links = urlMappingService.getUrlsByUser(user);
+		assertThat(links).hasSize(6);
+		// round-robin: two links per shard, each id inside its shard's range and found again from its short URL
+		Set<Integer> shards = links.stream().map(link -> ShardRouter.shardOf(link.getId())).collect(Collectors.toSet());
+		assertThat(shards).containsExactlyInAnyOrder(0, 1, 2);
+		for (UrlMappingDTO link : links) {
+			assertThat(shardRouter.shardOf(link.getShortUrl())).isEqualTo(ShardRouter.shardOf(link.getId()));
+			RedirectTarget target = urlMappingService.getOriginalUrl(link.getShortUrl(),
+					new ClickContext(LocalDateTime.now(), "10.0.0.1", "test", null));
+			assertThat(target.getOriginalUrl()).isEqualTo(link.getOriginalUrl());
+		}
+
+		// clicks are recorded in the background, each on its link's shard
+		User owner = user;
+		waitUntil(() -> urlMappingService.getAnalyticsVersion(owner).clicks() >= 6);
+		assertThat(urlMappingService.getAnalyticsVersion(user).links()).isEqualTo(6);
+		Map<LocalDate, Long> totals = urlMappingService.getTotalClicksByUserAndDate(user, LocalDate.now(), LocalDate.now());
+		assertThat(totals).containsEntry(LocalDate.now(), 6L);
+	}
+
+	@Test
+	void deletedLinksStopRedirectingAndArePurgedWithTheirClicks() throws InterruptedException {
+		User user = createUser("deleting");
+		List<UrlMappingDTO> links = List.of(
+				urlMappingService.createShortUrl("https://example.com/keep", null, null, RedirectType.FOUND, user),
+				urlMappingService.createShortUrl("https://example.com/delete", null, null, RedirectType.FOUND, user));
+		for (UrlMappingDTO link : links) {
+			urlMappingService.getOriginalUrl(link.getShortUrl(), new ClickContext(LocalDateTime.now(), "10.0.0.1", "test", null));
+		}
+		waitUntil(() -> urlMappingService.getAnalyticsVersion(user).clicks() >= 2);
+
+		UrlMappingDTO deleted = links.get(1);
+		assertThat(urlMappingService.deleteShortUrl(deleted.getShortUrl(), createUser("someone-else"))).isFalse();
+		assertThat(urlMappingService.deleteShortUrl(deleted.getShortUrl(), user)).isTrue();
+		// gone right away, even though it was in the redirect cache
+		assertThat(urlMappingService.getOriginalUrl(deleted.getShortUrl(), new ClickContext(LocalDateTime.now(), "10.0.0.1", "test", null))).isNull();
+		assertThat(urlMappingService.getUrlsByUser(user)).extracting(UrlMappingDTO::getShortUrl).containsExactly(links.get(0).getShortUrl());
+
+		// then its clicks and the row itself are purged in the background
+		int shard = ShardRouter.shardOf(deleted.getId());
+		waitUntil(() -> ShardContext.call(shard, () -> urlMappingRepository.findDeletedIds(100)).isEmpty());
+		assertThat(ShardContext.call(shard, () -> clickEventRepository.findIdsByUrlMappingId(deleted.getId(), 0, PageRequest.of(0, 10)))).isEmpty();
+		assertThat(urlMappingService.getAnalyticsVersion(user).links()).isEqualTo(1);
+
+		assertThat(urlMappingService.deleteAllLinks(user)).isEqualTo(1);
+		assertThat(urlMappingService.getUrlsByUser(user)).isEmpty();
+	}
+
+	@Test
+	void linksDeletedOnAnotherInstanceAreEvictedByTheNextPoll() {
+		User user = createUser("elsewhere");
+		UrlMappingDTO link = urlMappingService.createShortUrl("https://example.com/elsewhere", null, null, RedirectType.FOUND, user);
+		ClickContext context = new ClickContext(LocalDateTime.now(), "10.0.0.1", "test", null);
+		assertThat(urlMappingService.getOriginalUrl(link.getShortUrl(), context)).isNotNull();
+
+		// deleted by another instance: this one still has the target cached
+		int shard = ShardRouter.shardOf(link.getId());
+		ShardContext.run(shard, () -> urlMappingRepository.markDeleted(link.getId(), LocalDateTime.now()));
+		assertThat(redirectCache.get(link.getShortUrl())).isNotNull();
+		// what a cached dedup hit is checked against
+		assertThat(ShardContext.call(shard, () -> urlMappingRepository.existsById(link.getId()))).isFalse();
+
+		deletedLinkEvictor.evictDeleted();
+		assertThat(redirectCache.getStale(link.getShortUrl())).isNull();
+		assertThat(urlMappingService.getOriginalUrl(link.getShortUrl(), context)).isNull();
+	}
+
+	private User createUser(String username) {
+		User user = new User();
+		user.setEmail(username + "@example.com");
+		user.setUsername(username);
+		user.setPassword("x");
+		return userRepository.save(user);
+	}
+
+	private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertThat(condition.getAsBoolean()).isTrue();
+	}
+}